@@ -0,0 +1,72 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.BatchCipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1024 коротких сообщения, каждое на своем ключе: пакетное шифрование {@link BatchCipher} против отдельного
+ * экземпляра CipherImpl на каждое сообщение. Ключи развернуты заранее.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchCipherBenchmark {
+    private static final int MESSAGES = 1024;
+
+    @Param({"16", "64"})
+    public int size;
+
+    private final List<ExpandedKey> keys = new ArrayList<>();
+    private final List<byte[]> messages = new ArrayList<>();
+    private BatchCipher batch;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        KeySchedule keySchedule = new KeySchedule();
+        for (int i = 0; i < MESSAGES; i++) {
+            byte[] key = new byte[16];
+            byte[] message = new byte[size];
+            random.nextBytes(key);
+            random.nextBytes(message);
+            keys.add(keySchedule.expandKey(key));
+            messages.add(message);
+        }
+        batch = BatchCipher.createInstance(CipherImpl.ENGINE.TABLE);
+    }
+
+    @Benchmark
+    public List<byte[]> batched() {
+        return batch.encryptAll(keys, messages);
+    }
+
+    @Benchmark
+    public List<byte[]> separate() {
+        List<byte[]> result = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            result.add(CipherImpl.createInstance(keys.get(i), CipherImpl.ENGINE.TABLE).encrypt(messages.get(i)));
+        }
+        return result;
+    }
+}
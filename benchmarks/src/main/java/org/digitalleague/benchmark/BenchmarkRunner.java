@@ -0,0 +1,33 @@
+package org.digitalleague.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа jar-файла бенчмарков. Запускает бенчмарки, имена которых соответствуют переданным регулярным
+ * выражениям (по умолчанию - все), и всегда подключает профилировщик GC, чтобы вместе с пропускной способностью
+ * фиксировалась скорость выделения памяти (gc.alloc.rate.norm - байтов на операцию).
+ */
+public class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        if (args.length == 0) {
+            builder.include("org\\.digitalleague\\.benchmark\\..*");
+        }
+        for (String pattern : args) {
+            builder.include(pattern);
+        }
+        // Vector API подключается во всех форках; без модуля библиотека перешла бы на скалярное сложение по XOR
+        Options options = builder
+                .jvmArgsPrepend("--add-modules=jdk.incubator.vector")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
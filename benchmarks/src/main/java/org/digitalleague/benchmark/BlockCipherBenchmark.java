@@ -0,0 +1,79 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование и расшифрование одного 128-битного блока каждой реализацией для всех длин ключа.
+ * Вариант с byte[][] roundKeys - исходный API, выделяющий память на каждый блок.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BlockCipherBenchmark {
+    @Param({"KEY_128", "KEY_192", "KEY_256"})
+    public RijndaelBaseImpl.KEY_LENGTH keyLength;
+
+    @Param({"BASE", "TABLE", "BITSLICED"})
+    public CipherImpl.ENGINE engine;
+
+    private BaseCipher cipher;
+    private ExpandedKey expandedKey;
+    private byte[][] roundKeys;
+    private final byte[] in = new byte[BaseCipher.BLOCK_SIZE];
+    private final byte[] out = new byte[BaseCipher.BLOCK_SIZE];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        byte[] key = new byte[keyLength.getKeyLength() / 8];
+        random.nextBytes(key);
+        random.nextBytes(in);
+        KeySchedule keySchedule = new KeySchedule();
+        cipher = engine.create(keyLength);
+        expandedKey = keySchedule.expandKey(key);
+        roundKeys = keySchedule.keyExpansion(key);
+    }
+
+    @Benchmark
+    public byte[] encryptBlock() {
+        cipher.encryptBlock(in, 0, out, 0, expandedKey);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] decryptBlock() {
+        cipher.decryptBlock(in, 0, out, 0, expandedKey);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] encryptBlockRoundKeys() {
+        return cipher.encryptBlock(in, roundKeys);
+    }
+
+    @Benchmark
+    public byte[] decryptBlockRoundKeys() {
+        return cipher.decryptBlock(in, roundKeys);
+    }
+}
@@ -0,0 +1,61 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шифрование и расшифрование сообщений целиком через CipherImpl (ECB с дополнением) для размеров от 16 байт до 64 МБ.
+ * Размер сообщения выбран кратным блоку, так что дополнение не добавляется и результат расшифрования совпадает
+ * по длине с исходным.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CipherImplBenchmark {
+    @Param({"16", "1024", "65536", "1048576", "67108864"})
+    public int size;
+
+    @Param({"BASE", "TABLE", "BITSLICED"})
+    public CipherImpl.ENGINE engine;
+
+    private CipherImpl cipher;
+    private byte[] plainText;
+    private byte[] cipherText;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        plainText = new byte[size];
+        random.nextBytes(plainText);
+        cipher = CipherImpl.createInstance(key, engine);
+        cipherText = cipher.encrypt(plainText);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return cipher.encrypt(plainText);
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        return cipher.decrypt(cipherText);
+    }
+}
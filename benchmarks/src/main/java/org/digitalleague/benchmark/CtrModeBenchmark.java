@@ -0,0 +1,92 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.mode.CtrKeystreamPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Режим CTR: шифрование массива (параллельное для больших сообщений), шифрование прямого ByteBuffer на месте
+ * последовательный поток ключа без распараллеливания и шифрование с потоком ключа, заранее выработанным
+ * в фоновом потоке ({@link CtrKeystreamPool}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CtrModeBenchmark {
+    @Param({"16", "1024", "65536", "1048576", "67108864"})
+    public int size;
+
+    @Param({"TABLE", "BITSLICED"})
+    public CipherImpl.ENGINE engine;
+
+    private CTRMode ctr;
+    private byte[] plainText;
+    private ByteBuffer direct;
+    private CtrKeystreamPool keyStreamPool;
+    private byte[] pooledOut;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        byte[] key = new byte[16];
+        byte[] iv = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        plainText = new byte[size];
+        random.nextBytes(plainText);
+        direct = ByteBuffer.allocateDirect(size);
+        ctr = CTRMode.createInstance(new KeySchedule().expandKey(key), iv, engine, ForkJoinPool.commonPool());
+        keyStreamPool = CtrKeystreamPool.createInstance(
+                CTRMode.createInstance(new KeySchedule().expandKey(key), iv, engine, ForkJoinPool.commonPool()));
+        pooledOut = new byte[size];
+    }
+
+    @TearDown
+    public void tearDown() {
+        keyStreamPool.close();
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return ctr.encrypt(plainText);
+    }
+
+    @Benchmark
+    public int encryptDirectBufferInPlace() {
+        direct.clear();
+        return ctr.encrypt(direct, direct);
+    }
+
+    @Benchmark
+    public ByteBuffer keyStream() {
+        direct.clear();
+        ctr.keyStream().xor(direct, direct);
+        return direct;
+    }
+
+    @Benchmark
+    public long encryptPooled() {
+        return keyStreamPool.encrypt(plainText, 0, pooledOut, 0, size);
+    }
+}
@@ -0,0 +1,75 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.service.EncryptionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Много потоков шифруют небольшие сообщения в режиме CTR: через пакетирующий {@link EncryptionService}
+ * и напрямую, создавая CTRMode на каждое сообщение.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class EncryptionServiceBenchmark {
+    @Param({"64", "256"})
+    public int size;
+
+    @Param({"64", "512"})
+    public int batchSize;
+
+    private EncryptionService service;
+    private byte[] key;
+    private byte[] iv;
+    private byte[] message;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        key = new byte[16];
+        iv = new byte[16];
+        message = new byte[size];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        random.nextBytes(message);
+        service = EncryptionService.createInstance(CipherImpl.ENGINE.TABLE, batchSize, Duration.ofNanos(100_000),
+                ForkJoinPool.commonPool());
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public byte[] batched() {
+        return service.processCtr(key, iv, message).join();
+    }
+
+    @Benchmark
+    public byte[] direct() {
+        return CTRMode.createInstance(key, iv).encrypt(message);
+    }
+}
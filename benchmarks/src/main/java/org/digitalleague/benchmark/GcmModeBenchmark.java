@@ -0,0 +1,66 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.mode.GCMMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.AEADBadTagException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Режим GCM: шифрование с вычислением тега и расшифрование с проверкой тега за один проход.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GcmModeBenchmark {
+    @Param({"16", "1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"TABLE", "BITSLICED"})
+    public CipherImpl.ENGINE engine;
+
+    private GCMMode gcm;
+    private final byte[] iv = new byte[12];
+    private final byte[] aad = new byte[20];
+    private byte[] plainText;
+    private byte[] cipherText;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        random.nextBytes(aad);
+        plainText = new byte[size];
+        random.nextBytes(plainText);
+        gcm = GCMMode.createInstance(new KeySchedule().expandKey(key), engine);
+        cipherText = gcm.encrypt(iv, aad, plainText);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return gcm.encrypt(iv, aad, plainText);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws AEADBadTagException {
+        return gcm.decrypt(iv, aad, cipherText);
+    }
+}
@@ -0,0 +1,52 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Развертывание ключа: исходный keyExpansion (матрица byte[][]) и expandKey (int[] с ключами расшифрования).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class KeyScheduleBenchmark {
+    @Param({"KEY_128", "KEY_192", "KEY_256"})
+    public RijndaelBaseImpl.KEY_LENGTH keyLength;
+
+    private final KeySchedule keySchedule = new KeySchedule();
+    private byte[] key;
+
+    @Setup
+    public void setUp() {
+        key = new byte[keyLength.getKeyLength() / 8];
+        new Random(1).nextBytes(key);
+    }
+
+    @Benchmark
+    public byte[][] keyExpansion() {
+        return keySchedule.keyExpansion(key);
+    }
+
+    @Benchmark
+    public ExpandedKey expandKey() {
+        return keySchedule.expandKey(key);
+    }
+}
@@ -0,0 +1,73 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.metrics.CipherMetrics;
+import org.digitalleague.mode.CTRMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость сбора метрик ({@link CipherMetrics}) на самых коротких операциях, где она заметнее всего:
+ * шифрование одного блока через CipherImpl и 64 байтов в режиме CTR с выключенным и включенным сбором.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private CipherImpl cipher;
+    private CTRMode ctr;
+    private byte[] block;
+    private byte[] message;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        byte[] key = new byte[16];
+        byte[] iv = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        block = new byte[16];
+        message = new byte[64];
+        random.nextBytes(block);
+        random.nextBytes(message);
+        cipher = CipherImpl.createInstance(key, CipherImpl.ENGINE.TABLE);
+        ctr = CTRMode.createInstance(new KeySchedule().expandKey(key), iv, CipherImpl.ENGINE.TABLE, ForkJoinPool.commonPool());
+        CipherMetrics.setEnabled(metrics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        CipherMetrics.setEnabled(false);
+    }
+
+    @Benchmark
+    public byte[] encryptBlock() {
+        return cipher.encrypt(block);
+    }
+
+    @Benchmark
+    public byte[] encryptCtr() {
+        return ctr.encrypt(message);
+    }
+}
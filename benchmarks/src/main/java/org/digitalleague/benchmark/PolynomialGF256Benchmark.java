@@ -0,0 +1,65 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.function.PolynomialGF256;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Умножение в GF(2^8): полная таблица произведений против таблиц логарифмов. Одна операция - 1024 умножений
+ * случайных пар байтов, поэтому результат не зависит от конкретных значений множителей.
+ * multiplyRegion - умножение области из 1024 байтов на константу по таблицам полубайтов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PolynomialGF256Benchmark {
+    private static final int PAIRS = 1024;
+    private final byte[] left = new byte[PAIRS];
+    private final byte[] right = new byte[PAIRS];
+    private final byte[] region = new byte[PAIRS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        random.nextBytes(left);
+        random.nextBytes(right);
+    }
+
+    @Benchmark
+    public int multiply() {
+        int acc = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            acc ^= PolynomialGF256.multiply(left[i], right[i]);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public int multiplyWithTables() {
+        int acc = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            acc ^= PolynomialGF256.multiplyWithTables(left[i], right[i]);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public byte[] multiplyRegion() {
+        PolynomialGF256.multiplyRegion((byte) 0x57, left, region, 0, PAIRS);
+        return region;
+    }
+}
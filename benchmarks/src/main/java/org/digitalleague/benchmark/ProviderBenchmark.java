@@ -0,0 +1,70 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.provider.RijndaelProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A/B-сравнение через стандартный API javax.crypto.Cipher: провайдер JDK (SunJCE, с интринсиками AES-NI)
+ * против {@link RijndaelProvider} с выбранной реализацией блочного преобразования. Код вызова одинаков,
+ * различается только провайдер.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProviderBenchmark {
+    @Param({"JDK", "TABLE", "BITSLICED"})
+    public String provider;
+
+    @Param({"AES/CTR/NoPadding", "AES/CBC/PKCS5Padding"})
+    public String transformation;
+
+    @Param({"64", "16384", "1048576"})
+    public int size;
+
+    private Cipher cipher;
+    private byte[] data;
+    private byte[] output;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(1);
+        byte[] key = new byte[32];
+        byte[] iv = new byte[16];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        data = new byte[size];
+        random.nextBytes(data);
+
+        cipher = provider.equals("JDK")
+                ? Cipher.getInstance(transformation)
+                : Cipher.getInstance(transformation, new RijndaelProvider(CipherImpl.ENGINE.valueOf(provider)));
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        output = new byte[cipher.getOutputSize(size)];
+    }
+
+    @Benchmark
+    public byte[] doFinal() throws Exception {
+        cipher.doFinal(data, 0, size, output, 0);
+        return output;
+    }
+}
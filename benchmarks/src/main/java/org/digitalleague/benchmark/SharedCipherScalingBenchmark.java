@@ -0,0 +1,88 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование одного разделяемого экземпляра CipherImpl от 1 потока до числа ядер (Threads.MAX).
+ * Каждый поток шифрует на месте свой буфер в 1 КБ через метод для ByteBuffer, который не выделяет память, поэтому
+ * при отсутствии конкуренции за общие данные пропускная способность растет линейно с числом потоков,
+ * а gc.alloc.rate.norm остается нулевым.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharedCipherScalingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedCipher {
+        @Param({"TABLE", "BITSLICED"})
+        public CipherImpl.ENGINE engine;
+
+        private CipherImpl cipher;
+
+        @Setup
+        public void setUp() {
+            byte[] key = new byte[16];
+            new Random(1).nextBytes(key);
+            cipher = CipherImpl.createInstance(key, engine);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadBuffer {
+        private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int threads1(SharedCipher shared, ThreadBuffer local) {
+        return encrypt(shared, local);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int threads4(SharedCipher shared, ThreadBuffer local) {
+        return encrypt(shared, local);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int threads16(SharedCipher shared, ThreadBuffer local) {
+        return encrypt(shared, local);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int threads64(SharedCipher shared, ThreadBuffer local) {
+        return encrypt(shared, local);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int threadsMax(SharedCipher shared, ThreadBuffer local) {
+        return encrypt(shared, local);
+    }
+
+    private static int encrypt(SharedCipher shared, ThreadBuffer local) {
+        local.buffer.clear();
+        return shared.cipher.encrypt(local.buffer, local.buffer.duplicate());
+    }
+}
@@ -0,0 +1,58 @@
+package org.digitalleague.benchmark;
+
+import org.digitalleague.cipher.util.Xor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Наложение потока ключа на данные: {@link Xor} (Vector API или скалярный вариант по 8 байтов,
+ * в зависимости от -Dorg.digitalleague.vector) против побайтового цикла.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XorBenchmark {
+    @Param({"16", "1024", "65536", "1048576"})
+    public int size;
+
+    private byte[] data;
+    private byte[] keyStream;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        data = new byte[size];
+        keyStream = new byte[size];
+        random.nextBytes(data);
+        random.nextBytes(keyStream);
+    }
+
+    @Benchmark
+    public byte[] xor() {
+        Xor.xor(data, 0, keyStream, 0, data, 0, size);
+        return data;
+    }
+
+    @Benchmark
+    public byte[] byteLoop() {
+        for (int i = 0; i < size; i++) {
+            data[i] ^= keyStream[i];
+        }
+        return data;
+    }
+}
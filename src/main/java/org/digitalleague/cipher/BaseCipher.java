@@ -1,6 +1,102 @@
 package org.digitalleague.cipher;
 
+import org.digitalleague.key.ExpandedKey;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Блочное преобразование Rijndael (AES). Реализации обязаны быть потокобезопасными и не хранить изменяемое
+ * состояние в полях экземпляра: один экземпляр используется всеми потоками, а рабочие буферы хранятся в ThreadLocal.
+ */
 public interface BaseCipher {
-    byte[] encryptBlock(byte[] plainText, byte[][] roundKeys);
-    byte[] decryptBlock(byte[] cipherText, byte[][] roundKeys);
+    int BLOCK_SIZE = 16;
+
+    /**
+     * Шифрование блока из массива in (начиная с inOff) с записью результата в out (начиная с outOff).
+     * Не выделяет память в куче; допускается in == out (в том числе с совпадающими смещениями).
+     */
+    void encryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key);
+
+    void decryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key);
+
+    /**
+     * Шифрование nBlocks подряд идущих независимых блоков (режимы ECB, CTR). Реализации могут обрабатывать
+     * несколько блоков одновременно; по умолчанию блоки шифруются по одному.
+     */
+    default void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey key) {
+        for (int i = 0; i < nBlocks; i++) {
+            encryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, key);
+        }
+    }
+
+    default void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey key) {
+        for (int i = 0; i < nBlocks; i++) {
+            decryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, key);
+        }
+    }
+
+    /**
+     * Шифрование nBlocks подряд идущих блоков, i-й блок - на ключе keys[i] (пакетная обработка сообщений
+     * на разных ключах одной длины). Реализации могут чередовать вычисления блоков с разными ключами;
+     * по умолчанию блоки шифруются по одному.
+     */
+    default void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey[] keys) {
+        for (int i = 0; i < nBlocks; i++) {
+            encryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, keys[i]);
+        }
+    }
+
+    default void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey[] keys) {
+        for (int i = 0; i < nBlocks; i++) {
+            decryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, keys[i]);
+        }
+    }
+
+    /**
+     * Шифрование блока по абсолютным смещениям в ByteBuffer (позиции и границы буферов не изменяются).
+     * Буферы в куче обрабатываются через массив без копирования; для прямых буферов блок проходит через
+     * 16-байтовый буфер текущего потока. Допускается in == out.
+     */
+    default void encryptBlock(ByteBuffer in, int inOff, ByteBuffer out, int outOff, ExpandedKey key) {
+        Objects.checkFromIndexSize(inOff, BLOCK_SIZE, in.limit());
+        Objects.checkFromIndexSize(outOff, BLOCK_SIZE, out.limit());
+        if (in.hasArray() && out.hasArray()) {
+            encryptBlock(in.array(), in.arrayOffset() + inOff, out.array(), out.arrayOffset() + outOff, key);
+            return;
+        }
+        byte[] block = BlockScratch.BLOCK.get();
+        in.get(inOff, block);
+        encryptBlock(block, 0, block, 0, key);
+        out.put(outOff, block);
+    }
+
+    default void decryptBlock(ByteBuffer in, int inOff, ByteBuffer out, int outOff, ExpandedKey key) {
+        Objects.checkFromIndexSize(inOff, BLOCK_SIZE, in.limit());
+        Objects.checkFromIndexSize(outOff, BLOCK_SIZE, out.limit());
+        if (in.hasArray() && out.hasArray()) {
+            decryptBlock(in.array(), in.arrayOffset() + inOff, out.array(), out.arrayOffset() + outOff, key);
+            return;
+        }
+        byte[] block = BlockScratch.BLOCK.get();
+        in.get(inOff, block);
+        decryptBlock(block, 0, block, 0, key);
+        out.put(outOff, block);
+    }
+
+    /**
+     * Шифрование блока по расписанию ключей в формате {@link org.digitalleague.key.KeySchedule#keyExpansion(byte[])}.
+     * Расписание преобразуется в {@link ExpandedKey} один раз на массив roundKeys (в пределах потока).
+     */
+    default byte[] encryptBlock(byte[] plainText, byte[][] roundKeys) {
+        byte[] cipherText = new byte[BLOCK_SIZE];
+        encryptBlock(plainText, 0, cipherText, 0, BlockScratch.expandedKey(roundKeys));
+        return cipherText;
+    }
+
+    default byte[] decryptBlock(byte[] cipherText, byte[][] roundKeys) {
+        byte[] plainText = new byte[BLOCK_SIZE];
+        decryptBlock(cipherText, 0, plainText, 0, BlockScratch.expandedKey(roundKeys));
+        return plainText;
+    }
 }
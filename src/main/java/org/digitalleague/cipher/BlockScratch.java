@@ -0,0 +1,50 @@
+package org.digitalleague.cipher;
+
+import org.digitalleague.key.ExpandedKey;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Рабочие данные методов {@link BaseCipher} по умолчанию, переиспользуемые в пределах потока: буфер одного блока
+ * для обработки прямых ByteBuffer и развернутые ключи для методов с расписанием ключей в формате byte[][].
+ */
+final class BlockScratch {
+    static final ThreadLocal<byte[]> BLOCK = ThreadLocal.withInitial(() -> new byte[BaseCipher.BLOCK_SIZE]);
+    /**
+     * Развернутый ключ на каждый массив расписания (по ссылке): запись удаляется вместе с массивом вызывающего,
+     * поэтому ключевой материал хранится не дольше самого расписания.
+     */
+    private static final ThreadLocal<Map<byte[][], ExpandedKey>> ROUND_KEYS = ThreadLocal.withInitial(WeakHashMap::new);
+
+    private BlockScratch() {
+    }
+
+    /**
+     * Развернутый ключ для расписания roundKeys. Преобразование выполняется один раз на массив расписания;
+     * если содержимое массива изменилось, ключ строится заново.
+     */
+    static ExpandedKey expandedKey(byte[][] roundKeys) {
+        Map<byte[][], ExpandedKey> keys = ROUND_KEYS.get();
+        ExpandedKey key = keys.get(roundKeys);
+        if (key == null || !matches(key, roundKeys)) {
+            key = ExpandedKey.fromRoundKeys(roundKeys);
+            keys.put(roundKeys, key);
+        }
+        return key;
+    }
+
+    private static boolean matches(ExpandedKey key, byte[][] roundKeys) {
+        int[] words = key.getEncryptionRoundKeys();
+        if (words.length != roundKeys.length) {
+            return false;
+        }
+        for (int i = 0; i < words.length; i++) {
+            byte[] word = roundKeys[i];
+            if (words[i] != (((word[0] & 0xFF) << 24) | ((word[1] & 0xFF) << 16) | ((word[2] & 0xFF) << 8) | (word[3] & 0xFF))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,7 +1,26 @@
 package org.digitalleague.cipher;
 
+import java.nio.ByteBuffer;
+
 public interface Cipher {
     byte[] encrypt(byte[] plainText);
 
     byte[] decrypt(byte[] cipherText);
+
+    /**
+     * Шифрование всех оставшихся байтов src с записью результата в dst (по соглашениям
+     * javax.crypto.Cipher#update(ByteBuffer, ByteBuffer)): позиция src сдвигается до границы, позиция dst - на число
+     * записанных байтов. Если в dst недостаточно места, буферы не изменяются и выбрасывается IllegalArgumentException.
+     * Допускается src == dst (шифрование на месте).
+     * @return число байтов, записанных в dst
+     */
+    int encrypt(ByteBuffer src, ByteBuffer dst);
+
+    /**
+     * Расшифрование всех оставшихся байтов src с записью результата в dst по тем же соглашениям, что и
+     * {@link #encrypt(ByteBuffer, ByteBuffer)}. Реализации обрабатывают буферы напрямую, без копирования
+     * сообщения в промежуточные массивы.
+     * @return число байтов, записанных в dst
+     */
+    int decrypt(ByteBuffer src, ByteBuffer dst);
 }
@@ -0,0 +1,124 @@
+package org.digitalleague.cipher.impl;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.util.Padding;
+import org.digitalleague.key.ExpandedKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетное шифрование множества сообщений, каждое на своем ключе. Блоки всех сообщений с ключами одной длины
+ * записываются подряд в общий буфер и обрабатываются одним вызовом многоблочного метода с ключом для каждого блока
+ * ({@link BaseCipher#encryptBlocks(byte[], int, byte[], int, int, ExpandedKey[])}), так что блоки разных сообщений
+ * чередуются в конвейере процессора. Результат для каждого сообщения совпадает с {@link CipherImpl#encrypt(byte[])}
+ * и {@link CipherImpl#decrypt(byte[])} на его ключе. Экземпляр потокобезопасен.
+ */
+public class BatchCipher {
+    private static final int BLOCK_SIZE = 16;
+    private final Map<RijndaelBaseImpl.KEY_LENGTH, BaseCipher> ciphers = new EnumMap<>(RijndaelBaseImpl.KEY_LENGTH.class);
+
+    private BatchCipher(CipherImpl.ENGINE engine) {
+        for (RijndaelBaseImpl.KEY_LENGTH keyLength : RijndaelBaseImpl.KEY_LENGTH.values()) {
+            ciphers.put(keyLength, engine.create(keyLength));
+        }
+    }
+
+    public static BatchCipher createInstance() {
+        return new BatchCipher(EngineSelector.select());
+    }
+
+    public static BatchCipher createInstance(CipherImpl.ENGINE engine) {
+        return new BatchCipher(engine);
+    }
+
+    /**
+     * Шифрование сообщений: plainTexts.get(i) шифруется на ключе keys.get(i) с дополнением как в CipherImpl.
+     * @return шифротексты в порядке исходных сообщений
+     */
+    public List<byte[]> encryptAll(List<ExpandedKey> keys, List<byte[]> plainTexts) {
+        return processAll(keys, plainTexts, true);
+    }
+
+    /**
+     * Расшифрование сообщений: cipherTexts.get(i) расшифровывается на ключе keys.get(i).
+     * @throws IllegalArgumentException - если длина какого-либо шифротекста не кратна 16
+     */
+    public List<byte[]> decryptAll(List<ExpandedKey> keys, List<byte[]> cipherTexts) {
+        for (byte[] cipherText : cipherTexts) {
+            if (cipherText.length % BLOCK_SIZE != 0) {
+                throw new IllegalArgumentException("expected cipherText length as multiplication of 16, but got " + cipherText.length);
+            }
+        }
+        return processAll(keys, cipherTexts, false);
+    }
+
+    private List<byte[]> processAll(List<ExpandedKey> keys, List<byte[]> texts, boolean encrypt) {
+        if (keys.size() != texts.size()) {
+            throw new IllegalArgumentException("expected " + keys.size() + " texts, but got " + texts.size());
+        }
+        byte[][] results = new byte[texts.size()][];
+        Map<RijndaelBaseImpl.KEY_LENGTH, List<Integer>> groups = new EnumMap<>(RijndaelBaseImpl.KEY_LENGTH.class);
+        for (int i = 0; i < keys.size(); i++) {
+            RijndaelBaseImpl.KEY_LENGTH keyLength = RijndaelBaseImpl.KEY_LENGTH.ofBits(keys.get(i).getKeyLength());
+            groups.computeIfAbsent(keyLength, k -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<RijndaelBaseImpl.KEY_LENGTH, List<Integer>> group : groups.entrySet()) {
+            processGroup(ciphers.get(group.getKey()), group.getValue(), keys, texts, results, encrypt);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Обработка сообщений с ключами одной длины: тексты (при шифровании - дополненные) записываются подряд,
+     * для каждого блока запоминается ключ его сообщения.
+     */
+    private static void processGroup(BaseCipher cipher, List<Integer> indices, List<ExpandedKey> keys,
+                                     List<byte[]> texts, byte[][] results, boolean encrypt) {
+        int total = 0;
+        for (int index : indices) {
+            total += paddedLength(texts.get(index).length);
+        }
+        byte[] buffer = new byte[total];
+        ExpandedKey[] blockKeys = new ExpandedKey[total / BLOCK_SIZE];
+        int offset = 0;
+        for (int index : indices) {
+            byte[] text = texts.get(index);
+            int padded = paddedLength(text.length);
+            System.arraycopy(text, 0, buffer, offset, text.length);
+            Arrays.fill(buffer, offset + text.length, offset + padded, (byte) (padded - text.length));
+            Arrays.fill(blockKeys, offset / BLOCK_SIZE, (offset + padded) / BLOCK_SIZE, keys.get(index));
+            offset += padded;
+        }
+
+        if (encrypt) {
+            cipher.encryptBlocks(buffer, 0, buffer, 0, blockKeys.length, blockKeys);
+        } else {
+            cipher.decryptBlocks(buffer, 0, buffer, 0, blockKeys.length, blockKeys);
+        }
+
+        offset = 0;
+        for (int index : indices) {
+            int padded = paddedLength(texts.get(index).length);
+            byte[] result = Arrays.copyOfRange(buffer, offset, offset + padded);
+            if (!encrypt) {
+                int paddingSize = Padding.paddingSize(result, result.length);
+                if (paddingSize > 0) {
+                    result = Arrays.copyOf(result, result.length - paddingSize);
+                }
+            }
+            results[index] = result;
+            offset += padded;
+        }
+    }
+
+    /**
+     * Длина текста, дополненного до целого числа блоков (текст кратной длины не дополняется, как в CipherImpl)
+     */
+    private static int paddedLength(int length) {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+}
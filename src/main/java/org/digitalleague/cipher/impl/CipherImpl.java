@@ -2,31 +2,106 @@ package org.digitalleague.cipher.impl;
 
 import org.digitalleague.cipher.BaseCipher;
 import org.digitalleague.cipher.Cipher;
+import org.digitalleague.cipher.util.Padding;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.ExpandedKeyCache;
 import org.digitalleague.key.KeySchedule;
+import org.digitalleague.metrics.CipherMetrics;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Класс для непосредственного шифрования произвольного массива байтов.
+ * Блоки шифруются независимо, поэтому массивы размером не меньше порога parallelThreshold делятся на диапазоны
+ * блоков, которые обрабатываются параллельно в {@link ForkJoinPool} с записью сразу в итоговый массив.
+ * <p>
+ * Контракт многопоточности: экземпляр неизменяем и потокобезопасен, один экземпляр на ключ можно разделять между
+ * любым числом потоков без синхронизации. Изменяемое рабочее состояние (матрица состояния, битсрезовое
+ * состояние, буфер неполного блока) хранится в ThreadLocal и переиспользуется всеми вызовами одного потока,
+ * поэтому потоки не конкурируют за общие данные, а методы для ByteBuffer не выделяют память после первого вызова
+ * в потоке. Массивы результата методов для byte[] выделяются на каждый вызов. Виртуальный поток получает собственное
+ * рабочее состояние (несколько сотен байтов) при первом вызове; для коротких виртуальных потоков это единственное
+ * выделение памяти на поток. Развернутый ключ (включая производные представления раундовых ключей, например
+ * битсрезовое) разделяется всеми потоками только на чтение и в ThreadLocal не копируется.
  */
 public class CipherImpl implements Cipher {
     private static final int DEFAULT_BLOCK_SIZE = 16;
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 256 * 1024; // Размер данных (в байтах), начиная с которого включается параллельная обработка
+    private static final int CHUNK_BLOCKS = 4096; // Число блоков в одной задаче ForkJoinPool
     private static final KeySchedule keySchedule = new KeySchedule();
-    private final byte[][] roundKeys;
+    /**
+     * Буфер последнего (неполного) блока для методов с ByteBuffer, переиспользуемый в пределах потока
+     */
+    private static final ThreadLocal<byte[]> BLOCK = ThreadLocal.withInitial(() -> new byte[DEFAULT_BLOCK_SIZE]);
+    private final ExpandedKey key;
     private final BaseCipher cipher;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    private CipherImpl(ExpandedKey key, ENGINE engine, ForkJoinPool pool, int parallelThreshold) {
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("expected non-negative parallel threshold, but got " + parallelThreshold);
+        }
+        this.cipher = engine.create(RijndaelBaseImpl.KEY_LENGTH.ofBits(key.getKeyLength()));
+        this.key = key;
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
 
-    private CipherImpl(byte[] key) {
-        cipher = switch (key.length) {
-            case 16 -> new RijndaelBaseImpl(RijndaelBaseImpl.KEY_LENGTH.KEY_128);
-            case 24 -> new RijndaelBaseImpl(RijndaelBaseImpl.KEY_LENGTH.KEY_192);
-            case 32 -> new RijndaelBaseImpl(RijndaelBaseImpl.KEY_LENGTH.KEY_256);
-            default -> throw new IllegalArgumentException("Invalid key length: must be 128, 192 or 256 bits");
-        };
-        this.roundKeys = keySchedule.keyExpansion(key);
+    private CipherImpl(ExpandedKey key, ENGINE engine) {
+        this(key, engine, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
     }
 
+    /**
+     * Создание шифра с реализацией блочного преобразования, выбранной {@link EngineSelector} для этой машины.
+     * @param key - ключ длиной 128, 192 или 256 бит
+     */
     public static CipherImpl createInstance(byte[] key) {
-        return new CipherImpl(key);
+        return new CipherImpl(keySchedule.expandKey(key), EngineSelector.select());
+    }
+
+    /**
+     * Создание шифра с явным выбором реализации блочного преобразования.
+     * @param key - ключ длиной 128, 192 или 256 бит
+     * @param engine - реализация шифрования блока (результат шифрования не зависит от выбора)
+     */
+    public static CipherImpl createInstance(byte[] key, ENGINE engine) {
+        return new CipherImpl(keySchedule.expandKey(key), engine);
+    }
+
+    /**
+     * Создание шифра по уже развернутому ключу (без повторного выполнения расписания ключей).
+     * @param key - развернутый ключ, полученный из {@link KeySchedule#expandKey(byte[])}
+     * @param engine - реализация шифрования блока
+     */
+    public static CipherImpl createInstance(ExpandedKey key, ENGINE engine) {
+        return new CipherImpl(key, engine);
+    }
+
+    /**
+     * Создание шифра с развернутым ключом из кэша: повторяющиеся ключи не развертываются заново.
+     * @param key - ключ длиной 128, 192 или 256 бит
+     * @param engine - реализация шифрования блока
+     * @param cache - кэш развернутых ключей (вытеснение ключа из кэша не влияет на шифр: ключ обнуляется, когда шифр
+     *              станет недостижим; после {@link ExpandedKeyCache#clear()} шифр использовать нельзя)
+     */
+    public static CipherImpl createInstance(byte[] key, ENGINE engine, ExpandedKeyCache cache) {
+        return new CipherImpl(cache.get(key), engine);
+    }
+
+    /**
+     * Создание шифра с явной настройкой параллельной обработки.
+     * @param key - развернутый ключ
+     * @param engine - реализация шифрования блока
+     * @param pool - пул для параллельной обработки больших массивов
+     * @param parallelThreshold - размер массива в байтах, начиная с которого он обрабатывается параллельно
+     *                          (Integer.MAX_VALUE - всегда в вызывающем потоке)
+     */
+    public static CipherImpl createInstance(ExpandedKey key, ENGINE engine, ForkJoinPool pool, int parallelThreshold) {
+        return new CipherImpl(key, engine, pool, parallelThreshold);
     }
 
     /**
@@ -37,14 +112,12 @@ public class CipherImpl implements Cipher {
      * @return cipherText - открытый текст (список зашифрованных байтов), который можно передавать раздельно от ключа
      */
     public byte[] encrypt(byte[] plainText) {
+        long start = CipherMetrics.start();
         byte[] paddedPlainText = this.addPadding(plainText);
         byte[] result = new byte[paddedPlainText.length];
 
-        for (int i = 0; i < paddedPlainText.length; i += DEFAULT_BLOCK_SIZE) {
-            byte[] block = Arrays.copyOfRange(paddedPlainText, i, i + DEFAULT_BLOCK_SIZE);
-            byte[] cipherBlock = this.cipher.encryptBlock(block, roundKeys);
-            System.arraycopy(cipherBlock, 0, result, i, DEFAULT_BLOCK_SIZE);
-        }
+        process(paddedPlainText, result, true);
+        CipherMetrics.record(CipherMetrics.MODE.ECB, key.getKeyLength(), result.length, start);
         return result;
     }
 
@@ -56,23 +129,145 @@ public class CipherImpl implements Cipher {
      * @return plainText - дешифрованное сообщение (в формате массива байтов, кодировка должна обрабатываться в вызывабщей программе
      */
     public byte[] decrypt(byte[] cipherText) {
+        long start = CipherMetrics.start();
         byte[] result = new byte[cipherText.length];
 
         if (cipherText.length % 16 != 0) {
             throw new IllegalArgumentException("expected cipherText length as multiplication of 16, but got " + cipherText.length);
         }
 
-        for (int i = 0; i < cipherText.length; i += DEFAULT_BLOCK_SIZE) {
-            byte[] block = Arrays.copyOfRange(cipherText, i, i + DEFAULT_BLOCK_SIZE);
-            byte[] cipherBlock = this.cipher.decryptBlock(block, roundKeys);
-            System.arraycopy(cipherBlock, 0, result, i, DEFAULT_BLOCK_SIZE);
-        }
+        process(cipherText, result, false);
+        CipherMetrics.record(CipherMetrics.MODE.ECB, key.getKeyLength(), cipherText.length, start);
 
         return removePadding(result);
     }
 
+    /**
+     * Шифрование оставшихся байтов src напрямую из буфера в буфер (в том числе прямые буферы).
+     * Полные блоки обрабатываются без копирования, дополняется только последний неполный блок.
+     * @return число записанных в dst байтов (длина с учетом дополнения)
+     */
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) {
+        long start = CipherMetrics.start();
+        int length = src.remaining();
+        int outLength = (length + DEFAULT_BLOCK_SIZE - 1) / DEFAULT_BLOCK_SIZE * DEFAULT_BLOCK_SIZE;
+        checkOutputSize(dst, outLength);
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        int fullLength = length - length % DEFAULT_BLOCK_SIZE;
+
+        for (int i = 0; i < fullLength; i += DEFAULT_BLOCK_SIZE) {
+            this.cipher.encryptBlock(src, srcPos + i, dst, dstPos + i, key);
+        }
+        if (fullLength < length) {
+            int tail = length - fullLength;
+            byte[] block = BLOCK.get();
+            src.get(srcPos + fullLength, block, 0, tail);
+            Arrays.fill(block, tail, DEFAULT_BLOCK_SIZE, (byte) (DEFAULT_BLOCK_SIZE - tail));
+            this.cipher.encryptBlock(block, 0, block, 0, key);
+            dst.put(dstPos + fullLength, block);
+        }
+
+        src.position(srcPos + length);
+        dst.position(dstPos + outLength);
+        CipherMetrics.record(CipherMetrics.MODE.ECB, key.getKeyLength(), outLength, start);
+        return outLength;
+    }
+
+    /**
+     * Расшифрование оставшихся байтов src напрямую из буфера в буфер. В dst должно быть место под src.remaining()
+     * байтов (размер результата до удаления дополнения), дополнение удаляется из последнего блока.
+     * @return число записанных в dst байтов
+     */
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) {
+        long start = CipherMetrics.start();
+        int length = src.remaining();
+        if (length % DEFAULT_BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("expected cipherText length as multiplication of 16, but got " + length);
+        }
+        checkOutputSize(dst, length);
+        if (length == 0) {
+            return 0;
+        }
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        int lastBlock = length - DEFAULT_BLOCK_SIZE;
+
+        for (int i = 0; i < lastBlock; i += DEFAULT_BLOCK_SIZE) {
+            this.cipher.decryptBlock(src, srcPos + i, dst, dstPos + i, key);
+        }
+        byte[] block = BLOCK.get();
+        src.get(srcPos + lastBlock, block);
+        this.cipher.decryptBlock(block, 0, block, 0, key);
+        int paddingSize = Padding.paddingSize(block, DEFAULT_BLOCK_SIZE);
+        int outLength = length - paddingSize;
+        dst.put(dstPos + lastBlock, block, 0, outLength - lastBlock);
+
+        src.position(srcPos + length);
+        dst.position(dstPos + outLength);
+        CipherMetrics.record(CipherMetrics.MODE.ECB, key.getKeyLength(), length, start);
+        return outLength;
+    }
+
+    private void process(byte[] in, byte[] out, boolean encrypt) {
+        int blocks = in.length / DEFAULT_BLOCK_SIZE;
+        if (in.length < parallelThreshold || blocks <= CHUNK_BLOCKS) {
+            processRange(in, out, 0, blocks, encrypt);
+        } else {
+            pool.invoke(new BlockRangeTask(in, out, 0, blocks, encrypt));
+        }
+    }
+
+    private void processRange(byte[] in, byte[] out, int fromBlock, int toBlock, boolean encrypt) {
+        int offset = fromBlock * DEFAULT_BLOCK_SIZE;
+        if (encrypt) {
+            this.cipher.encryptBlocks(in, offset, out, offset, toBlock - fromBlock, key);
+        } else {
+            this.cipher.decryptBlocks(in, offset, out, offset, toBlock - fromBlock, key);
+        }
+    }
+
+    /**
+     * Задача ForkJoinPool: делит диапазон блоков пополам, пока он не станет меньше CHUNK_BLOCKS.
+     */
+    private class BlockRangeTask extends RecursiveAction {
+        private final byte[] in;
+        private final byte[] out;
+        private final int fromBlock;
+        private final int toBlock;
+        private final boolean encrypt;
+
+        BlockRangeTask(byte[] in, byte[] out, int fromBlock, int toBlock, boolean encrypt) {
+            this.in = in;
+            this.out = out;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.encrypt = encrypt;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock <= CHUNK_BLOCKS) {
+                processRange(in, out, fromBlock, toBlock, encrypt);
+                return;
+            }
+            int middle = (fromBlock + toBlock) >>> 1;
+            invokeAll(new BlockRangeTask(in, out, fromBlock, middle, encrypt),
+                    new BlockRangeTask(in, out, middle, toBlock, encrypt));
+        }
+    }
+
+    private static void checkOutputSize(ByteBuffer dst, int outLength) {
+        if (dst.remaining() < outLength) {
+            throw new IllegalArgumentException("expected at least " + outLength + " bytes in output buffer, but got " + dst.remaining());
+        }
+    }
+
     /**
      * Padding (дополнение) блоков исходного текста. Выполняется в соответствии с PKCS#7-алгоритмом
+     * (текст кратной длины не дополняется)
      * @param plainText
      * @return
      */
@@ -80,11 +275,7 @@ public class CipherImpl implements Cipher {
         if (plainText.length % DEFAULT_BLOCK_SIZE == 0) {
             return plainText;
         }
-        int paddingSize = DEFAULT_BLOCK_SIZE - (plainText.length % DEFAULT_BLOCK_SIZE);
-        byte[] paddedPlainText = new byte[plainText.length + paddingSize];
-        System.arraycopy(plainText, 0, paddedPlainText, 0, plainText.length);
-        Arrays.fill(paddedPlainText, plainText.length, plainText.length + paddingSize, (byte) paddingSize);
-        return paddedPlainText;
+        return Padding.pad(plainText);
     }
 
     /**
@@ -93,20 +284,37 @@ public class CipherImpl implements Cipher {
      * @return
      */
     private byte[] removePadding(byte[] cipherText) {
-        if (cipherText.length == 0) {
-            return cipherText;
+        int paddingSize = Padding.paddingSize(cipherText, cipherText.length);
+        if (paddingSize == 0) {
+            return cipherText; // Текст кратной длины шифруется без дополнения, это не ошибка
         }
-        int paddingSize = cipherText[cipherText.length - 1];
-        if (paddingSize < 1 || paddingSize > DEFAULT_BLOCK_SIZE || paddingSize > cipherText.length) {
-            return cipherText;
+        return Arrays.copyOf(cipherText, cipherText.length - paddingSize);
+    }
+
+    /**
+     * Доступные реализации блочного преобразования.
+     * BASE - побайтовая реализация по спецификации на матрице состояния ({@link RijndaelBaseImpl}),
+     * TABLE - реализация на 32-битных словах с T-таблицами ({@link RijndaelTableImpl}),
+     * BITSLICED - битсрезовая реализация без обращений к таблицам по секретному индексу ({@link RijndaelBitslicedImpl}).
+     */
+    public enum ENGINE {
+        BASE,
+        TABLE,
+        BITSLICED;
+
+        public BaseCipher create(RijndaelBaseImpl.KEY_LENGTH keyLength) {
+            return switch (this) {
+                case BASE -> new RijndaelBaseImpl(keyLength);
+                case TABLE -> new RijndaelTableImpl(keyLength);
+                case BITSLICED -> new RijndaelBitslicedImpl(keyLength);
+            };
         }
-        for (int i = cipherText.length - paddingSize; i < cipherText.length; i++) {
-            if (cipherText[i] != paddingSize) {
-                return cipherText;
-            }
+
+        /**
+         * @return true, если время выполнения и адреса обращений к памяти не зависят от ключа и данных
+         */
+        public boolean isConstantTime() {
+            return this == BITSLICED;
         }
-        byte[] unpaddedText = new byte[cipherText.length - paddingSize];
-        System.arraycopy(cipherText, 0, unpaddedText, 0, cipherText.length - paddingSize);
-        return unpaddedText;
     }
 }
@@ -0,0 +1,162 @@
+package org.digitalleague.cipher.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Выбор реализации блочного преобразования для текущей машины. При первом обращении все реализации
+ * {@link CipherImpl.ENGINE} проходят короткую калибровку (доли секунды): каждая шифрует многоблочным методом
+ * буфер размером 1 КБ, измеряется лучшая из нескольких попыток пропускная способность. Результат кэшируется
+ * до конца работы JVM; фабрики без явного указания реализации ({@link CipherImpl#createInstance(byte[])} и др.)
+ * используют {@link #select()}.
+ * <p>
+ * Выбор можно переопределить системными свойствами: -Dorg.digitalleague.engine=TABLE задает реализацию явно
+ * (калибровка не выполняется), -Dorg.digitalleague.engine.policy=CONSTANT_TIME ограничивает выбор реализациями
+ * без обращений к памяти по секретному индексу.
+ */
+@Slf4j
+public final class EngineSelector {
+    public static final String ENGINE_PROPERTY = "org.digitalleague.engine";
+    public static final String POLICY_PROPERTY = "org.digitalleague.engine.policy";
+    private static final int CALIBRATION_BLOCKS = 64; // Блоков в одном вызове шифра при калибровке
+    private static final long WARMUP_NANOS = 20_000_000L; // Прогрев каждой реализации перед измерениями
+    private static final long MEASUREMENT_NANOS = 5_000_000L; // Длительность одного измерения
+    private static final int MEASUREMENTS = 3; // Число измерений каждой реализации (учитывается лучшее)
+    private static volatile Map<CipherImpl.ENGINE, Double> calibration;
+
+    private EngineSelector() {
+    }
+
+    /**
+     * Политика выбора реализации.
+     * FASTEST - самая быстрая по результатам калибровки,
+     * CONSTANT_TIME - самая быстрая среди реализаций с постоянным временем выполнения ({@link CipherImpl.ENGINE#isConstantTime()}).
+     */
+    public enum POLICY {
+        FASTEST,
+        CONSTANT_TIME;
+
+        public boolean allows(CipherImpl.ENGINE engine) {
+            return this == FASTEST || engine.isConstantTime();
+        }
+    }
+
+    /**
+     * Выбор реализации с политикой из системного свойства {@value #POLICY_PROPERTY} (по умолчанию FASTEST)
+     */
+    public static CipherImpl.ENGINE select() {
+        return select(parse(POLICY.class, System.getProperty(POLICY_PROPERTY, POLICY.FASTEST.name()), POLICY_PROPERTY));
+    }
+
+    /**
+     * Выбор реализации с заданной политикой. Реализация, заданная системным свойством {@value #ENGINE_PROPERTY},
+     * имеет приоритет над калибровкой, но должна удовлетворять политике. Если политике удовлетворяет
+     * единственная реализация, калибровка не выполняется.
+     * @throws IllegalArgumentException - если значение свойства некорректно или противоречит политике
+     */
+    public static CipherImpl.ENGINE select(POLICY policy) {
+        String property = System.getProperty(ENGINE_PROPERTY);
+        if (property != null) {
+            CipherImpl.ENGINE engine = parse(CipherImpl.ENGINE.class, property, ENGINE_PROPERTY);
+            if (!policy.allows(engine)) {
+                throw new IllegalArgumentException("expected engine allowed by policy " + policy + ", but got " + engine);
+            }
+            return engine;
+        }
+        List<CipherImpl.ENGINE> candidates = Arrays.stream(CipherImpl.ENGINE.values()).filter(policy::allows).toList();
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        return getRanking().stream().filter(policy::allows).findFirst().orElseThrow();
+    }
+
+    /**
+     * @return реализации в порядке убывания пропускной способности на этой машине
+     */
+    public static List<CipherImpl.ENGINE> getRanking() {
+        Map<CipherImpl.ENGINE, Double> throughput = getCalibration();
+        return throughput.keySet().stream()
+                .sorted(Comparator.comparingDouble(throughput::get).reversed())
+                .toList();
+    }
+
+    /**
+     * @return пропускная способность каждой реализации (байтов в секунду), измеренная при первом обращении
+     */
+    public static Map<CipherImpl.ENGINE, Double> getCalibration() {
+        Map<CipherImpl.ENGINE, Double> result = calibration;
+        if (result == null) {
+            synchronized (EngineSelector.class) {
+                result = calibration;
+                if (result == null) {
+                    result = Collections.unmodifiableMap(calibrate());
+                    calibration = result;
+                    log.info("engine calibration (bytes/s): " + result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Сначала все реализации прогреваются, затем измеряются поочередно, чтобы кратковременная посторонняя
+     * нагрузка на машину не искажала результат одной из них.
+     */
+    private static Map<CipherImpl.ENGINE, Double> calibrate() {
+        byte[] rawKey = new byte[16];
+        byte[] buffer = new byte[CALIBRATION_BLOCKS * BaseCipher.BLOCK_SIZE];
+        Random random = new Random();
+        random.nextBytes(rawKey);
+        random.nextBytes(buffer);
+        ExpandedKey key = new KeySchedule().expandKey(rawKey);
+
+        Map<CipherImpl.ENGINE, BaseCipher> ciphers = new EnumMap<>(CipherImpl.ENGINE.class);
+        Map<CipherImpl.ENGINE, Double> throughput = new EnumMap<>(CipherImpl.ENGINE.class);
+        for (CipherImpl.ENGINE engine : CipherImpl.ENGINE.values()) {
+            ciphers.put(engine, engine.create(RijndaelBaseImpl.KEY_LENGTH.KEY_128));
+            measure(ciphers.get(engine), key, buffer, WARMUP_NANOS);
+            throughput.put(engine, 0.0);
+        }
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            for (CipherImpl.ENGINE engine : CipherImpl.ENGINE.values()) {
+                throughput.merge(engine, measure(ciphers.get(engine), key, buffer, MEASUREMENT_NANOS), Math::max);
+            }
+        }
+        key.destroy();
+        return throughput;
+    }
+
+    /**
+     * @return байтов в секунду при шифровании buffer на месте в течение не менее nanos наносекунд
+     */
+    private static double measure(BaseCipher cipher, ExpandedKey key, byte[] buffer, long nanos) {
+        long start = System.nanoTime();
+        long elapsed;
+        long bytes = 0;
+        do {
+            cipher.encryptBlocks(buffer, 0, buffer, 0, CALIBRATION_BLOCKS, key);
+            bytes += buffer.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return bytes * 1e9 / elapsed;
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String property) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("expected " + property + " to be one of "
+                    + Arrays.toString(type.getEnumConstants()) + ", but got " + value);
+        }
+    }
+}
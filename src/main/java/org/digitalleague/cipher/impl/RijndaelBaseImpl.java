@@ -3,10 +3,14 @@ package org.digitalleague.cipher.impl;
 import org.digitalleague.function.PolynomialGF256;
 import org.digitalleague.cipher.util.SBox;
 import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.key.ExpandedKey;
 
-import java.util.Arrays;
-
-import static org.digitalleague.function.PolynomialGF256.multiply;
+import static org.digitalleague.function.PolynomialGF256.MUL_02;
+import static org.digitalleague.function.PolynomialGF256.MUL_03;
+import static org.digitalleague.function.PolynomialGF256.MUL_09;
+import static org.digitalleague.function.PolynomialGF256.MUL_0B;
+import static org.digitalleague.function.PolynomialGF256.MUL_0D;
+import static org.digitalleague.function.PolynomialGF256.MUL_0E;
 
 /**
  * Основная логика шифрования алгоритмом Rijndael (AES).
@@ -22,6 +26,11 @@ public class RijndaelBaseImpl implements BaseCipher {
     private final int Nk; //  Длина ключа в словах
     private final int Nr; //  Число раундов шифрования (зависит только от размеров ключа)
 
+    /**
+     * Матрица состояния переиспользуется между блоками в пределах одного потока
+     */
+    private static final ThreadLocal<byte[][]> STATE = ThreadLocal.withInitial(() -> new byte[4][Nb]);
+
     public RijndaelBaseImpl(KEY_LENGTH keyLength) {
         this.Nk = keyLength.value / 32;
         this.Nr = this.Nk + 6;
@@ -30,12 +39,13 @@ public class RijndaelBaseImpl implements BaseCipher {
     /**
      * Добавление соответствующего слова раундового ключа к соответствующему слову состояния
      * @param state - матрица состояний
-     * @param roundKey - подмножество множества сгенерированных раундовых ключей.
+     * @param roundKeys - раундовые ключи шифрования (слова big-endian)
+     * @param offset - индекс первого слова раундового ключа в расписании ключей
      */
-    private void addRoundKey(byte[][] state, byte[][] roundKey) {
+    private void addRoundKey(byte[][] state, int[] roundKeys, int offset) {
         for (int j = 0; j < 4; j++) {
             for (int i = 0; i < Nb; i++) {
-                state[j][i] = PolynomialGF256.add(state[j][i], roundKey[i][j]);
+                state[j][i] = PolynomialGF256.add(state[j][i], (byte) (roundKeys[offset + i] >>> (24 - 8 * j)));
             }
         }
     }
@@ -43,89 +53,99 @@ public class RijndaelBaseImpl implements BaseCipher {
     /**
      * Шифрование 128-битного блока данных. Начинается с добавления начального ключа. После этого n-1 раундов шифрования
      * с выполнением методов в строгом порядке. Во время финального раунда шифрования не выполняется метод mixColumns.
-     * @param plainBlock - блок из открытого текста
-     * @param roundKeys - матрица расписания ключей
-     * @return plainBlock - массив зашифрованных байтов
+     * Матрица состояния берется из буфера текущего потока, поэтому метод не выделяет память.
+     * @param in - массив с блоком открытого текста
+     * @param inOff - смещение блока в массиве in
+     * @param out - массив для зашифрованного блока
+     * @param outOff - смещение блока в массиве out
+     * @param key - развернутый ключ
      */
-    public byte[] encryptBlock(byte[] plainBlock, byte[][] roundKeys) {
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key) {
+        checkKey(key);
+        int[] roundKeys = key.getEncryptionRoundKeys();
+        byte[][] state = STATE.get();
+        loadState(in, inOff, state); //  Заполняем матрицу состояний данными
 
-        byte[][] state = createState(plainBlock); //  Создаем матрицу состояний и заполняем данными
-
-        addRoundKey(state, Arrays.copyOfRange(roundKeys, 0, Nb)); // Начальный раунд
+        addRoundKey(state, roundKeys, 0); // Начальный раунд
 
         for (int round = 1; round < Nr; round++) {
             subBytes(state);
             shiftRows(state);
             mixColumns(state);
-            addRoundKey(state, Arrays.copyOfRange(roundKeys, round * Nb, (round + 1) * Nb));
+            addRoundKey(state, roundKeys, round * Nb);
         }
 
         subBytes(state);
         shiftRows(state);
-        addRoundKey(state, Arrays.copyOfRange(roundKeys, Nr * Nb, (Nr + 1) * Nb)); // Финальный раунд шифрования
+        addRoundKey(state, roundKeys, Nr * Nb); // Финальный раунд шифрования
 
-        return stateToBytes(state);
+        storeState(state, out, outOff);
     }
 
     /**
-     * Шифрование 128-битного блока данных. Начинается с добавления начального ключа. После этого n-1 раундов шифрования
-     * с выполнением обратных (inv...) методов. Во время финального раунда шифрования не выполняется метод invMixColumns.
-     * @param cipherBlock - зашифрованный блок
-     * @param roundKeys - матрица расписания ключей
-     * @return plainBlock - массив расшифрованных байтов
+     * Расшифрование 128-битного блока по схеме эквивалентного обратного шифра (FIPS-197, 5.3.5): порядок
+     * преобразований раунда совпадает с шифрованием (invSubBytes, invShiftRows, invMixColumns, addRoundKey), а раундовые
+     * ключи расшифрования уже взяты в обратном порядке и пропущены через InvMixColumns при развертывании ключа.
+     * Во время финального раунда не выполняется метод invMixColumns.
+     * @param in - массив с зашифрованным блоком
+     * @param inOff - смещение блока в массиве in
+     * @param out - массив для расшифрованного блока
+     * @param outOff - смещение блока в массиве out
+     * @param key - развернутый ключ (используются раундовые ключи расшифрования)
      */
-    public byte[] decryptBlock(byte[] cipherBlock, byte[][] roundKeys) {
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key) {
+        checkKey(key);
+        int[] roundKeys = key.getDecryptionRoundKeys();
+        byte[][] state = STATE.get();
+        loadState(in, inOff, state);
 
-        byte[][] state = createState(cipherBlock);
+        addRoundKey(state, roundKeys, 0);
 
-        addRoundKey(state, Arrays.copyOfRange(roundKeys, Nr * Nb, Nb * (Nr + 1)));
-
-        for (int round = Nr - 1; round > 0; round--) {
-            invShiftRows(state);
+        for (int round = 1; round < Nr; round++) {
             invSubBytes(state);
-            addRoundKey(state, Arrays.copyOfRange(roundKeys, round * Nb, (round + 1) * Nb));
+            invShiftRows(state);
             invMixColumns(state);
+            addRoundKey(state, roundKeys, round * Nb);
         }
 
-        invShiftRows(state);
         invSubBytes(state);
-        addRoundKey(state, Arrays.copyOfRange(roundKeys, 0, Nb)); // Финальный раунд шифрования
+        invShiftRows(state);
+        addRoundKey(state, roundKeys, Nr * Nb); // Финальный раунд расшифрования
 
-        return stateToBytes(state);
+        storeState(state, out, outOff);
     }
 
     /**
-     * Генерация матрица состояния (соответствует спецификации, т.е. column-major indexing).
+     * Заполнение матрицы состояния (соответствует спецификации, т.е. column-major indexing).
      * Каждое слово представляец собой вектор-столбец.
-     * @param block - исходный массив байтов (обязательно 16-байтовый)
-     * @return state - матрица состояния
+     * @param block - исходный массив байтов
+     * @param offset - смещение 16-байтового блока в массиве
+     * @param state - матрица состояния
      */
-    private byte[][] createState(byte[] block) {
-        byte[][] state = new byte[4][Nb];
-        int k = 0;
+    private void loadState(byte[] block, int offset, byte[][] state) {
+        int k = offset;
 
         for (int i = 0; i < Nb; i++) {
             for (int j = 0; j < Nb; j++) {
                 state[j][i] = block[k++];
             }
         }
-        return state;
     }
 
     /**
-     * Генерация массива байтов из матрицы состояния
+     * Запись матрицы состояния в массив байтов
      * @param state - матрица состояния
+     * @param block - массив для результата
+     * @param offset - смещение 16-байтового блока в массиве
      */
-    private byte[] stateToBytes(byte[][] state) {
-        byte[] block = new byte[Nb * Nb];
-        int k = 0;
+    private void storeState(byte[][] state, byte[] block, int offset) {
+        int k = offset;
 
         for (int i = 0; i < Nb; i++) {
             for (int j = 0; j < Nb; j++) {
                 block[k++] = state[j][i];
             }
         }
-        return block;
     }
 
     /**
@@ -159,14 +179,8 @@ public class RijndaelBaseImpl implements BaseCipher {
      * @param state - матрица состояния
      */
     public void shiftRows(byte[][] state) {
-        byte[] shifts = new byte[] {1, 2, 3};
-
         for (int i = 1; i < state.length; i++) {
-            byte[] shiftedArray = new byte[Nb];
-
-            System.arraycopy(state[i], shifts[i-1], shiftedArray, 0, Nb - shifts[i-1]);
-            System.arraycopy(state[i], 0, shiftedArray, Nb - shifts[i-1], shifts[i-1]);
-            state[i] = shiftedArray;
+            rotateRow(state[i], Nb - i);
         }
     }
 
@@ -175,51 +189,67 @@ public class RijndaelBaseImpl implements BaseCipher {
      * @param state - матрица состояния
      */
     public void invShiftRows(byte[][] state) {
-        byte[] shifts = new byte[] {1, 2, 3};
-
         for (int i = 1; i < state.length; i++) {
-            byte[] shiftedArray = new byte[Nb];
-
-            System.arraycopy(state[i], Nb - shifts[i-1], shiftedArray, 0, shifts[i-1]);
-            System.arraycopy(state[i], 0, shiftedArray, shifts[i-1], Nb - shifts[i-1]);
-            state[i] = shiftedArray;
+            rotateRow(state[i], i);
         }
     }
 
+    /**
+     * Циклический сдвиг строки состояния вправо на месте (сдвиг влево на n равен сдвигу вправо на Nb - n)
+     * @param row - строка состояния
+     * @param shift - величина сдвига
+     */
+    private static void rotateRow(byte[] row, int shift) {
+        byte r0 = row[0], r1 = row[1], r2 = row[2], r3 = row[3];
+        row[shift & 3] = r0;
+        row[(shift + 1) & 3] = r1;
+        row[(shift + 2) & 3] = r2;
+        row[(shift + 3) & 3] = r3;
+    }
+
     /**
      * Преобразование столбцов - каждый столбец состояния преобразовывается в соответствии с матричным уравнением (Y = AX + B), описанным в спецификации
-     * Здесь multiply(x, y) - умножение двух полиномов над полиномов, представленных как байты x, y, в соответствии с
-     * алгеброй конечных полей. ^ - побитовое или - сложение двух полиномов над конечным полем
+     * Умножение на коэффициенты матрицы над конечным полем берется из предвычисленных таблиц MUL_xx
+     * (см. {@link PolynomialGF256}), ^ - побитовое исключающее или - сложение двух полиномов над конечным полем
      * @param state - матрица состояния
      */
     public void mixColumns(byte[][] state) {
-        byte[][] stateCopy = Arrays.stream(state).map(byte[]::clone).toArray(byte[][]::new);
-
         for (int c = 0; c < 4; c++) {
-            state[0][c] = (byte)((multiply((byte)0x02, stateCopy[0][c])) ^ multiply((byte)0x03, stateCopy[1][c]) ^ stateCopy[2][c] ^ stateCopy[3][c]);
-            state[1][c] = (byte)(stateCopy[0][c] ^ multiply((byte)0x02, stateCopy[1][c]) ^ multiply((byte)0x03, stateCopy[2][c]) ^ stateCopy[3][c]);
-            state[2][c] = (byte)(stateCopy[0][c] ^ stateCopy[1][c] ^ multiply((byte)0x02, stateCopy[2][c]) ^ multiply((byte)0x03, stateCopy[3][c]));
-            state[3][c] = (byte)((multiply((byte)0x03, stateCopy[0][c])) ^ stateCopy[1][c] ^ stateCopy[2][c] ^ multiply((byte)0x02, stateCopy[3][c]));
+            int s0 = state[0][c] & 0xFF, s1 = state[1][c] & 0xFF, s2 = state[2][c] & 0xFF, s3 = state[3][c] & 0xFF;
+            state[0][c] = (byte)(MUL_02[s0] ^ MUL_03[s1] ^ s2 ^ s3);
+            state[1][c] = (byte)(s0 ^ MUL_02[s1] ^ MUL_03[s2] ^ s3);
+            state[2][c] = (byte)(s0 ^ s1 ^ MUL_02[s2] ^ MUL_03[s3]);
+            state[3][c] = (byte)(MUL_03[s0] ^ s1 ^ s2 ^ MUL_02[s3]);
         }
     }
 
     /**
      * Преобразование столбцов - каждый столбец состояния преобразовывается в соответствии с матричным уравнением (X = A'Y - B).
-     * где A' - матрица, обратная к A
+     * где A' - матрица, обратная к A (коэффициенты 0x0e, 0x0b, 0x0d, 0x09 - по таблицам умножения)
      * @param state - матрица состояния
      */
     public void invMixColumns(byte[][] state) {
-        byte[][] stateCopy = Arrays.stream(state).map(byte[]::clone).toArray(byte[][]::new);
-
         for (int c = 0; c < 4; c++) {
-            state[0][c] = (byte)((multiply((byte)0x0e, stateCopy[0][c])) ^ multiply((byte)0x0b, stateCopy[1][c]) ^ multiply((byte)0x0d, stateCopy[2][c]) ^ multiply((byte)0x09, stateCopy[3][c]));
-            state[1][c] = (byte)(multiply((byte)0x09, stateCopy[0][c]) ^ multiply((byte)0x0e, stateCopy[1][c]) ^ multiply((byte)0x0b, stateCopy[2][c]) ^ multiply((byte)0x0d, stateCopy[3][c]));
-            state[2][c] = (byte)(multiply((byte)0x0d, stateCopy[0][c]) ^ multiply((byte)0x09, stateCopy[1][c]) ^ multiply((byte)0x0e, stateCopy[2][c]) ^ multiply((byte)0x0b, stateCopy[3][c]));
-            state[3][c] = (byte)((multiply((byte)0x0b, stateCopy[0][c])) ^ multiply((byte)0x0d, stateCopy[1][c]) ^ multiply((byte)0x09, stateCopy[2][c]) ^ multiply((byte)0x0e, stateCopy[3][c]));
+            int s0 = state[0][c] & 0xFF, s1 = state[1][c] & 0xFF, s2 = state[2][c] & 0xFF, s3 = state[3][c] & 0xFF;
+            state[0][c] = (byte)(MUL_0E[s0] ^ MUL_0B[s1] ^ MUL_0D[s2] ^ MUL_09[s3]);
+            state[1][c] = (byte)(MUL_09[s0] ^ MUL_0E[s1] ^ MUL_0B[s2] ^ MUL_0D[s3]);
+            state[2][c] = (byte)(MUL_0D[s0] ^ MUL_09[s1] ^ MUL_0E[s2] ^ MUL_0B[s3]);
+            state[3][c] = (byte)(MUL_0B[s0] ^ MUL_0D[s1] ^ MUL_09[s2] ^ MUL_0E[s3]);
         }
     }
 
 
+    /**
+     * Проверка, что развернутый ключ соответствует длине ключа, для которой создан шифр: иначе число раундов
+     * не совпадает с расписанием ключей и результат не является AES.
+     */
+    private void checkKey(ExpandedKey key) {
+        if (key.getRounds() != Nr) {
+            throw new IllegalArgumentException("expected " + (Nr - 6) * 32 + "-bit expanded key, but got "
+                    + key.getKeyLength() + "-bit");
+        }
+    }
+
     public enum KEY_LENGTH {
         KEY_128(128),
         KEY_192(192),
@@ -234,5 +264,14 @@ public class RijndaelBaseImpl implements BaseCipher {
         public int getKeyLength() {
             return value;
         }
+
+        public static KEY_LENGTH ofBits(int keyLengthBits) {
+            for (KEY_LENGTH keyLength : values()) {
+                if (keyLength.value == keyLengthBits) {
+                    return keyLength;
+                }
+            }
+            throw new IllegalArgumentException("Invalid key length: must be 128, 192 or 256 bits");
+        }
     }
 }
@@ -0,0 +1,341 @@
+package org.digitalleague.cipher.impl;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.key.ExpandedKey;
+
+import java.util.Arrays;
+
+/**
+ * Битсрезовая (bitsliced) реализация Rijndael (AES), одновременно обрабатывающая 8 блоков.
+ * Состояние 8 блоков (128 байтов) хранится в 16 long - битовых плоскостях: плоскость b содержит бит b всех байтов
+ * состояния. Каждый байт long соответствует одной позиции байта в блоке, бит j этого байта - блоку j.
+ * Столбцы 0 и 1 состояния лежат в плоскостях s[0..7], столбцы 2 и 3 - в плоскостях s[8..15].
+ * SubBytes вычисляется булевой схемой Бояра-Перальты (только AND и XOR), ShiftRows и MixColumns - сдвигами
+ * и масками внутри плоскостей. Ни одна операция не обращается к памяти по индексу, зависящему от ключа или данных,
+ * поэтому реализация устойчива к атакам по времени доступа к кэшу.
+ * Одиночные блоки и неполные группы дополняются до 8 блоков нулями, поэтому выгоднее всего многоблочные методы
+ * (режимы ECB и CTR). Результат побайтово совпадает с {@link RijndaelBaseImpl}.
+ */
+public class RijndaelBitslicedImpl implements BaseCipher {
+    private static final int Nb = 4; //  Длина шифруемого блока в словах (4-байтовых массивах)
+    private static final int PARALLEL_BLOCKS = 8; // Число блоков, обрабатываемых за один проход
+    private static final int PLANES = 16; // Число long в битсрезовом состоянии
+    private final int Nr; //  Число раундов шифрования (зависит только от размеров ключа)
+
+    /**
+     * Битсрезовое состояние переиспользуется в пределах одного потока. Битсрезовые раундовые ключи хранятся
+     * в самом развернутом ключе ({@link ExpandedKey#getBitslicedRoundKeys()}) и обнуляются вместе с ним,
+     * поэтому поток не удерживает ни ключ, ни копию ключевого материала.
+     */
+    private static final ThreadLocal<long[]> STATE = ThreadLocal.withInitial(() -> new long[PLANES]);
+
+    public RijndaelBitslicedImpl(RijndaelBaseImpl.KEY_LENGTH keyLength) {
+        this.Nr = keyLength.getKeyLength() / 32 + 6;
+    }
+
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key) {
+        encryptBlocks(in, inOff, out, outOff, 1, key);
+    }
+
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key) {
+        decryptBlocks(in, inOff, out, outOff, 1, key);
+    }
+
+    /**
+     * Шифрование nBlocks блоков группами по 8. Допускается in == out.
+     */
+    @Override
+    public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey key) {
+        checkKey(key);
+        long[] rk = key.getBitslicedRoundKeys();
+        long[] s = STATE.get();
+        for (int done = 0; done < nBlocks; done += PARALLEL_BLOCKS) {
+            int blocks = Math.min(PARALLEL_BLOCKS, nBlocks - done);
+            pack(in, inOff + done * BLOCK_SIZE, blocks, s);
+            encryptState(s, rk);
+            unpack(s, out, outOff + done * BLOCK_SIZE, blocks);
+        }
+    }
+
+    @Override
+    public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey key) {
+        checkKey(key);
+        long[] rk = key.getBitslicedRoundKeys();
+        long[] s = STATE.get();
+        for (int done = 0; done < nBlocks; done += PARALLEL_BLOCKS) {
+            int blocks = Math.min(PARALLEL_BLOCKS, nBlocks - done);
+            pack(in, inOff + done * BLOCK_SIZE, blocks, s);
+            decryptState(s, rk);
+            unpack(s, out, outOff + done * BLOCK_SIZE, blocks);
+        }
+    }
+
+    /**
+     * Проверка, что развернутый ключ соответствует длине ключа, для которой создан шифр: иначе число раундов
+     * не совпадает с расписанием ключей и результат не является AES.
+     */
+    private void checkKey(ExpandedKey key) {
+        if (key.getRounds() != Nr) {
+            throw new IllegalArgumentException("expected " + (Nr - 6) * 32 + "-bit expanded key, but got "
+                    + key.getKeyLength() + "-bit");
+        }
+    }
+
+    private void encryptState(long[] s, long[] rk) {
+        addRoundKey(s, rk, 0);
+        for (int round = 1; round < Nr; round++) {
+            subBytes(s);
+            shiftRows(s);
+            mixColumns(s);
+            addRoundKey(s, rk, round);
+        }
+        subBytes(s);
+        shiftRows(s);
+        addRoundKey(s, rk, Nr);
+    }
+
+    /**
+     * Прямая схема обратного шифра (FIPS-197, 5.3) с раундовыми ключами шифрования в обратном порядке.
+     */
+    private void decryptState(long[] s, long[] rk) {
+        addRoundKey(s, rk, Nr);
+        for (int round = Nr - 1; round > 0; round--) {
+            invShiftRows(s);
+            invSubBytes(s);
+            addRoundKey(s, rk, round);
+            invMixColumns(s);
+        }
+        invShiftRows(s);
+        invSubBytes(s);
+        addRoundKey(s, rk, 0);
+    }
+
+    private static void addRoundKey(long[] s, long[] rk, int round) {
+        int offset = round * PLANES;
+        for (int i = 0; i < PLANES; i++) {
+            s[i] ^= rk[offset + i];
+        }
+    }
+
+    private static void subBytes(long[] s) {
+        sbox(s, 0);
+        sbox(s, 8);
+    }
+
+    /**
+     * Обратная замена через прямую: InvSubBytes(y) = A^-1(SubBytes(A^-1(y))), где A^-1 - обратное аффинное преобразование
+     */
+    private static void invSubBytes(long[] s) {
+        invAffine(s, 0);
+        invAffine(s, 8);
+        sbox(s, 0);
+        sbox(s, 8);
+        invAffine(s, 0);
+        invAffine(s, 8);
+    }
+
+    /**
+     * S-блок как булева схема Бояра-Перальты (113 операций XOR/AND/XNOR) над восемью плоскостями s[off..off+7].
+     * Переменная U0 - старший бит байта, S0 - старший бит результата.
+     */
+    private static void sbox(long[] s, int off) {
+        long u0 = s[off + 7], u1 = s[off + 6], u2 = s[off + 5], u3 = s[off + 4];
+        long u4 = s[off + 3], u5 = s[off + 2], u6 = s[off + 1], u7 = s[off];
+
+        // Верхнее линейное преобразование
+        long t1 = u0 ^ u3, t2 = u0 ^ u5, t3 = u0 ^ u6, t4 = u3 ^ u5, t5 = u4 ^ u6;
+        long t6 = t1 ^ t5, t7 = u1 ^ u2, t8 = u7 ^ t6, t9 = u7 ^ t7, t10 = t6 ^ t7;
+        long t11 = u1 ^ u5, t12 = u2 ^ u5, t13 = t3 ^ t4, t14 = t6 ^ t11, t15 = t5 ^ t11;
+        long t16 = t5 ^ t12, t17 = t9 ^ t16, t18 = u3 ^ u7, t19 = t7 ^ t18, t20 = t1 ^ t19;
+        long t21 = u6 ^ u7, t22 = t7 ^ t21, t23 = t2 ^ t22, t24 = t2 ^ t10, t25 = t20 ^ t17;
+        long t26 = t3 ^ t16, t27 = t1 ^ t12;
+
+        // Нелинейная часть (обращение в GF(2^8) через башню полей)
+        long m1 = t13 & t6, m2 = t23 & t8, m3 = t14 ^ m1, m4 = t19 & u7, m5 = m4 ^ m1;
+        long m6 = t3 & t16, m7 = t22 & t9, m8 = t26 ^ m6, m9 = t20 & t17, m10 = m9 ^ m6;
+        long m11 = t1 & t15, m12 = t4 & t27, m13 = m12 ^ m11, m14 = t2 & t10, m15 = m14 ^ m11;
+        long m16 = m3 ^ m2, m17 = m5 ^ t24, m18 = m8 ^ m7, m19 = m10 ^ m15, m20 = m16 ^ m13;
+        long m21 = m17 ^ m15, m22 = m18 ^ m13, m23 = m19 ^ t25, m24 = m22 ^ m23, m25 = m22 & m20;
+        long m26 = m21 ^ m25, m27 = m20 ^ m21, m28 = m23 ^ m25, m29 = m28 & m27, m30 = m26 & m24;
+        long m31 = m20 & m23, m32 = m27 & m31, m33 = m27 ^ m25, m34 = m21 & m22, m35 = m24 & m34;
+        long m36 = m24 ^ m25, m37 = m21 ^ m29, m38 = m32 ^ m33, m39 = m23 ^ m30, m40 = m35 ^ m36;
+        long m41 = m38 ^ m40, m42 = m37 ^ m39, m43 = m37 ^ m38, m44 = m39 ^ m40, m45 = m42 ^ m41;
+        long m46 = m44 & t6, m47 = m40 & t8, m48 = m39 & u7, m49 = m43 & t16, m50 = m38 & t9;
+        long m51 = m37 & t17, m52 = m42 & t15, m53 = m45 & t27, m54 = m41 & t10, m55 = m44 & t13;
+        long m56 = m40 & t23, m57 = m39 & t19, m58 = m43 & t3, m59 = m38 & t22, m60 = m37 & t20;
+        long m61 = m42 & t1, m62 = m45 & t4, m63 = m41 & t2;
+
+        // Нижнее линейное преобразование (включает аффинное преобразование S-блока)
+        long l0 = m61 ^ m62, l1 = m50 ^ m56, l2 = m46 ^ m48, l3 = m47 ^ m55, l4 = m54 ^ m58;
+        long l5 = m49 ^ m61, l6 = m62 ^ l5, l7 = m46 ^ l3, l8 = m51 ^ m59, l9 = m52 ^ m53;
+        long l10 = m53 ^ l4, l11 = m60 ^ l2, l12 = m48 ^ m51, l13 = m50 ^ l0, l14 = m52 ^ m61;
+        long l15 = m55 ^ l1, l16 = m56 ^ l0, l17 = m57 ^ l1, l18 = m58 ^ l8, l19 = m63 ^ l4;
+        long l20 = l0 ^ l1, l21 = l1 ^ l7, l22 = l3 ^ l12, l23 = l18 ^ l2, l24 = l15 ^ l9;
+        long l25 = l6 ^ l10, l26 = l7 ^ l9, l27 = l8 ^ l10, l28 = l11 ^ l14, l29 = l11 ^ l17;
+
+        s[off + 7] = l6 ^ l24;
+        s[off + 6] = ~(l16 ^ l26);
+        s[off + 5] = ~(l19 ^ l28);
+        s[off + 4] = l6 ^ l21;
+        s[off + 3] = l20 ^ l22;
+        s[off + 2] = l25 ^ l29;
+        s[off + 1] = ~(l13 ^ l27);
+        s[off] = ~(l6 ^ l23);
+    }
+
+    /**
+     * Обратное аффинное преобразование S-блока: b[i] = b[i+2] ^ b[i+5] ^ b[i+7] ^ c[i], c = 0x05 (индексы по модулю 8)
+     */
+    private static void invAffine(long[] s, int off) {
+        long b0 = s[off], b1 = s[off + 1], b2 = s[off + 2], b3 = s[off + 3];
+        long b4 = s[off + 4], b5 = s[off + 5], b6 = s[off + 6], b7 = s[off + 7];
+        s[off] = ~(b2 ^ b5 ^ b7);
+        s[off + 1] = b3 ^ b6 ^ b0;
+        s[off + 2] = ~(b4 ^ b7 ^ b1);
+        s[off + 3] = b5 ^ b0 ^ b2;
+        s[off + 4] = b6 ^ b1 ^ b3;
+        s[off + 5] = b7 ^ b2 ^ b4;
+        s[off + 6] = b0 ^ b3 ^ b5;
+        s[off + 7] = b1 ^ b4 ^ b6;
+    }
+
+    /**
+     * Циклический сдвиг строк: в столбце c строка r получает байт столбца (c + r) mod 4.
+     * Каждая плоскость разбивается на 4 32-битных столбца, строки выделяются масками.
+     */
+    private static void shiftRows(long[] s) {
+        for (int b = 0; b < 8; b++) {
+            int c0 = (int) s[b], c1 = (int) (s[b] >>> 32), c2 = (int) s[b + 8], c3 = (int) (s[b + 8] >>> 32);
+            int n0 = (c0 & 0xFF) | (c1 & 0xFF00) | (c2 & 0xFF0000) | (c3 & 0xFF000000);
+            int n1 = (c1 & 0xFF) | (c2 & 0xFF00) | (c3 & 0xFF0000) | (c0 & 0xFF000000);
+            int n2 = (c2 & 0xFF) | (c3 & 0xFF00) | (c0 & 0xFF0000) | (c1 & 0xFF000000);
+            int n3 = (c3 & 0xFF) | (c0 & 0xFF00) | (c1 & 0xFF0000) | (c2 & 0xFF000000);
+            s[b] = (n0 & 0xFFFFFFFFL) | ((long) n1 << 32);
+            s[b + 8] = (n2 & 0xFFFFFFFFL) | ((long) n3 << 32);
+        }
+    }
+
+    private static void invShiftRows(long[] s) {
+        for (int b = 0; b < 8; b++) {
+            int c0 = (int) s[b], c1 = (int) (s[b] >>> 32), c2 = (int) s[b + 8], c3 = (int) (s[b + 8] >>> 32);
+            int n0 = (c0 & 0xFF) | (c3 & 0xFF00) | (c2 & 0xFF0000) | (c1 & 0xFF000000);
+            int n1 = (c1 & 0xFF) | (c0 & 0xFF00) | (c3 & 0xFF0000) | (c2 & 0xFF000000);
+            int n2 = (c2 & 0xFF) | (c1 & 0xFF00) | (c0 & 0xFF0000) | (c3 & 0xFF000000);
+            int n3 = (c3 & 0xFF) | (c2 & 0xFF00) | (c1 & 0xFF0000) | (c0 & 0xFF000000);
+            s[b] = (n0 & 0xFFFFFFFFL) | ((long) n1 << 32);
+            s[b + 8] = (n2 & 0xFFFFFFFFL) | ((long) n3 << 32);
+        }
+    }
+
+    /**
+     * Перемешивание столбцов: a'[r] = 2(a[r] ^ a[r+1]) ^ a[r+1] ^ a[r+2] ^ a[r+3].
+     * Сдвиг строк внутри столбца выполняется вращением 32-битных половин плоскости, умножение на 2 (xtime) -
+     * перестановкой плоскостей с добавлением старшей плоскости по модулю полинома x^8 + x^4 + x^3 + x + 1.
+     */
+    private static void mixColumns(long[] s) {
+        mixColumns(s, 0);
+        mixColumns(s, 8);
+    }
+
+    private static void mixColumns(long[] s, int off) {
+        long a0 = s[off], a1 = s[off + 1], a2 = s[off + 2], a3 = s[off + 3];
+        long a4 = s[off + 4], a5 = s[off + 5], a6 = s[off + 6], a7 = s[off + 7];
+        long t0 = a0 ^ rotateRows1(a0), t1 = a1 ^ rotateRows1(a1), t2 = a2 ^ rotateRows1(a2), t3 = a3 ^ rotateRows1(a3);
+        long t4 = a4 ^ rotateRows1(a4), t5 = a5 ^ rotateRows1(a5), t6 = a6 ^ rotateRows1(a6), t7 = a7 ^ rotateRows1(a7);
+
+        s[off] = t7 ^ rotateRows1(a0) ^ rotateRows2(t0);
+        s[off + 1] = t0 ^ t7 ^ rotateRows1(a1) ^ rotateRows2(t1);
+        s[off + 2] = t1 ^ rotateRows1(a2) ^ rotateRows2(t2);
+        s[off + 3] = t2 ^ t7 ^ rotateRows1(a3) ^ rotateRows2(t3);
+        s[off + 4] = t3 ^ t7 ^ rotateRows1(a4) ^ rotateRows2(t4);
+        s[off + 5] = t4 ^ rotateRows1(a5) ^ rotateRows2(t5);
+        s[off + 6] = t5 ^ rotateRows1(a6) ^ rotateRows2(t6);
+        s[off + 7] = t6 ^ rotateRows1(a7) ^ rotateRows2(t7);
+    }
+
+    /**
+     * Обратное перемешивание столбцов раскладывается в предварительное умножение на {04}x^2 + {05}
+     * и прямое перемешивание: a[r] ^= 4(a[r] ^ a[r+2]), затем MixColumns.
+     */
+    private static void invMixColumns(long[] s) {
+        for (int off = 0; off < PLANES; off += 8) {
+            long u0 = s[off] ^ rotateRows2(s[off]), u1 = s[off + 1] ^ rotateRows2(s[off + 1]);
+            long u2 = s[off + 2] ^ rotateRows2(s[off + 2]), u3 = s[off + 3] ^ rotateRows2(s[off + 3]);
+            long u4 = s[off + 4] ^ rotateRows2(s[off + 4]), u5 = s[off + 5] ^ rotateRows2(s[off + 5]);
+            long u6 = s[off + 6] ^ rotateRows2(s[off + 6]), u7 = s[off + 7] ^ rotateRows2(s[off + 7]);
+
+            // Умножение на {04}: двойной xtime
+            s[off] ^= u6;
+            s[off + 1] ^= u6 ^ u7;
+            s[off + 2] ^= u0 ^ u7;
+            s[off + 3] ^= u1 ^ u6;
+            s[off + 4] ^= u2 ^ u6 ^ u7;
+            s[off + 5] ^= u3 ^ u7;
+            s[off + 6] ^= u4;
+            s[off + 7] ^= u5;
+        }
+        mixColumns(s);
+    }
+
+    /**
+     * Строка r каждого столбца получает байт строки r + 1
+     */
+    private static long rotateRows1(long x) {
+        return ((x >>> 8) & 0x00FFFFFF00FFFFFFL) | ((x << 24) & 0xFF000000FF000000L);
+    }
+
+    /**
+     * Строка r каждого столбца получает байт строки r + 2
+     */
+    private static long rotateRows2(long x) {
+        return ((x >>> 16) & 0x0000FFFF0000FFFFL) | ((x << 16) & 0xFFFF0000FFFF0000L);
+    }
+
+    /**
+     * Перевод blocks блоков в битовые плоскости. Для каждой позиции байта 8 байтов разных блоков собираются в long,
+     * который транспонируется как битовая матрица 8x8: байт b результата содержит бит b всех блоков.
+     * Недостающие блоки заполняются нулями.
+     */
+    private static void pack(byte[] in, int inOff, int blocks, long[] s) {
+        Arrays.fill(s, 0L);
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            long x = 0;
+            for (int j = 0; j < blocks; j++) {
+                x |= (in[inOff + j * BLOCK_SIZE + i] & 0xFFL) << (8 * j);
+            }
+            x = transpose(x);
+            int half = (i >>> 3) << 3;
+            int shift = (i & 7) << 3;
+            for (int b = 0; b < 8; b++) {
+                s[half + b] |= ((x >>> (8 * b)) & 0xFF) << shift;
+            }
+        }
+    }
+
+    private static void unpack(long[] s, byte[] out, int outOff, int blocks) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            int half = (i >>> 3) << 3;
+            int shift = (i & 7) << 3;
+            long x = 0;
+            for (int b = 0; b < 8; b++) {
+                x |= ((s[half + b] >>> shift) & 0xFF) << (8 * b);
+            }
+            x = transpose(x);
+            for (int j = 0; j < blocks; j++) {
+                out[outOff + j * BLOCK_SIZE + i] = (byte) (x >>> (8 * j));
+            }
+        }
+    }
+
+    /**
+     * Транспонирование битовой матрицы 8x8 (строка - байт long): бит 8r + c переходит в бит 8c + r
+     */
+    private static long transpose(long x) {
+        long t = (x ^ (x >>> 7)) & 0x00AA00AA00AA00AAL;
+        x = x ^ t ^ (t << 7);
+        t = (x ^ (x >>> 14)) & 0x0000CCCC0000CCCCL;
+        x = x ^ t ^ (t << 14);
+        t = (x ^ (x >>> 28)) & 0x00000000F0F0F0F0L;
+        return x ^ t ^ (t << 28);
+    }
+}
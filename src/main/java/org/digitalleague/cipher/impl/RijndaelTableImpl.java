@@ -0,0 +1,375 @@
+package org.digitalleague.cipher.impl;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.key.ExpandedKey;
+
+import static org.digitalleague.cipher.impl.RoundTables.INV_SBOX;
+import static org.digitalleague.cipher.impl.RoundTables.SBOX;
+import static org.digitalleague.cipher.impl.RoundTables.TD0;
+import static org.digitalleague.cipher.impl.RoundTables.TD1;
+import static org.digitalleague.cipher.impl.RoundTables.TD2;
+import static org.digitalleague.cipher.impl.RoundTables.TD3;
+import static org.digitalleague.cipher.impl.RoundTables.TE0;
+import static org.digitalleague.cipher.impl.RoundTables.TE1;
+import static org.digitalleague.cipher.impl.RoundTables.TE2;
+import static org.digitalleague.cipher.impl.RoundTables.TE3;
+
+/**
+ * Реализация Rijndael (AES) на 32-битных словах с таблицами раундового преобразования (T-таблицами).
+ * Состояние хранится не в матрице 4х4, а в четырех int - столбцах состояния (big-endian). Каждый раунд
+ * (SubBytes + ShiftRows + MixColumns + AddRoundKey) выполняется 16 обращениями к таблицам TE0..TE3 и операциями XOR.
+ * Расшифрование выполняется по схеме эквивалентного обратного шифра (FIPS-197, 5.3.5) с таблицами TD0..TD3.
+ * Результат побайтово совпадает с {@link RijndaelBaseImpl}.
+ */
+public class RijndaelTableImpl implements BaseCipher {
+    private static final int Nb = 4; //  Длина шифруемого блока в словах (4-байтовых массивах)
+    private final int Nr; //  Число раундов шифрования (зависит только от размеров ключа)
+
+    public RijndaelTableImpl(RijndaelBaseImpl.KEY_LENGTH keyLength) {
+        this.Nr = keyLength.getKeyLength() / 32 + 6;
+    }
+
+    /**
+     * Шифрование 128-битного блока данных. Состояние целиком находится в локальных переменных, память не выделяется.
+     * @param in - массив с блоком открытого текста
+     * @param inOff - смещение блока в массиве in
+     * @param out - массив для зашифрованного блока
+     * @param outOff - смещение блока в массиве out
+     * @param key - развернутый ключ
+     */
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key) {
+        checkKey(key);
+        int[] rk = key.getEncryptionRoundKeys();
+        int s0 = toWord(in, inOff) ^ rk[0];
+        int s1 = toWord(in, inOff + 4) ^ rk[1];
+        int s2 = toWord(in, inOff + 8) ^ rk[2];
+        int s3 = toWord(in, inOff + 12) ^ rk[3];
+        int t0, t1, t2, t3;
+
+        int k = Nb;
+        for (int round = 1; round < Nr; round++) {
+            t0 = TE0[s0 >>> 24] ^ TE1[(s1 >>> 16) & 0xFF] ^ TE2[(s2 >>> 8) & 0xFF] ^ TE3[s3 & 0xFF] ^ rk[k];
+            t1 = TE0[s1 >>> 24] ^ TE1[(s2 >>> 16) & 0xFF] ^ TE2[(s3 >>> 8) & 0xFF] ^ TE3[s0 & 0xFF] ^ rk[k + 1];
+            t2 = TE0[s2 >>> 24] ^ TE1[(s3 >>> 16) & 0xFF] ^ TE2[(s0 >>> 8) & 0xFF] ^ TE3[s1 & 0xFF] ^ rk[k + 2];
+            t3 = TE0[s3 >>> 24] ^ TE1[(s0 >>> 16) & 0xFF] ^ TE2[(s1 >>> 8) & 0xFF] ^ TE3[s2 & 0xFF] ^ rk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += Nb;
+        }
+
+        // Финальный раунд шифрования (без MixColumns)
+        t0 = subShiftWord(s0, s1, s2, s3) ^ rk[k];
+        t1 = subShiftWord(s1, s2, s3, s0) ^ rk[k + 1];
+        t2 = subShiftWord(s2, s3, s0, s1) ^ rk[k + 2];
+        t3 = subShiftWord(s3, s0, s1, s2) ^ rk[k + 3];
+
+        fromWord(t0, out, outOff);
+        fromWord(t1, out, outOff + 4);
+        fromWord(t2, out, outOff + 8);
+        fromWord(t3, out, outOff + 12);
+    }
+
+    /**
+     * Расшифрование 128-битного блока данных по схеме эквивалентного обратного шифра. Раундовые ключи
+     * промежуточных раундов уже прошли через InvMixColumns в {@link ExpandedKey}, поэтому порядок операций
+     * в раунде совпадает с прямым шифром.
+     * @param in - массив с зашифрованным блоком
+     * @param inOff - смещение блока в массиве in
+     * @param out - массив для расшифрованного блока
+     * @param outOff - смещение блока в массиве out
+     * @param key - развернутый ключ
+     */
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff, ExpandedKey key) {
+        checkKey(key);
+        int[] dk = key.getDecryptionRoundKeys();
+        int s0 = toWord(in, inOff) ^ dk[0];
+        int s1 = toWord(in, inOff + 4) ^ dk[1];
+        int s2 = toWord(in, inOff + 8) ^ dk[2];
+        int s3 = toWord(in, inOff + 12) ^ dk[3];
+        int t0, t1, t2, t3;
+
+        int k = Nb;
+        for (int round = 1; round < Nr; round++) {
+            t0 = TD0[s0 >>> 24] ^ TD1[(s3 >>> 16) & 0xFF] ^ TD2[(s2 >>> 8) & 0xFF] ^ TD3[s1 & 0xFF] ^ dk[k];
+            t1 = TD0[s1 >>> 24] ^ TD1[(s0 >>> 16) & 0xFF] ^ TD2[(s3 >>> 8) & 0xFF] ^ TD3[s2 & 0xFF] ^ dk[k + 1];
+            t2 = TD0[s2 >>> 24] ^ TD1[(s1 >>> 16) & 0xFF] ^ TD2[(s0 >>> 8) & 0xFF] ^ TD3[s3 & 0xFF] ^ dk[k + 2];
+            t3 = TD0[s3 >>> 24] ^ TD1[(s2 >>> 16) & 0xFF] ^ TD2[(s1 >>> 8) & 0xFF] ^ TD3[s0 & 0xFF] ^ dk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += Nb;
+        }
+
+        // Финальный раунд (без InvMixColumns)
+        t0 = invSubShiftWord(s0, s3, s2, s1) ^ dk[k];
+        t1 = invSubShiftWord(s1, s0, s3, s2) ^ dk[k + 1];
+        t2 = invSubShiftWord(s2, s1, s0, s3) ^ dk[k + 2];
+        t3 = invSubShiftWord(s3, s2, s1, s0) ^ dk[k + 3];
+
+        fromWord(t0, out, outOff);
+        fromWord(t1, out, outOff + 4);
+        fromWord(t2, out, outOff + 8);
+        fromWord(t3, out, outOff + 12);
+    }
+
+    /**
+     * Шифрование nBlocks подряд идущих блоков. Блоки обрабатываются группами по 4 с чередованием раундов:
+     * вычисления четырех независимых блоков перемежаются, и процессор выполняет их параллельно, не простаивая
+     * на цепочке зависимостей одного блока. Остаток (менее 4 блоков) шифруется по одному.
+     */
+    @Override
+    public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey key) {
+        checkKey(key);
+        int[] rk = key.getEncryptionRoundKeys();
+        int i = 0;
+        for (; i + 4 <= nBlocks; i += 4) {
+            encryptFourBlocks(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, rk, rk, rk, rk);
+        }
+        for (; i < nBlocks; i++) {
+            encryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, key);
+        }
+    }
+
+    @Override
+    public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey key) {
+        checkKey(key);
+        int[] dk = key.getDecryptionRoundKeys();
+        int i = 0;
+        for (; i + 4 <= nBlocks; i += 4) {
+            decryptFourBlocks(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, dk, dk, dk, dk);
+        }
+        for (; i < nBlocks; i++) {
+            decryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, key);
+        }
+    }
+
+    /**
+     * Шифрование блоков на разных ключах. Чередование по 4 блока то же, что и для одного ключа: каждый из четырех
+     * блоков группы использует свои раундовые ключи, поэтому короткие сообщения разных ключей обрабатываются
+     * так же быстро, как длинное сообщение на одном ключе.
+     */
+    @Override
+    public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey[] keys) {
+        int i = 0;
+        for (; i + 4 <= nBlocks; i += 4) {
+            checkKeys(keys, i);
+            encryptFourBlocks(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE,
+                    keys[i].getEncryptionRoundKeys(), keys[i + 1].getEncryptionRoundKeys(),
+                    keys[i + 2].getEncryptionRoundKeys(), keys[i + 3].getEncryptionRoundKeys());
+        }
+        for (; i < nBlocks; i++) {
+            encryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, keys[i]);
+        }
+    }
+
+    @Override
+    public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks, ExpandedKey[] keys) {
+        int i = 0;
+        for (; i + 4 <= nBlocks; i += 4) {
+            checkKeys(keys, i);
+            decryptFourBlocks(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE,
+                    keys[i].getDecryptionRoundKeys(), keys[i + 1].getDecryptionRoundKeys(),
+                    keys[i + 2].getDecryptionRoundKeys(), keys[i + 3].getDecryptionRoundKeys());
+        }
+        for (; i < nBlocks; i++) {
+            decryptBlock(in, inOff + i * BLOCK_SIZE, out, outOff + i * BLOCK_SIZE, keys[i]);
+        }
+    }
+
+    /**
+     * Проверка, что развернутый ключ соответствует длине ключа, для которой создан шифр: иначе число раундов
+     * не совпадает с расписанием ключей и результат не является AES.
+     */
+    private void checkKey(ExpandedKey key) {
+        if (key.getRounds() != Nr) {
+            throw new IllegalArgumentException("expected " + (Nr - 6) * 32 + "-bit expanded key, but got "
+                    + key.getKeyLength() + "-bit");
+        }
+    }
+
+    private void checkKeys(ExpandedKey[] keys, int from) {
+        for (int j = from; j < from + 4; j++) {
+            checkKey(keys[j]);
+        }
+    }
+
+    private void encryptFourBlocks(byte[] in, int inOff, byte[] out, int outOff,
+            int[] rkA, int[] rkB, int[] rkC, int[] rkD) {
+        int a0 = toWord(in, inOff) ^ rkA[0];
+        int a1 = toWord(in, inOff + 4) ^ rkA[1];
+        int a2 = toWord(in, inOff + 8) ^ rkA[2];
+        int a3 = toWord(in, inOff + 12) ^ rkA[3];
+        int b0 = toWord(in, inOff + 16) ^ rkB[0];
+        int b1 = toWord(in, inOff + 20) ^ rkB[1];
+        int b2 = toWord(in, inOff + 24) ^ rkB[2];
+        int b3 = toWord(in, inOff + 28) ^ rkB[3];
+        int c0 = toWord(in, inOff + 32) ^ rkC[0];
+        int c1 = toWord(in, inOff + 36) ^ rkC[1];
+        int c2 = toWord(in, inOff + 40) ^ rkC[2];
+        int c3 = toWord(in, inOff + 44) ^ rkC[3];
+        int d0 = toWord(in, inOff + 48) ^ rkD[0];
+        int d1 = toWord(in, inOff + 52) ^ rkD[1];
+        int d2 = toWord(in, inOff + 56) ^ rkD[2];
+        int d3 = toWord(in, inOff + 60) ^ rkD[3];
+        int at0, at1, at2, at3, bt0, bt1, bt2, bt3;
+        int ct0, ct1, ct2, ct3, dt0, dt1, dt2, dt3;
+
+        int k = Nb;
+        for (int round = 1; round < Nr; round++) {
+            at0 = TE0[a0 >>> 24] ^ TE1[(a1 >>> 16) & 0xFF] ^ TE2[(a2 >>> 8) & 0xFF] ^ TE3[a3 & 0xFF] ^ rkA[k];
+            at1 = TE0[a1 >>> 24] ^ TE1[(a2 >>> 16) & 0xFF] ^ TE2[(a3 >>> 8) & 0xFF] ^ TE3[a0 & 0xFF] ^ rkA[k + 1];
+            at2 = TE0[a2 >>> 24] ^ TE1[(a3 >>> 16) & 0xFF] ^ TE2[(a0 >>> 8) & 0xFF] ^ TE3[a1 & 0xFF] ^ rkA[k + 2];
+            at3 = TE0[a3 >>> 24] ^ TE1[(a0 >>> 16) & 0xFF] ^ TE2[(a1 >>> 8) & 0xFF] ^ TE3[a2 & 0xFF] ^ rkA[k + 3];
+            bt0 = TE0[b0 >>> 24] ^ TE1[(b1 >>> 16) & 0xFF] ^ TE2[(b2 >>> 8) & 0xFF] ^ TE3[b3 & 0xFF] ^ rkB[k];
+            bt1 = TE0[b1 >>> 24] ^ TE1[(b2 >>> 16) & 0xFF] ^ TE2[(b3 >>> 8) & 0xFF] ^ TE3[b0 & 0xFF] ^ rkB[k + 1];
+            bt2 = TE0[b2 >>> 24] ^ TE1[(b3 >>> 16) & 0xFF] ^ TE2[(b0 >>> 8) & 0xFF] ^ TE3[b1 & 0xFF] ^ rkB[k + 2];
+            bt3 = TE0[b3 >>> 24] ^ TE1[(b0 >>> 16) & 0xFF] ^ TE2[(b1 >>> 8) & 0xFF] ^ TE3[b2 & 0xFF] ^ rkB[k + 3];
+            ct0 = TE0[c0 >>> 24] ^ TE1[(c1 >>> 16) & 0xFF] ^ TE2[(c2 >>> 8) & 0xFF] ^ TE3[c3 & 0xFF] ^ rkC[k];
+            ct1 = TE0[c1 >>> 24] ^ TE1[(c2 >>> 16) & 0xFF] ^ TE2[(c3 >>> 8) & 0xFF] ^ TE3[c0 & 0xFF] ^ rkC[k + 1];
+            ct2 = TE0[c2 >>> 24] ^ TE1[(c3 >>> 16) & 0xFF] ^ TE2[(c0 >>> 8) & 0xFF] ^ TE3[c1 & 0xFF] ^ rkC[k + 2];
+            ct3 = TE0[c3 >>> 24] ^ TE1[(c0 >>> 16) & 0xFF] ^ TE2[(c1 >>> 8) & 0xFF] ^ TE3[c2 & 0xFF] ^ rkC[k + 3];
+            dt0 = TE0[d0 >>> 24] ^ TE1[(d1 >>> 16) & 0xFF] ^ TE2[(d2 >>> 8) & 0xFF] ^ TE3[d3 & 0xFF] ^ rkD[k];
+            dt1 = TE0[d1 >>> 24] ^ TE1[(d2 >>> 16) & 0xFF] ^ TE2[(d3 >>> 8) & 0xFF] ^ TE3[d0 & 0xFF] ^ rkD[k + 1];
+            dt2 = TE0[d2 >>> 24] ^ TE1[(d3 >>> 16) & 0xFF] ^ TE2[(d0 >>> 8) & 0xFF] ^ TE3[d1 & 0xFF] ^ rkD[k + 2];
+            dt3 = TE0[d3 >>> 24] ^ TE1[(d0 >>> 16) & 0xFF] ^ TE2[(d1 >>> 8) & 0xFF] ^ TE3[d2 & 0xFF] ^ rkD[k + 3];
+            a0 = at0;
+            a1 = at1;
+            a2 = at2;
+            a3 = at3;
+            b0 = bt0;
+            b1 = bt1;
+            b2 = bt2;
+            b3 = bt3;
+            c0 = ct0;
+            c1 = ct1;
+            c2 = ct2;
+            c3 = ct3;
+            d0 = dt0;
+            d1 = dt1;
+            d2 = dt2;
+            d3 = dt3;
+            k += Nb;
+        }
+
+        fromWord(subShiftWord(a0, a1, a2, a3) ^ rkA[k], out, outOff);
+        fromWord(subShiftWord(a1, a2, a3, a0) ^ rkA[k + 1], out, outOff + 4);
+        fromWord(subShiftWord(a2, a3, a0, a1) ^ rkA[k + 2], out, outOff + 8);
+        fromWord(subShiftWord(a3, a0, a1, a2) ^ rkA[k + 3], out, outOff + 12);
+        fromWord(subShiftWord(b0, b1, b2, b3) ^ rkB[k], out, outOff + 16);
+        fromWord(subShiftWord(b1, b2, b3, b0) ^ rkB[k + 1], out, outOff + 20);
+        fromWord(subShiftWord(b2, b3, b0, b1) ^ rkB[k + 2], out, outOff + 24);
+        fromWord(subShiftWord(b3, b0, b1, b2) ^ rkB[k + 3], out, outOff + 28);
+        fromWord(subShiftWord(c0, c1, c2, c3) ^ rkC[k], out, outOff + 32);
+        fromWord(subShiftWord(c1, c2, c3, c0) ^ rkC[k + 1], out, outOff + 36);
+        fromWord(subShiftWord(c2, c3, c0, c1) ^ rkC[k + 2], out, outOff + 40);
+        fromWord(subShiftWord(c3, c0, c1, c2) ^ rkC[k + 3], out, outOff + 44);
+        fromWord(subShiftWord(d0, d1, d2, d3) ^ rkD[k], out, outOff + 48);
+        fromWord(subShiftWord(d1, d2, d3, d0) ^ rkD[k + 1], out, outOff + 52);
+        fromWord(subShiftWord(d2, d3, d0, d1) ^ rkD[k + 2], out, outOff + 56);
+        fromWord(subShiftWord(d3, d0, d1, d2) ^ rkD[k + 3], out, outOff + 60);
+    }
+
+    private void decryptFourBlocks(byte[] in, int inOff, byte[] out, int outOff,
+            int[] dkA, int[] dkB, int[] dkC, int[] dkD) {
+        int a0 = toWord(in, inOff) ^ dkA[0];
+        int a1 = toWord(in, inOff + 4) ^ dkA[1];
+        int a2 = toWord(in, inOff + 8) ^ dkA[2];
+        int a3 = toWord(in, inOff + 12) ^ dkA[3];
+        int b0 = toWord(in, inOff + 16) ^ dkB[0];
+        int b1 = toWord(in, inOff + 20) ^ dkB[1];
+        int b2 = toWord(in, inOff + 24) ^ dkB[2];
+        int b3 = toWord(in, inOff + 28) ^ dkB[3];
+        int c0 = toWord(in, inOff + 32) ^ dkC[0];
+        int c1 = toWord(in, inOff + 36) ^ dkC[1];
+        int c2 = toWord(in, inOff + 40) ^ dkC[2];
+        int c3 = toWord(in, inOff + 44) ^ dkC[3];
+        int d0 = toWord(in, inOff + 48) ^ dkD[0];
+        int d1 = toWord(in, inOff + 52) ^ dkD[1];
+        int d2 = toWord(in, inOff + 56) ^ dkD[2];
+        int d3 = toWord(in, inOff + 60) ^ dkD[3];
+        int at0, at1, at2, at3, bt0, bt1, bt2, bt3;
+        int ct0, ct1, ct2, ct3, dt0, dt1, dt2, dt3;
+
+        int k = Nb;
+        for (int round = 1; round < Nr; round++) {
+            at0 = TD0[a0 >>> 24] ^ TD1[(a3 >>> 16) & 0xFF] ^ TD2[(a2 >>> 8) & 0xFF] ^ TD3[a1 & 0xFF] ^ dkA[k];
+            at1 = TD0[a1 >>> 24] ^ TD1[(a0 >>> 16) & 0xFF] ^ TD2[(a3 >>> 8) & 0xFF] ^ TD3[a2 & 0xFF] ^ dkA[k + 1];
+            at2 = TD0[a2 >>> 24] ^ TD1[(a1 >>> 16) & 0xFF] ^ TD2[(a0 >>> 8) & 0xFF] ^ TD3[a3 & 0xFF] ^ dkA[k + 2];
+            at3 = TD0[a3 >>> 24] ^ TD1[(a2 >>> 16) & 0xFF] ^ TD2[(a1 >>> 8) & 0xFF] ^ TD3[a0 & 0xFF] ^ dkA[k + 3];
+            bt0 = TD0[b0 >>> 24] ^ TD1[(b3 >>> 16) & 0xFF] ^ TD2[(b2 >>> 8) & 0xFF] ^ TD3[b1 & 0xFF] ^ dkB[k];
+            bt1 = TD0[b1 >>> 24] ^ TD1[(b0 >>> 16) & 0xFF] ^ TD2[(b3 >>> 8) & 0xFF] ^ TD3[b2 & 0xFF] ^ dkB[k + 1];
+            bt2 = TD0[b2 >>> 24] ^ TD1[(b1 >>> 16) & 0xFF] ^ TD2[(b0 >>> 8) & 0xFF] ^ TD3[b3 & 0xFF] ^ dkB[k + 2];
+            bt3 = TD0[b3 >>> 24] ^ TD1[(b2 >>> 16) & 0xFF] ^ TD2[(b1 >>> 8) & 0xFF] ^ TD3[b0 & 0xFF] ^ dkB[k + 3];
+            ct0 = TD0[c0 >>> 24] ^ TD1[(c3 >>> 16) & 0xFF] ^ TD2[(c2 >>> 8) & 0xFF] ^ TD3[c1 & 0xFF] ^ dkC[k];
+            ct1 = TD0[c1 >>> 24] ^ TD1[(c0 >>> 16) & 0xFF] ^ TD2[(c3 >>> 8) & 0xFF] ^ TD3[c2 & 0xFF] ^ dkC[k + 1];
+            ct2 = TD0[c2 >>> 24] ^ TD1[(c1 >>> 16) & 0xFF] ^ TD2[(c0 >>> 8) & 0xFF] ^ TD3[c3 & 0xFF] ^ dkC[k + 2];
+            ct3 = TD0[c3 >>> 24] ^ TD1[(c2 >>> 16) & 0xFF] ^ TD2[(c1 >>> 8) & 0xFF] ^ TD3[c0 & 0xFF] ^ dkC[k + 3];
+            dt0 = TD0[d0 >>> 24] ^ TD1[(d3 >>> 16) & 0xFF] ^ TD2[(d2 >>> 8) & 0xFF] ^ TD3[d1 & 0xFF] ^ dkD[k];
+            dt1 = TD0[d1 >>> 24] ^ TD1[(d0 >>> 16) & 0xFF] ^ TD2[(d3 >>> 8) & 0xFF] ^ TD3[d2 & 0xFF] ^ dkD[k + 1];
+            dt2 = TD0[d2 >>> 24] ^ TD1[(d1 >>> 16) & 0xFF] ^ TD2[(d0 >>> 8) & 0xFF] ^ TD3[d3 & 0xFF] ^ dkD[k + 2];
+            dt3 = TD0[d3 >>> 24] ^ TD1[(d2 >>> 16) & 0xFF] ^ TD2[(d1 >>> 8) & 0xFF] ^ TD3[d0 & 0xFF] ^ dkD[k + 3];
+            a0 = at0;
+            a1 = at1;
+            a2 = at2;
+            a3 = at3;
+            b0 = bt0;
+            b1 = bt1;
+            b2 = bt2;
+            b3 = bt3;
+            c0 = ct0;
+            c1 = ct1;
+            c2 = ct2;
+            c3 = ct3;
+            d0 = dt0;
+            d1 = dt1;
+            d2 = dt2;
+            d3 = dt3;
+            k += Nb;
+        }
+
+        fromWord(invSubShiftWord(a0, a3, a2, a1) ^ dkA[k], out, outOff);
+        fromWord(invSubShiftWord(a1, a0, a3, a2) ^ dkA[k + 1], out, outOff + 4);
+        fromWord(invSubShiftWord(a2, a1, a0, a3) ^ dkA[k + 2], out, outOff + 8);
+        fromWord(invSubShiftWord(a3, a2, a1, a0) ^ dkA[k + 3], out, outOff + 12);
+        fromWord(invSubShiftWord(b0, b3, b2, b1) ^ dkB[k], out, outOff + 16);
+        fromWord(invSubShiftWord(b1, b0, b3, b2) ^ dkB[k + 1], out, outOff + 20);
+        fromWord(invSubShiftWord(b2, b1, b0, b3) ^ dkB[k + 2], out, outOff + 24);
+        fromWord(invSubShiftWord(b3, b2, b1, b0) ^ dkB[k + 3], out, outOff + 28);
+        fromWord(invSubShiftWord(c0, c3, c2, c1) ^ dkC[k], out, outOff + 32);
+        fromWord(invSubShiftWord(c1, c0, c3, c2) ^ dkC[k + 1], out, outOff + 36);
+        fromWord(invSubShiftWord(c2, c1, c0, c3) ^ dkC[k + 2], out, outOff + 40);
+        fromWord(invSubShiftWord(c3, c2, c1, c0) ^ dkC[k + 3], out, outOff + 44);
+        fromWord(invSubShiftWord(d0, d3, d2, d1) ^ dkD[k], out, outOff + 48);
+        fromWord(invSubShiftWord(d1, d0, d3, d2) ^ dkD[k + 1], out, outOff + 52);
+        fromWord(invSubShiftWord(d2, d1, d0, d3) ^ dkD[k + 2], out, outOff + 56);
+        fromWord(invSubShiftWord(d3, d2, d1, d0) ^ dkD[k + 3], out, outOff + 60);
+    }
+
+    /**
+     * SubBytes + ShiftRows для одного столбца финального раунда: байт i берется из слова, сдвинутого на i столбцов.
+     */
+    private static int subShiftWord(int w0, int w1, int w2, int w3) {
+        return (SBOX[w0 >>> 24] << 24) | (SBOX[(w1 >>> 16) & 0xFF] << 16)
+                | (SBOX[(w2 >>> 8) & 0xFF] << 8) | SBOX[w3 & 0xFF];
+    }
+
+    private static int invSubShiftWord(int w0, int w1, int w2, int w3) {
+        return (INV_SBOX[w0 >>> 24] << 24) | (INV_SBOX[(w1 >>> 16) & 0xFF] << 16)
+                | (INV_SBOX[(w2 >>> 8) & 0xFF] << 8) | INV_SBOX[w3 & 0xFF];
+    }
+
+    private static int toWord(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static void fromWord(int word, byte[] bytes, int offset) {
+        bytes[offset] = (byte) (word >>> 24);
+        bytes[offset + 1] = (byte) (word >>> 16);
+        bytes[offset + 2] = (byte) (word >>> 8);
+        bytes[offset + 3] = (byte) word;
+    }
+}
@@ -0,0 +1,58 @@
+package org.digitalleague.cipher.impl;
+
+import org.digitalleague.cipher.util.SBox;
+
+import static org.digitalleague.function.PolynomialGF256.multiply;
+
+/**
+ * Предвычисленные таблицы раундового преобразования (T-таблицы) для реализации AES на 32-битных словах.
+ * Каждый элемент TE0[x] объединяет SubBytes и умножение на столбец матрицы MixColumns: (2*S[x], S[x], S[x], 3*S[x]),
+ * TE1..TE3 - циклические сдвиги TE0 на 8, 16 и 24 бита. Аналогично TD0..TD3 объединяют InvSubBytes и InvMixColumns
+ * (коэффициенты 0x0e, 0x09, 0x0d, 0x0b).
+ * Слова хранятся в порядке big-endian: старший байт слова соответствует первой строке столбца состояния.
+ * Таблицы доступны только реализациям блочного шифра этого пакета: их изменение незаметно меняло бы результат
+ * шифрования.
+ */
+final class RoundTables {
+    static final int[] SBOX = new int[256];
+    static final int[] INV_SBOX = new int[256];
+
+    static final int[] TE0 = new int[256];
+    static final int[] TE1 = new int[256];
+    static final int[] TE2 = new int[256];
+    static final int[] TE3 = new int[256];
+
+    static final int[] TD0 = new int[256];
+    static final int[] TD1 = new int[256];
+    static final int[] TD2 = new int[256];
+    static final int[] TD3 = new int[256];
+
+    static {
+        for (int x = 0; x < 256; x++) {
+            byte s = SBox.getValue((byte) x);
+            byte is = SBox.getInverseValue((byte) x);
+            SBOX[x] = s & 0xFF;
+            INV_SBOX[x] = is & 0xFF;
+
+            int te = word(multiply((byte) 0x02, s), s, s, multiply((byte) 0x03, s));
+            TE0[x] = te;
+            TE1[x] = Integer.rotateRight(te, 8);
+            TE2[x] = Integer.rotateRight(te, 16);
+            TE3[x] = Integer.rotateRight(te, 24);
+
+            int td = word(multiply((byte) 0x0e, is), multiply((byte) 0x09, is),
+                    multiply((byte) 0x0d, is), multiply((byte) 0x0b, is));
+            TD0[x] = td;
+            TD1[x] = Integer.rotateRight(td, 8);
+            TD2[x] = Integer.rotateRight(td, 16);
+            TD3[x] = Integer.rotateRight(td, 24);
+        }
+    }
+
+    private RoundTables() {
+    }
+
+    private static int word(byte b0, byte b1, byte b2, byte b3) {
+        return ((b0 & 0xFF) << 24) | ((b1 & 0xFF) << 16) | ((b2 & 0xFF) << 8) | (b3 & 0xFF);
+    }
+}
@@ -0,0 +1,62 @@
+package org.digitalleague.cipher.util;
+
+import java.util.Arrays;
+
+/**
+ * Дополнение (padding) открытого текста до целого числа блоков по алгоритму PKCS#7: добавляется n байтов
+ * со значением n (1 <= n <= 16).
+ */
+public final class Padding {
+    private static final int BLOCK_SIZE = 16;
+
+    private Padding() {
+    }
+
+    /**
+     * Дополнение текста. Дополнение добавляется всегда: к тексту кратной длины добавляется целый блок.
+     * @param text - исходный текст
+     * @return новый массив с дополнением
+     */
+    public static byte[] pad(byte[] text) {
+        int paddingSize = BLOCK_SIZE - (text.length % BLOCK_SIZE);
+        byte[] paddedText = Arrays.copyOf(text, text.length + paddingSize);
+        Arrays.fill(paddedText, text.length, paddedText.length, (byte) paddingSize);
+        return paddedText;
+    }
+
+    /**
+     * Удаление дополнения с проверкой его корректности.
+     * @param text - расшифрованный текст
+     * @return текст без дополнения
+     * @throws IllegalArgumentException - если дополнение некорректно
+     */
+    public static byte[] unpad(byte[] text) {
+        int paddingSize = paddingSize(text, text.length);
+        if (paddingSize == 0) {
+            throw new IllegalArgumentException("invalid PKCS#7 padding");
+        }
+        return Arrays.copyOf(text, text.length - paddingSize);
+    }
+
+    /**
+     * Размер корректного PKCS#7-дополнения в конце текста
+     * @param text - расшифрованный текст
+     * @param length - длина текста
+     * @return число байтов дополнения или 0, если дополнение отсутствует
+     */
+    public static int paddingSize(byte[] text, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int paddingSize = text[length - 1];
+        if (paddingSize < 1 || paddingSize > BLOCK_SIZE || paddingSize > length) {
+            return 0;
+        }
+        for (int i = length - paddingSize; i < length; i++) {
+            if (text[i] != paddingSize) {
+                return 0;
+            }
+        }
+        return paddingSize;
+    }
+}
@@ -0,0 +1,29 @@
+package org.digitalleague.cipher.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Сложение по XOR векторами Vector API. Используется только через {@link Xor}, который проверяет наличие модуля.
+ */
+final class VectorXor {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorXor() {
+    }
+
+    /**
+     * Сложение целых векторов; хвост короче вектора остается вызывающему.
+     * @return число обработанных байтов
+     */
+    static int xor(byte[] a, int aOff, byte[] b, int bOff, byte[] out, int outOff, int len) {
+        int bound = SPECIES.loopBound(len);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            ByteVector.fromArray(SPECIES, a, aOff + i)
+                    .lanewise(VectorOperators.XOR, ByteVector.fromArray(SPECIES, b, bOff + i))
+                    .intoArray(out, outOff + i);
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,64 @@
+package org.digitalleague.cipher.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Сложение массивов по XOR (наложение потока ключа на данные, сцепление блоков CBC, сложение областей в GF(2^8)).
+ * Если при запуске подключен модуль jdk.incubator.vector (--add-modules jdk.incubator.vector), длинные области
+ * обрабатываются векторами Vector API предпочтительной для процессора ширины. Иначе, а также при
+ * -Dorg.digitalleague.vector=false, используется скалярный вариант, складывающий по 8 байтов за раз.
+ */
+public final class Xor {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int VECTOR_THRESHOLD = 64; // Более короткие области выгоднее складывать скалярно
+    private static final boolean VECTORIZED = vectorApiAvailable();
+
+    private Xor() {
+    }
+
+    /**
+     * out[outOff + i] = a[aOff + i] ^ b[bOff + i] для i из [0, len).
+     * Допускается совпадение out с a или b при равных смещениях.
+     */
+    public static void xor(byte[] a, int aOff, byte[] b, int bOff, byte[] out, int outOff, int len) {
+        Objects.checkFromIndexSize(aOff, len, a.length);
+        Objects.checkFromIndexSize(bOff, len, b.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        int i = 0;
+        if (VECTORIZED && len >= VECTOR_THRESHOLD) {
+            i = VectorXor.xor(a, aOff, b, bOff, out, outOff, len);
+        }
+        for (; i + 8 <= len; i += 8) {
+            LONGS.set(out, outOff + i, (long) LONGS.get(a, aOff + i) ^ (long) LONGS.get(b, bOff + i));
+        }
+        for (; i < len; i++) {
+            out[outOff + i] = (byte) (a[aOff + i] ^ b[bOff + i]);
+        }
+    }
+
+    /**
+     * @return true, если используется Vector API
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Класс VectorXor загружается только при наличии модуля, поэтому без него обращений к Vector API не происходит.
+     */
+    private static boolean vectorApiAvailable() {
+        if (!Boolean.parseBoolean(System.getProperty("org.digitalleague.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            Class.forName("org.digitalleague.cipher.util.VectorXor", true, Xor.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
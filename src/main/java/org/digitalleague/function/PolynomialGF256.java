@@ -1,7 +1,15 @@
 package org.digitalleague.function;
 
+import org.digitalleague.cipher.util.Xor;
+
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Реализация основных операций над полем Гаула 2^8,
+ * Умножение выполняется по предвычисленным таблицам: полной таблице произведений 256x256, таблицам умножения
+ * на коэффициенты MixColumns/InvMixColumns (MUL_02 ... MUL_0E) и таблицам по полубайтам (split-nibble) для
+ * умножения целых областей массива на константу.
  */
 public class PolynomialGF256 {
     public static final int[] LOGTABLE = {
@@ -47,19 +55,78 @@ public class PolynomialGF256 {
      */
     private static final int IRREDUCIBLE_POLYNOMIAL = 0x11b;
 
+    /**
+     * Таблица антилогарифмов, продолженная на 510 элементов: индекс LOG[a] + LOG[b] не требует приведения по модулю 255
+     */
+    private static final int[] EXP_TABLE = new int[510];
+
+    /**
+     * Таблица всех произведений: PRODUCT_TABLE[(a << 8) | b] = a * b (64 КБ)
+     */
+    private static final byte[] PRODUCT_TABLE = new byte[256 * 256];
+
+    /**
+     * Таблицы по полубайтам: c * x = NIBBLE_LOW[16c + (x & 0x0f)] ^ NIBBLE_HIGH[16c + (x >>> 4)]
+     */
+    private static final byte[] NIBBLE_LOW = new byte[256 * 16];
+    private static final byte[] NIBBLE_HIGH = new byte[256 * 16];
+
+    /**
+     * Умножение байта на коэффициенты матриц MixColumns (0x02, 0x03) и InvMixColumns (0x09, 0x0b, 0x0d, 0x0e)
+     */
+    public static final int[] MUL_02 = new int[256];
+    public static final int[] MUL_03 = new int[256];
+    public static final int[] MUL_09 = new int[256];
+    public static final int[] MUL_0B = new int[256];
+    public static final int[] MUL_0D = new int[256];
+    public static final int[] MUL_0E = new int[256];
+
+    static {
+        for (int i = 0; i < EXP_TABLE.length; i++) {
+            EXP_TABLE[i] = ALOGTABLE[i % 255];
+        }
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                PRODUCT_TABLE[(a << 8) | b] = multiplyBitwise((byte) a, (byte) b);
+            }
+            for (int x = 0; x < 16; x++) {
+                NIBBLE_LOW[16 * a + x] = PRODUCT_TABLE[(a << 8) | x];
+                NIBBLE_HIGH[16 * a + x] = PRODUCT_TABLE[(a << 8) | (x << 4)];
+            }
+        }
+        for (int a = 0; a < 256; a++) {
+            MUL_02[a] = PRODUCT_TABLE[(0x02 << 8) | a] & 0xFF;
+            MUL_03[a] = PRODUCT_TABLE[(0x03 << 8) | a] & 0xFF;
+            MUL_09[a] = PRODUCT_TABLE[(0x09 << 8) | a] & 0xFF;
+            MUL_0B[a] = PRODUCT_TABLE[(0x0b << 8) | a] & 0xFF;
+            MUL_0D[a] = PRODUCT_TABLE[(0x0d << 8) | a] & 0xFF;
+            MUL_0E[a] = PRODUCT_TABLE[(0x0e << 8) | a] & 0xFF;
+        }
+    }
+
     public static byte add(byte poly1, byte poly2) {
         return (byte)(poly1 ^ poly2);
     }
 
+    /**
+     * Умножение двух полиномов над полем GF(256) по полной таблице произведений.
+     * @param poly1
+     * @param poly2
+     * @return - multiplication - результат умножения
+     */
+    public static byte multiply(byte poly1, byte poly2) {
+        return PRODUCT_TABLE[((poly1 & 0xFF) << 8) | (poly2 & 0xFF)];
+    }
+
     /**
      * Алгоритм выполнения умножения двух полиномов над полем GF(256). Основан умножении полинома на x, как на побитовом
      * сдвиге полинома влево. Для обеспечения конечности множества произведений всех полиномов над полем, результат приводится
-     * по модулю неприводимого многочлена.
+     * по модулю неприводимого многочлена. Используется для построения таблиц.
      * @param poly1
      * @param poly2
      * @return - multiplication - результат умножения
      */
-    public static byte multiply(byte poly1, byte poly2) {
+    static byte multiplyBitwise(byte poly1, byte poly2) {
         byte product = 0;
         byte leftmost_bit;
         if (poly1 == 0 || poly2 == 0) {
@@ -88,26 +155,87 @@ public class PolynomialGF256 {
      */
     public static byte multiplyWithTables(byte poly1, byte poly2) {
         if (poly1 != 0 && poly2 != 0) {
-            return (byte) ALOGTABLE[(LOGTABLE[poly1 & 0xFF] + LOGTABLE[poly2 & 0xFF]) % 255];
+            return (byte) EXP_TABLE[LOGTABLE[poly1 & 0xFF] + LOGTABLE[poly2 & 0xFF]];
         } else {
             return 0;
         }
     }
 
     /**
-     * Возведение полинома в степень
+     * Возведение полинома в степень (через логарифм: poly^degree = ALOG[LOG[poly] * degree mod 255])
      * @param poly - полином
-     * @param degree - целочисленная степень
+     * @param degree - целочисленная неотрицательная степень
      * @return - result - результат
      */
     public static byte pow(byte poly, int degree) {
-        byte result = poly;
+        if (degree < 0) {
+            throw new IllegalArgumentException("expected non-negative degree, but got " + degree);
+        }
         if (degree == 0) {
             return 0x01;
         }
-        for (int i = 0; i < degree; i++) {
-            result = multiply(result, poly);
+        if (poly == 0) {
+            return 0;
+        }
+        return (byte) ALOGTABLE[(int) ((long) LOGTABLE[poly & 0xFF] * degree % 255)];
+    }
+
+    /**
+     * Умножение области массива на константу: dst[i] = c * src[i] для i из [off, off + len).
+     * Допускается src == dst.
+     * @param c - множитель
+     * @param src - исходный массив
+     * @param dst - массив для результата
+     * @param off - смещение области в обоих массивах
+     * @param len - длина области
+     */
+    public static void multiplyRegion(byte c, byte[] src, byte[] dst, int off, int len) {
+        checkRegion(src, dst, off, len);
+        if (c == 0) {
+            Arrays.fill(dst, off, off + len, (byte) 0);
+            return;
+        }
+        if (c == 1) {
+            System.arraycopy(src, off, dst, off, len);
+            return;
+        }
+        int base = (c & 0xFF) << 4;
+        for (int i = off; i < off + len; i++) {
+            int x = src[i] & 0xFF;
+            dst[i] = (byte) (NIBBLE_LOW[base + (x & 0x0f)] ^ NIBBLE_HIGH[base + (x >>> 4)]);
         }
-        return poly;
+    }
+
+    /**
+     * Умножение области на константу со сложением с результатом: dst[i] ^= c * src[i] (основная операция
+     * кодирования с исправлением стираний).
+     */
+    public static void multiplyAddRegion(byte c, byte[] src, byte[] dst, int off, int len) {
+        checkRegion(src, dst, off, len);
+        if (c == 0) {
+            return;
+        }
+        if (c == 1) {
+            addRegion(src, dst, off, len);
+            return;
+        }
+        int base = (c & 0xFF) << 4;
+        for (int i = off; i < off + len; i++) {
+            int x = src[i] & 0xFF;
+            dst[i] ^= (byte) (NIBBLE_LOW[base + (x & 0x0f)] ^ NIBBLE_HIGH[base + (x >>> 4)]);
+        }
+    }
+
+    /**
+     * Сложение областей массивов: dst[i] ^= src[i] для i из [off, off + len)
+     */
+    public static void addRegion(byte[] src, byte[] dst, int off, int len) {
+        checkRegion(src, dst, off, len);
+        Xor.xor(dst, off, src, off, dst, off, len);
+    }
+
+    private static void checkRegion(byte[] src, byte[] dst, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        Objects.checkFromIndexSize(off, len, dst.length);
     }
 }
@@ -0,0 +1,207 @@
+package org.digitalleague.key;
+
+import javax.security.auth.Destroyable;
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.digitalleague.function.PolynomialGF256.multiply;
+
+/**
+ * Развернутый ключ (расписание ключей) в виде плоских массивов 32-битных слов (big-endian).
+ * Хранит раундовые ключи для шифрования в порядке использования и раундовые ключи для эквивалентного обратного шифра
+ * (FIPS-197, 5.3.5): порядок раундов обращен, к ключам промежуточных раундов применено InvMixColumns. Ключи обратного
+ * шифра вычисляются при первом обращении, поэтому ключ, используемый только для шифрования, их не вычисляет.
+ * Создается через {@link KeySchedule#expandKey(byte[])}, после создания не изменяется до вызова {@link #destroy()},
+ * который обнуляет раундовые ключи; после этого обращение к ключам завершается IllegalStateException.
+ */
+public final class ExpandedKey implements Destroyable {
+    private static final int Nb = 4;
+    private static final Cleaner CLEANER = Cleaner.create();
+    private final int Nr;
+    private final int[] encryptionRoundKeys;
+    private final AtomicReference<int[]> decryptionRoundKeys = new AtomicReference<>(); // Вычисляются при первом обращении
+    private final AtomicReference<long[]> bitslicedRoundKeys = new AtomicReference<>(); // Вычисляются при первом обращении
+    private volatile boolean destroyed;
+
+    ExpandedKey(int[] encryptionRoundKeys) {
+        this.Nr = encryptionRoundKeys.length / Nb - 1;
+        this.encryptionRoundKeys = encryptionRoundKeys;
+    }
+
+    /**
+     * Преобразование расписания ключей в формате {@link KeySchedule#keyExpansion(byte[])} (массив 4-байтовых слов).
+     * @param roundKeys - матрица расписания ключей
+     * @return развернутый ключ
+     */
+    public static ExpandedKey fromRoundKeys(byte[][] roundKeys) {
+        int[] words = new int[roundKeys.length];
+        for (int i = 0; i < roundKeys.length; i++) {
+            byte[] word = roundKeys[i];
+            words[i] = ((word[0] & 0xFF) << 24) | ((word[1] & 0xFF) << 16) | ((word[2] & 0xFF) << 8) | (word[3] & 0xFF);
+        }
+        return new ExpandedKey(words);
+    }
+
+    /**
+     * @return число раундов шифрования (10, 12 или 14)
+     */
+    public int getRounds() {
+        return Nr;
+    }
+
+    /**
+     * @return длина исходного ключа в битах
+     */
+    public int getKeyLength() {
+        return (Nr - 6) * 32;
+    }
+
+    /**
+     * Раундовые ключи шифрования: слова Nb * round .. Nb * round + 3 относятся к раунду round.
+     * Массив не копируется (он читается на каждом раунде), изменять его нельзя.
+     */
+    public int[] getEncryptionRoundKeys() {
+        checkNotDestroyed();
+        return encryptionRoundKeys;
+    }
+
+    /**
+     * Раундовые ключи эквивалентного обратного шифра в порядке их использования при расшифровании.
+     * Вычисляются один раз при первом обращении. Массив не копируется, изменять его нельзя.
+     */
+    public int[] getDecryptionRoundKeys() {
+        int[] result = decryptionRoundKeys.get();
+        if (result == null) {
+            synchronized (this) {
+                checkNotDestroyed();
+                result = decryptionRoundKeys.get();
+                if (result == null) {
+                    result = invert(encryptionRoundKeys);
+                    decryptionRoundKeys.set(result);
+                }
+            }
+        }
+        checkNotDestroyed();
+        return result;
+    }
+
+    /**
+     * Раундовые ключи шифрования в битсрезовом представлении (16 long на раунд, раскладка состояния
+     * {@code RijndaelBitslicedImpl}): каждый байт плоскости b равен 0xFF, если бит b соответствующего байта ключа
+     * установлен. Вычисляются один раз при первом обращении, хранятся в ключе и обнуляются вместе с ним.
+     * Массив не копируется, изменять его нельзя.
+     */
+    public long[] getBitslicedRoundKeys() {
+        long[] result = bitslicedRoundKeys.get();
+        if (result == null) {
+            synchronized (this) {
+                checkNotDestroyed();
+                result = bitslicedRoundKeys.get();
+                if (result == null) {
+                    result = bitslice(encryptionRoundKeys);
+                    bitslicedRoundKeys.set(result);
+                }
+            }
+        }
+        checkNotDestroyed();
+        return result;
+    }
+
+    /**
+     * Обнуление раундовых ключей. Шифры, созданные с этим ключом, после вызова использовать нельзя.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        synchronized (this) {
+            zeroize(encryptionRoundKeys, decryptionRoundKeys, bitslicedRoundKeys);
+        }
+    }
+
+    /**
+     * Отложенное уничтожение: раундовые ключи (включая битсрезовые, вычисленные позже) обнуляются, когда на ключ
+     * не останется ссылок. Используется {@link ExpandedKeyCache} для вытесненных ключей, которые еще могут
+     * использоваться шифрами.
+     */
+    void destroyWhenUnreachable() {
+        int[] encryption = encryptionRoundKeys;
+        AtomicReference<int[]> decryption = decryptionRoundKeys;
+        AtomicReference<long[]> bitsliced = bitslicedRoundKeys;
+        CLEANER.register(this, () -> zeroize(encryption, decryption, bitsliced));
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    private static void zeroize(int[] encryption, AtomicReference<int[]> decryption, AtomicReference<long[]> bitsliced) {
+        Arrays.fill(encryption, 0);
+        int[] inverse = decryption.get();
+        if (inverse != null) {
+            Arrays.fill(inverse, 0);
+        }
+        long[] planes = bitsliced.get();
+        if (planes != null) {
+            Arrays.fill(planes, 0L);
+        }
+    }
+
+    private void checkNotDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("expanded key has been destroyed");
+        }
+    }
+
+    /**
+     * Перевод битов ключа в маски плоскостей без ветвлений. Байт i блока лежит в плоскостях половины i / 8
+     * (столбцы 0-1 или 2-3), в байте i % 8 каждой плоскости.
+     */
+    private static long[] bitslice(int[] rk) {
+        int rounds = rk.length / Nb;
+        long[] result = new long[rounds * 16];
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < 16; i++) {
+                int value = (rk[round * Nb + i / 4] >>> (24 - 8 * (i % 4))) & 0xFF;
+                int half = (i >>> 3) << 3;
+                int shift = (i & 7) << 3;
+                for (int b = 0; b < 8; b++) {
+                    long mask = -((value >>> b) & 1L) & 0xFF;
+                    result[round * 16 + half + b] |= mask << shift;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Раундовые ключи эквивалентного обратного шифра: обращение порядка раундов и InvMixColumns для промежуточных.
+     */
+    private static int[] invert(int[] rk) {
+        int rounds = rk.length / Nb - 1;
+        int[] result = new int[rk.length];
+        for (int round = 0; round <= rounds; round++) {
+            for (int i = 0; i < Nb; i++) {
+                int word = rk[(rounds - round) * Nb + i];
+                result[round * Nb + i] = (round == 0 || round == rounds) ? word : invMixWord(word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * InvMixColumns над одним словом (столбцом состояния, big-endian).
+     */
+    private static int invMixWord(int w) {
+        byte a0 = (byte) (w >>> 24);
+        byte a1 = (byte) (w >>> 16);
+        byte a2 = (byte) (w >>> 8);
+        byte a3 = (byte) w;
+        int r0 = multiply((byte) 0x0e, a0) ^ multiply((byte) 0x0b, a1) ^ multiply((byte) 0x0d, a2) ^ multiply((byte) 0x09, a3);
+        int r1 = multiply((byte) 0x09, a0) ^ multiply((byte) 0x0e, a1) ^ multiply((byte) 0x0b, a2) ^ multiply((byte) 0x0d, a3);
+        int r2 = multiply((byte) 0x0d, a0) ^ multiply((byte) 0x09, a1) ^ multiply((byte) 0x0e, a2) ^ multiply((byte) 0x0b, a3);
+        int r3 = multiply((byte) 0x0b, a0) ^ multiply((byte) 0x0d, a1) ^ multiply((byte) 0x09, a2) ^ multiply((byte) 0x0e, a3);
+        return ((r0 & 0xFF) << 24) | ((r1 & 0xFF) << 16) | ((r2 & 0xFF) << 8) | (r3 & 0xFF);
+    }
+}
@@ -0,0 +1,271 @@
+package org.digitalleague.key;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный по размеру кэш развернутых ключей с вытеснением давно не использовавшихся (LRU).
+ * Ключом кэша служит SHA-256 от байтов ключа, поэтому сами ключи в кэше не хранятся.
+ * <p>
+ * Кэш разделен на сегменты со своей блокировкой и своей LRU-очередью; сегмент выбирается по хэшу ключа, поэтому
+ * обращения к разным ключам из разных потоков в основном не конкурируют. Емкость распределяется между сегментами
+ * поровну, и порядок вытеснения соблюдается в пределах сегмента. Развертывание ключа выполняется вне блокировки.
+ * <p>
+ * Вытесненный ключ обнуляется, как только перестает использоваться. Ключ, полученный через {@link #acquire(byte[])},
+ * считается используемым до закрытия аренды: вытесненный ключ без открытых аренд обнуляется сразу, иначе - при
+ * закрытии последней аренды. Ключ, выданный через {@link #get(byte[])}, хранится шифром без явного освобождения,
+ * поэтому после вытеснения он обнуляется отложенно, когда на него не останется ссылок.
+ */
+public class ExpandedKeyCache {
+    private static final KeySchedule keySchedule = new KeySchedule();
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(ExpandedKeyCache::sha256);
+    private static final int SEGMENTS_PER_PROCESSOR = 4;
+    private final int capacity;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity - максимальное число развернутых ключей в кэше
+     */
+    public ExpandedKeyCache(int capacity) {
+        this(capacity, Math.max(1, Math.min(capacity, SEGMENTS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * @param capacity - максимальное число развернутых ключей в кэше
+     * @param segments - число сегментов (1 - точный LRU по всему кэшу с одной блокировкой)
+     */
+    public ExpandedKeyCache(int capacity, int segments) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("expected positive cache capacity, but got " + capacity);
+        }
+        if (segments <= 0 || segments > capacity) {
+            throw new IllegalArgumentException("expected segment count from 1 to " + capacity + ", but got " + segments);
+        }
+        this.capacity = capacity;
+        this.segments = new Segment[segments];
+        for (int i = 0; i < segments; i++) {
+            this.segments[i] = new Segment(capacity / segments + (i < capacity % segments ? 1 : 0));
+        }
+    }
+
+    /**
+     * Получение развернутого ключа из кэша или его развертывание с сохранением в кэш. Ключ не требует освобождения;
+     * после вытеснения он обнуляется, когда на него не останется ссылок.
+     * @param key - ключ длиной 128, 192 или 256 бит
+     */
+    public ExpandedKey get(byte[] key) {
+        ByteBuffer digest = digest(key);
+        return segment(digest).lookup(digest, key, false).key;
+    }
+
+    /**
+     * Аренда развернутого ключа: до закрытия аренды ключ не обнуляется, даже если он вытеснен из кэша.
+     * Вытесненный ключ обнуляется при закрытии последней аренды.
+     * @param key - ключ длиной 128, 192 или 256 бит
+     */
+    public Lease acquire(byte[] key) {
+        ByteBuffer digest = digest(key);
+        Segment segment = segment(digest);
+        return new Lease(segment, segment.lookup(digest, key, true));
+    }
+
+    /**
+     * Удаление всех записей с уничтожением развернутых ключей. Вызывающий отвечает за то, что ни один шифр
+     * и ни одна аренда больше не используют ключи из кэша: иначе они продолжат работу на обнуленных раундовых ключах.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private static ByteBuffer digest(byte[] key) {
+        return ByteBuffer.wrap(DIGEST.get().digest(key));
+    }
+
+    private Segment segment(ByteBuffer digest) {
+        return segments[Math.floorMod(digest.getInt(0), segments.length)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Аренда развернутого ключа из кэша. Закрытие повторно не освобождает ключ.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Segment segment;
+        private final CachedKey entry;
+        private boolean closed;
+
+        private Lease(Segment segment, CachedKey entry) {
+            this.segment = segment;
+            this.entry = entry;
+        }
+
+        public ExpandedKey key() {
+            return entry.key;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                segment.release(entry);
+            }
+        }
+    }
+
+    /**
+     * Запись кэша. Поля изменяются под блокировкой сегмента.
+     */
+    private static final class CachedKey {
+        private final ExpandedKey key;
+        private int leases; // Число открытых аренд
+        private boolean shared; // Ключ выдан через get и может храниться без освобождения
+        private boolean evicted;
+
+        CachedKey(ExpandedKey key) {
+            this.key = key;
+        }
+
+        void retain(boolean lease) {
+            if (lease) {
+                leases++;
+            } else {
+                shared = true;
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (shared) {
+                key.destroyWhenUnreachable();
+            } else if (leases == 0) {
+                key.destroy();
+            }
+        }
+    }
+
+    /**
+     * Сегмент кэша: LRU-таблица со своей блокировкой.
+     */
+    private final class Segment {
+        private final Map<ByteBuffer, CachedKey> entries;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteBuffer, CachedKey> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    evictions.increment();
+                    eldest.getValue().evict();
+                    return true;
+                }
+            };
+        }
+
+        CachedKey lookup(ByteBuffer digest, byte[] key, boolean lease) {
+            lock.lock();
+            try {
+                CachedKey cached = entries.get(digest);
+                if (cached != null) {
+                    hits.increment();
+                    cached.retain(lease);
+                    return cached;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            misses.increment();
+            ExpandedKey expanded = keySchedule.expandKey(key);
+            lock.lock();
+            try {
+                // Другой поток мог успеть развернуть тот же ключ
+                CachedKey existing = entries.get(digest);
+                if (existing != null) {
+                    expanded.destroy(); // Эта копия никому не передавалась
+                    existing.retain(lease);
+                    return existing;
+                }
+                CachedKey entry = new CachedKey(expanded);
+                entry.retain(lease);
+                entries.put(digest, entry);
+                return entry;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(CachedKey entry) {
+            lock.lock();
+            try {
+                if (--entry.leases == 0 && entry.evicted && !entry.shared) {
+                    entry.key.destroy();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.values().forEach(entry -> entry.key.destroy());
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
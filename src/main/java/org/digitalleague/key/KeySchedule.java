@@ -1,6 +1,7 @@
 package org.digitalleague.key;
 
 import org.digitalleague.cipher.util.SBox;
+import org.digitalleague.metrics.CipherMetrics;
 
 /**
  * Класс для генерации расписания ключей.
@@ -56,6 +57,44 @@ public class KeySchedule {
         return roundKeys;
     }
 
+    /**
+     * Генерация расписания ключей в виде {@link ExpandedKey}. Слова вычисляются сразу как int, без промежуточных массивов.
+     * @param key - ключ длиной 128, 192 или 256 бит
+     * @return развернутый ключ с раундовыми ключами для шифрования и расшифрования
+     */
+    public ExpandedKey expandKey(byte[] key) {
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("Invalid key length: must be 128, 192 or 256 bits");
+        }
+        int Nk = key.length / 4; // Количество слов в ключе
+        int Nr = Nk + 6; // Число раундов шифрования
+        int Nb = 4;
+        int[] words = new int[Nb * (Nr + 1)];
+
+        for (int i = 0; i < Nk; i++) {
+            words[i] = ((key[4 * i] & 0xFF) << 24) | ((key[4 * i + 1] & 0xFF) << 16)
+                    | ((key[4 * i + 2] & 0xFF) << 8) | (key[4 * i + 3] & 0xFF);
+        }
+
+        for (int i = Nk; i < words.length; i++) {
+            int temp = words[i - 1];
+            if (i % Nk == 0) {
+                temp = subWord(Integer.rotateLeft(temp, 8)) ^ ((Rcon[i / Nk - 1][0] & 0xFF) << 24);
+            } else if (Nk > 6 && i % Nk == 4) {
+                temp = subWord(temp);
+            }
+            words[i] = words[i - Nk] ^ temp;
+        }
+
+        CipherMetrics.recordKeyExpansion(key.length * 8);
+        return new ExpandedKey(words);
+    }
+
+    private int subWord(int word) {
+        return ((SBox.getValue((byte) (word >>> 24)) & 0xFF) << 24) | ((SBox.getValue((byte) (word >>> 16)) & 0xFF) << 16)
+                | ((SBox.getValue((byte) (word >>> 8)) & 0xFF) << 8) | (SBox.getValue((byte) word) & 0xFF);
+    }
+
     private byte[] subWord(byte[] word) {
         byte[] result = new byte[word.length];
         for (int i = 0; i < word.length; i++) {
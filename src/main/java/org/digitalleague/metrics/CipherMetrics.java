@@ -0,0 +1,241 @@
+package org.digitalleague.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики библиотеки: объем обработанных данных по режимам и длинам ключа, число развертываний ключа,
+ * гистограммы задержки операций и число ошибок дополнения. Сбор включается явно ({@link #setEnabled(boolean)}
+ * или -Dorg.digitalleague.metrics=true); в выключенном состоянии каждая операция выполняет только одно чтение
+ * volatile-флага. Все счетчики - {@link LongAdder}, запись не блокирует потоки. Счетчики учитывают каждую
+ * операцию, а задержка измеряется выборочно (для одной из LATENCY_SAMPLE_RATE операций): два вызова
+ * System.nanoTime() стоят больше, чем шифрование одного блока.
+ * Метрики доступны через JMX после {@link #registerMBean()}.
+ */
+public final class CipherMetrics {
+    public static final String OBJECT_NAME = "org.digitalleague:type=CipherMetrics";
+    private static final long DISABLED = Long.MIN_VALUE; // Метка начала операции при выключенном сборе
+    private static final long NOT_SAMPLED = Long.MIN_VALUE + 1; // Метка операции, задержка которой не измеряется
+    private static final int LATENCY_SAMPLE_RATE = 16;
+    private static final int KEY_LENGTHS = 3; // 128, 192 и 256 бит
+    private static final LongAdder[] bytes = adders(MODE.values().length * KEY_LENGTHS);
+    private static final LongAdder[] blocks = adders(MODE.values().length * KEY_LENGTHS);
+    private static final LongAdder[] operations = adders(MODE.values().length * KEY_LENGTHS);
+    private static final LongAdder[] keyExpansions = adders(KEY_LENGTHS);
+    private static final LatencyHistogram[] latencies = new LatencyHistogram[MODE.values().length];
+    private static final LongAdder paddingErrors = new LongAdder();
+    private static volatile boolean enabled = Boolean.getBoolean("org.digitalleague.metrics");
+
+    static {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    private CipherMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        CipherMetrics.enabled = enabled;
+    }
+
+    /**
+     * Начало измеряемой операции.
+     * @return метка времени для {@link #record} (без обращения к часам, если сбор выключен или задержка
+     * этой операции не попала в выборку)
+     */
+    public static long start() {
+        if (!enabled) {
+            return DISABLED;
+        }
+        return ThreadLocalRandom.current().nextInt(LATENCY_SAMPLE_RATE) == 0 ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    /**
+     * Учет завершенной операции шифрования или расшифрования.
+     * @param mode - режим
+     * @param keyLengthBits - длина ключа в битах
+     * @param length - число обработанных байтов
+     * @param startNanos - значение {@link #start()} в начале операции
+     */
+    public static void record(MODE mode, int keyLengthBits, long length, long startNanos) {
+        if (startNanos == DISABLED) {
+            return;
+        }
+        int index = mode.ordinal() * KEY_LENGTHS + keyLengthIndex(keyLengthBits);
+        bytes[index].add(length);
+        blocks[index].add((length + 15) / 16);
+        operations[index].increment();
+        if (startNanos != NOT_SAMPLED) {
+            latencies[mode.ordinal()].record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public static void recordKeyExpansion(int keyLengthBits) {
+        if (enabled) {
+            keyExpansions[keyLengthIndex(keyLengthBits)].increment();
+        }
+    }
+
+    public static void recordPaddingError() {
+        if (enabled) {
+            paddingErrors.increment();
+        }
+    }
+
+    public static long getBytesProcessed(MODE mode, int keyLengthBits) {
+        return bytes[mode.ordinal() * KEY_LENGTHS + keyLengthIndex(keyLengthBits)].sum();
+    }
+
+    public static long getBlocksProcessed(MODE mode, int keyLengthBits) {
+        return blocks[mode.ordinal() * KEY_LENGTHS + keyLengthIndex(keyLengthBits)].sum();
+    }
+
+    public static long getOperations(MODE mode, int keyLengthBits) {
+        return operations[mode.ordinal() * KEY_LENGTHS + keyLengthIndex(keyLengthBits)].sum();
+    }
+
+    public static long getKeyExpansions(int keyLengthBits) {
+        return keyExpansions[keyLengthIndex(keyLengthBits)].sum();
+    }
+
+    public static long getPaddingErrors() {
+        return paddingErrors.sum();
+    }
+
+    public static LatencyHistogram getLatency(MODE mode) {
+        return latencies[mode.ordinal()];
+    }
+
+    public static void reset() {
+        for (LongAdder[] counters : new LongAdder[][] {bytes, blocks, operations, keyExpansions}) {
+            for (LongAdder counter : counters) {
+                counter.reset();
+            }
+        }
+        for (LatencyHistogram latency : latencies) {
+            latency.reset();
+        }
+        paddingErrors.reset();
+    }
+
+    /**
+     * Регистрация MBean в платформенном MBeanServer. Повторная регистрация ничего не делает.
+     */
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // MBean уже зарегистрирован
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to register " + OBJECT_NAME, e);
+        }
+    }
+
+    private static int keyLengthIndex(int keyLengthBits) {
+        return switch (keyLengthBits) {
+            case 128 -> 0;
+            case 192 -> 1;
+            case 256 -> 2;
+            default -> throw new IllegalArgumentException("Invalid key length: must be 128, 192 or 256 bits");
+        };
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] result = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = new LongAdder();
+        }
+        return result;
+    }
+
+    /**
+     * Режимы, операции которых учитываются: ECB - {@link org.digitalleague.cipher.impl.CipherImpl},
+     * CTR - {@link org.digitalleague.mode.CTRMode}.
+     */
+    public enum MODE {
+        ECB,
+        CTR
+    }
+
+    private static class MBean implements CipherMetricsMXBean {
+        private static final int[] KEY_LENGTH_BITS = {128, 192, 256};
+        private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+        @Override
+        public boolean isEnabled() {
+            return CipherMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            CipherMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public Map<String, Long> getBytesProcessed() {
+            return byModeAndKey(bytes);
+        }
+
+        @Override
+        public Map<String, Long> getBlocksProcessed() {
+            return byModeAndKey(blocks);
+        }
+
+        @Override
+        public Map<String, Long> getOperations() {
+            return byModeAndKey(operations);
+        }
+
+        @Override
+        public Map<String, Long> getKeyExpansions() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (int bits : KEY_LENGTH_BITS) {
+                result.put(String.valueOf(bits), CipherMetrics.getKeyExpansions(bits));
+            }
+            return result;
+        }
+
+        @Override
+        public long getPaddingErrors() {
+            return CipherMetrics.getPaddingErrors();
+        }
+
+        @Override
+        public Map<String, Long> getLatencyPercentilesNanos() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (MODE mode : MODE.values()) {
+                for (double percentile : PERCENTILES) {
+                    String name = percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+                    result.put(mode + " p" + name, latencies[mode.ordinal()].getPercentile(percentile));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            CipherMetrics.reset();
+        }
+
+        private static Map<String, Long> byModeAndKey(LongAdder[] counters) {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (MODE mode : MODE.values()) {
+                for (int i = 0; i < KEY_LENGTHS; i++) {
+                    result.put(mode + "/" + KEY_LENGTH_BITS[i], counters[mode.ordinal() * KEY_LENGTHS + i].sum());
+                }
+            }
+            return result;
+        }
+    }
+}
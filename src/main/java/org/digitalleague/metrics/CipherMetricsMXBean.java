@@ -0,0 +1,38 @@
+package org.digitalleague.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX-интерфейс метрик библиотеки (регистрируется {@link CipherMetrics#registerMBean()} под именем
+ * {@value CipherMetrics#OBJECT_NAME}). Ключи таблиц - "РЕЖИМ/длина ключа", например "CTR/128".
+ */
+public interface CipherMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, Long> getBytesProcessed();
+
+    Map<String, Long> getBlocksProcessed();
+
+    Map<String, Long> getOperations();
+
+    /**
+     * Число развертываний ключа по длине ключа ("128", "192", "256")
+     */
+    Map<String, Long> getKeyExpansions();
+
+    /**
+     * Число отвергнутых шифротекстов с некорректным дополнением PKCS#7 там, где дополнение обязательно
+     * (CBCMode, преобразования провайдера JCE с PKCS5Padding). CipherImpl не дополняет тексты кратной длины,
+     * поэтому отсутствие дополнения при расшифровании в нем ошибкой не считается
+     */
+    long getPaddingErrors();
+
+    /**
+     * Перцентили задержки операций по режимам в наносекундах: ключи вида "CTR p50", "CTR p99", "CTR p99.9"
+     */
+    Map<String, Long> getLatencyPercentilesNanos();
+
+    void reset();
+}
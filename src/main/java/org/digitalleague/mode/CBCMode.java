@@ -0,0 +1,237 @@
+package org.digitalleague.mode;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.Cipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.EngineSelector;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.cipher.util.Padding;
+import org.digitalleague.cipher.util.Xor;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.metrics.CipherMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Режим CBC (Cipher Block Chaining) с дополнением PKCS#7: C[i] = E(K, P[i] ^ C[i-1]), C[-1] = IV.
+ * Шифрование последовательно по своей природе. Для расшифрования блока i нужны только блоки шифротекста i и i-1:
+ * P[i] = D(K, C[i]) ^ C[i-1], поэтому большие шифротексты делятся на диапазоны блоков, которые расшифровываются
+ * параллельно в {@link ForkJoinPool} многоблочным методом блочного шифра.
+ * Экземпляр потокобезопасен; одну пару (ключ, IV) не следует использовать для разных сообщений.
+ */
+public class CBCMode implements Cipher {
+    private static final KeySchedule keySchedule = new KeySchedule();
+    private static final int BLOCK_SIZE = 16;
+    private static final int PARALLEL_THRESHOLD = 256 * 1024; // Размер данных (в байтах), начиная с которого включается параллельная обработка
+    private static final int CHUNK_BLOCKS = 4096; // Число блоков в одной задаче ForkJoinPool
+    /**
+     * Рабочие блоки методов для ByteBuffer, переиспользуемые в пределах потока: [0, 16) - результат,
+     * [16, 32) - предыдущий блок шифротекста (сцепление), [32, 48) - текущий блок, [48, 64) - последний
+     * расшифрованный блок с дополнением.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[4 * BLOCK_SIZE]);
+    private final byte[] iv;
+    private final ExpandedKey key;
+    private final BaseCipher cipher;
+    private final ForkJoinPool pool;
+
+    private CBCMode(ExpandedKey key, byte[] iv, CipherImpl.ENGINE engine, ForkJoinPool pool) {
+        if (iv.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("expected IV length " + BLOCK_SIZE + ", but got " + iv.length);
+        }
+        this.iv = Arrays.copyOf(iv, iv.length);
+        this.key = key;
+        this.cipher = engine.create(RijndaelBaseImpl.KEY_LENGTH.ofBits(key.getKeyLength()));
+        this.pool = pool;
+    }
+
+    public static CBCMode createInstance(byte[] key, byte[] iv) {
+        return new CBCMode(keySchedule.expandKey(key), iv, EngineSelector.select(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param key - развернутый ключ
+     * @param iv - вектор инициализации (16 байт)
+     * @param engine - реализация шифрования блока
+     * @param pool - пул для параллельного расшифрования больших сообщений
+     */
+    public static CBCMode createInstance(ExpandedKey key, byte[] iv, CipherImpl.ENGINE engine, ForkJoinPool pool) {
+        return new CBCMode(key, iv, engine, pool);
+    }
+
+    /**
+     * Шифрование с дополнением PKCS#7 (дополнение добавляется всегда, результат длиннее исходного текста на 1-16 байтов).
+     */
+    public byte[] encrypt(byte[] plainText) {
+        byte[] result = Padding.pad(plainText);
+        byte[] previous = iv;
+        int previousOff = 0;
+        for (int offset = 0; offset < result.length; offset += BLOCK_SIZE) {
+            Xor.xor(result, offset, previous, previousOff, result, offset, BLOCK_SIZE);
+            cipher.encryptBlock(result, offset, result, offset, key);
+            previous = result;
+            previousOff = offset;
+        }
+        return result;
+    }
+
+    /**
+     * Расшифрование с удалением дополнения PKCS#7.
+     * @param cipherText - шифротекст ненулевой длины, кратной 16
+     * @throws IllegalArgumentException - если длина шифротекста или дополнение некорректны
+     */
+    public byte[] decrypt(byte[] cipherText) {
+        if (cipherText.length == 0 || cipherText.length % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("expected non-empty cipherText length as multiplication of 16, but got " + cipherText.length);
+        }
+        byte[] result = new byte[cipherText.length];
+        int blocks = cipherText.length / BLOCK_SIZE;
+        if (cipherText.length < PARALLEL_THRESHOLD) {
+            decryptRange(cipherText, result, 0, blocks);
+        } else {
+            pool.invoke(new DecryptRangeTask(cipherText, result, 0, blocks));
+        }
+        int paddingSize = Padding.paddingSize(result, result.length);
+        if (paddingSize == 0) {
+            CipherMetrics.recordPaddingError();
+            throw new IllegalArgumentException("invalid PKCS#7 padding");
+        }
+        return Arrays.copyOf(result, result.length - paddingSize);
+    }
+
+    /**
+     * Шифрование оставшихся байтов src с дополнением PKCS#7 напрямую из буфера в буфер (в том числе прямые буферы).
+     * Блоки проходят через 16-байтовый рабочий буфер потока, сообщение целиком не копируется. Допускается src == dst.
+     * @return число записанных в dst байтов (длина с учетом дополнения)
+     */
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        int outLength = (length / BLOCK_SIZE + 1) * BLOCK_SIZE;
+        checkOutputSize(dst, outLength);
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        int fullLength = length - length % BLOCK_SIZE;
+        byte[] scratch = SCRATCH.get();
+        System.arraycopy(iv, 0, scratch, 0, BLOCK_SIZE);
+
+        for (int offset = 0; offset < outLength; offset += BLOCK_SIZE) {
+            if (offset < fullLength) {
+                src.get(srcPos + offset, scratch, BLOCK_SIZE, BLOCK_SIZE);
+            } else {
+                int tail = length - fullLength;
+                src.get(srcPos + offset, scratch, BLOCK_SIZE, tail);
+                Arrays.fill(scratch, BLOCK_SIZE + tail, 2 * BLOCK_SIZE, (byte) (BLOCK_SIZE - tail));
+            }
+            Xor.xor(scratch, 0, scratch, BLOCK_SIZE, scratch, 0, BLOCK_SIZE);
+            cipher.encryptBlock(scratch, 0, scratch, 0, key);
+            dst.put(dstPos + offset, scratch, 0, BLOCK_SIZE);
+        }
+
+        src.position(srcPos + length);
+        dst.position(dstPos + outLength);
+        return outLength;
+    }
+
+    /**
+     * Расшифрование оставшихся байтов src с удалением дополнения PKCS#7 напрямую из буфера в буфер.
+     * В dst должно быть место под src.remaining() байтов. Последний блок расшифровывается первым, поэтому при
+     * некорректном дополнении буферы не изменяются. Допускается src == dst.
+     * @return число записанных в dst байтов
+     * @throws IllegalArgumentException - если длина шифротекста или дополнение некорректны
+     */
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        if (length == 0 || length % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("expected non-empty cipherText length as multiplication of 16, but got " + length);
+        }
+        checkOutputSize(dst, length);
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        int lastBlock = length - BLOCK_SIZE;
+        byte[] scratch = SCRATCH.get();
+
+        if (lastBlock == 0) {
+            System.arraycopy(iv, 0, scratch, BLOCK_SIZE, BLOCK_SIZE);
+        } else {
+            src.get(srcPos + lastBlock - BLOCK_SIZE, scratch, BLOCK_SIZE, BLOCK_SIZE);
+        }
+        src.get(srcPos + lastBlock, scratch, 2 * BLOCK_SIZE, BLOCK_SIZE);
+        cipher.decryptBlock(scratch, 2 * BLOCK_SIZE, scratch, 3 * BLOCK_SIZE, key);
+        Xor.xor(scratch, 3 * BLOCK_SIZE, scratch, BLOCK_SIZE, scratch, 3 * BLOCK_SIZE, BLOCK_SIZE);
+        int paddingSize = Padding.paddingSize(scratch, scratch.length);
+        if (paddingSize == 0) {
+            CipherMetrics.recordPaddingError();
+            throw new IllegalArgumentException("invalid PKCS#7 padding");
+        }
+
+        System.arraycopy(iv, 0, scratch, BLOCK_SIZE, BLOCK_SIZE);
+        for (int offset = 0; offset < lastBlock; offset += BLOCK_SIZE) {
+            src.get(srcPos + offset, scratch, 2 * BLOCK_SIZE, BLOCK_SIZE);
+            cipher.decryptBlock(scratch, 2 * BLOCK_SIZE, scratch, 0, key);
+            Xor.xor(scratch, 0, scratch, BLOCK_SIZE, scratch, 0, BLOCK_SIZE);
+            System.arraycopy(scratch, 2 * BLOCK_SIZE, scratch, BLOCK_SIZE, BLOCK_SIZE);
+            dst.put(dstPos + offset, scratch, 0, BLOCK_SIZE);
+        }
+        int outLength = length - paddingSize;
+        dst.put(dstPos + lastBlock, scratch, 3 * BLOCK_SIZE, outLength - lastBlock);
+
+        src.position(srcPos + length);
+        dst.position(dstPos + outLength);
+        return outLength;
+    }
+
+    /**
+     * Расшифрование блоков [fromBlock, toBlock): сначала все блоки диапазона расшифровываются одним вызовом,
+     * затем каждый складывается с предыдущим блоком шифротекста (или IV для первого блока сообщения).
+     */
+    private void decryptRange(byte[] in, byte[] out, int fromBlock, int toBlock) {
+        int from = fromBlock * BLOCK_SIZE;
+        int to = toBlock * BLOCK_SIZE;
+        cipher.decryptBlocks(in, from, out, from, toBlock - fromBlock, key);
+        int start = from;
+        if (fromBlock == 0) {
+            Xor.xor(out, 0, iv, 0, out, 0, BLOCK_SIZE);
+            start = BLOCK_SIZE;
+        }
+        Xor.xor(out, start, in, start - BLOCK_SIZE, out, start, to - start);
+    }
+
+    private static void checkOutputSize(ByteBuffer dst, int outLength) {
+        if (dst.remaining() < outLength) {
+            throw new IllegalArgumentException("expected at least " + outLength + " bytes in output buffer, but got " + dst.remaining());
+        }
+    }
+
+    /**
+     * Задача ForkJoinPool: делит диапазон блоков пополам, пока он не станет меньше CHUNK_BLOCKS.
+     */
+    private class DecryptRangeTask extends RecursiveAction {
+        private final byte[] in;
+        private final byte[] out;
+        private final int fromBlock;
+        private final int toBlock;
+
+        DecryptRangeTask(byte[] in, byte[] out, int fromBlock, int toBlock) {
+            this.in = in;
+            this.out = out;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock <= CHUNK_BLOCKS) {
+                decryptRange(in, out, fromBlock, toBlock);
+                return;
+            }
+            int middle = (fromBlock + toBlock) >>> 1;
+            invokeAll(new DecryptRangeTask(in, out, fromBlock, middle), new DecryptRangeTask(in, out, middle, toBlock));
+        }
+    }
+}
@@ -1,25 +1,74 @@
 package org.digitalleague.mode;
 
 import lombok.extern.slf4j.Slf4j;
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.Cipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.EngineSelector;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.cipher.util.Xor;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.metrics.CipherMetrics;
 import org.digitalleague.util.Utils;
 
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Режимы работа шифра (в разработке)
+ * Режим счетчика (CTR, NIST SP 800-38A). Блок счетчика (начальное значение - IV) шифруется и складывается по XOR
+ * с очередным блоком текста, после чего счетчик увеличивается на единицу как 128-битное беззнаковое число.
+ * Шифрование и расшифрование совпадают, дополнение не требуется.
+ * Блоки не зависят друг от друга, поэтому большие входные данные делятся на диапазоны счетчика и обрабатываются
+ * параллельно в {@link ForkJoinPool}. Начальный счетчик каждого диапазона вычисляется сложением (см. {@link #addCounter}).
+ * <p>
+ * IV экземпляра фиксирован, и каждый вызов {@link #encrypt(byte[])} начинает поток ключа заново с него, поэтому
+ * экземпляр шифрует ровно одно сообщение: XOR двух шифротекстов на одном потоке ключа равен XOR открытых текстов.
+ * Для нескольких сообщений на одном ключе используется {@link #encrypt(byte[], byte[])} с уникальным IV на каждое
+ * сообщение (например, из {@link #generateIV(int)}).
  */
-//TODO
 @Slf4j
-public class CTRMode {
+public class CTRMode implements Cipher {
 
     private static final SecureRandom random = new SecureRandom();
+    private static final KeySchedule keySchedule = new KeySchedule();
     private static final int BLOCK_SIZE = 16;
+    private static final int PARALLEL_THRESHOLD = 256 * 1024; // Размер данных (в байтах), начиная с которого включается параллельная обработка
+    private static final int CHUNK_BLOCKS = 4096; // Число блоков в одной задаче ForkJoinPool
+    private static final int KEYSTREAM_BLOCKS = 64; // Число блоков потока ключа, вырабатываемых за один вызов шифра
     private final byte[] counter;
+    private final ExpandedKey key;
+    private final BaseCipher cipher;
+    private final ForkJoinPool pool;
 
-    public CTRMode(byte[] iv) {
+    private CTRMode(ExpandedKey key, byte[] iv, CipherImpl.ENGINE engine, ForkJoinPool pool) {
+        checkIv(iv);
         this.counter = Arrays.copyOf(iv, iv.length);
+        this.key = key;
+        this.cipher = engine.create(RijndaelBaseImpl.KEY_LENGTH.ofBits(key.getKeyLength()));
+        this.pool = pool;
     }
+
+    public static CTRMode createInstance(byte[] key, byte[] iv) {
+        return new CTRMode(keySchedule.expandKey(key), iv, EngineSelector.select(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param key - развернутый ключ
+     * @param iv - начальное значение счетчика (16 байт)
+     * @param engine - реализация шифрования блока
+     * @param pool - пул для параллельной обработки больших сообщений
+     */
+    public static CTRMode createInstance(ExpandedKey key, byte[] iv, CipherImpl.ENGINE engine, ForkJoinPool pool) {
+        return new CTRMode(key, iv, engine, pool);
+    }
+
     public static byte[] generateIV(int ivLengthBits) {
         int ivLengthBytes = (ivLengthBits + 7) / 8;
         byte[] iv = new byte[ivLengthBytes];
@@ -36,4 +85,198 @@ public class CTRMode {
         }
         throw new ArithmeticException("Counter overflow");
     }
+
+    /**
+     * Увеличение счетчика сразу на blocks единиц (эквивалентно blocks вызовам {@link #incrementCounter}).
+     * @param counter - блок счетчика (big-endian)
+     * @param blocks - неотрицательное приращение
+     */
+    public static void addCounter(byte[] counter, long blocks) {
+        long carry = 0;
+        for (int i = counter.length - 1; i >= 0; i--) {
+            long sum = (counter[i] & 0xFF) + (blocks & 0xFF) + carry;
+            counter[i] = (byte) sum;
+            carry = sum >>> 8;
+            blocks >>>= 8;
+        }
+        if (carry != 0 || blocks != 0) {
+            throw new ArithmeticException("Counter overflow");
+        }
+    }
+
+    /**
+     * Шифрование сообщения произвольной длины на IV экземпляра. Результат имеет ту же длину, что и исходный текст.
+     * Повторный вызов использует тот же поток ключа, поэтому так можно зашифровать только одно сообщение;
+     * для следующих сообщений - {@link #encrypt(byte[], byte[])}.
+     */
+    public byte[] encrypt(byte[] plainText) {
+        return encrypt(counter, plainText);
+    }
+
+    /**
+     * Расшифрование совпадает с шифрованием: тот же поток ключа складывается с шифротекстом.
+     */
+    public byte[] decrypt(byte[] cipherText) {
+        return encrypt(cipherText);
+    }
+
+    /**
+     * Шифрование сообщения на заданном IV вместо IV экземпляра: один экземпляр (и развернутый ключ) обслуживает
+     * любое число сообщений, если IV каждого сообщения уникален.
+     * @param iv - начальное значение счетчика для этого сообщения (16 байт)
+     */
+    public byte[] encrypt(byte[] iv, byte[] plainText) {
+        checkIv(iv);
+        long start = CipherMetrics.start();
+        byte[] result = new byte[plainText.length];
+        process(plainText, result, iv);
+        CipherMetrics.record(CipherMetrics.MODE.CTR, key.getKeyLength(), plainText.length, start);
+        return result;
+    }
+
+    public byte[] decrypt(byte[] iv, byte[] cipherText) {
+        return encrypt(iv, cipherText);
+    }
+
+    /**
+     * Шифрование оставшихся байтов src напрямую из буфера в буфер (в том числе на месте при src == dst).
+     * Большие буферы делятся на диапазоны и обрабатываются параллельно, как и массивы. Как и
+     * {@link #encrypt(byte[])}, начинает поток ключа с IV экземпляра: экземпляр шифрует одно сообщение.
+     * @return число записанных в dst байтов (равно src.remaining())
+     */
+    @Override
+    public int encrypt(ByteBuffer src, ByteBuffer dst) {
+        long start = CipherMetrics.start();
+        int length = src.remaining();
+        if (dst.remaining() < length) {
+            throw new IllegalArgumentException("expected at least " + length + " bytes in output buffer, but got " + dst.remaining());
+        }
+        int srcPos = src.position();
+        int dstPos = dst.position();
+
+        if (length < PARALLEL_THRESHOLD) {
+            keyStream().xor(src.slice(srcPos, length), dst.slice(dstPos, length));
+        } else {
+            int chunk = CHUNK_BLOCKS * BLOCK_SIZE;
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int offset = 0; offset < length; offset += chunk) {
+                ByteBuffer in = src.slice(srcPos + offset, Math.min(chunk, length - offset));
+                ByteBuffer out = dst.slice(dstPos + offset, in.remaining());
+                long streamOffset = offset;
+                tasks.add(ForkJoinTask.adapt(() -> keyStream(streamOffset).xor(in, out)));
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+
+        src.position(srcPos + length);
+        dst.position(dstPos + length);
+        CipherMetrics.record(CipherMetrics.MODE.CTR, key.getKeyLength(), length, start);
+        return length;
+    }
+
+    @Override
+    public int decrypt(ByteBuffer src, ByteBuffer dst) {
+        return encrypt(src, dst);
+    }
+
+    /**
+     * Поток ключа, начинающийся с IV. Используется для потоковой обработки данных
+     * (см. {@link CtrEncryptingOutputStream}, {@link CtrDecryptingInputStream}).
+     */
+    public CtrKeystream keyStream() {
+        return new CtrKeystream(cipher, key, counter);
+    }
+
+    /**
+     * Поток ключа, начинающийся с IV, в котором счетчик увеличивается по модулю 2^128: за блоком ff..ff следует
+     * 00..00, а не ArithmeticException. Так ведет себя AES/CTR в SunJCE; используется провайдером JCE, чтобы
+     * замена провайдера не меняла поведение вызывающего кода.
+     */
+    public CtrKeystream wrappingKeyStream() {
+        return new CtrKeystream(cipher, key, counter, BLOCK_SIZE, true);
+    }
+
+    /**
+     * Поток ключа, начинающийся с байта offset сообщения. Счетчик вычисляется сложением IV с offset / 16,
+     * неполный первый блок пропускается внутри потока ключа.
+     */
+    public CtrKeystream keyStream(long offset) {
+        CtrKeystream keyStream = keyStream();
+        keyStream.skip(offset);
+        return keyStream;
+    }
+
+    private void process(byte[] in, byte[] out, byte[] iv) {
+        long blocks = (in.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (in.length < PARALLEL_THRESHOLD) {
+            processRange(in, out, iv, 0, blocks);
+        } else {
+            pool.invoke(new CounterRangeTask(in, out, iv, 0, blocks));
+        }
+    }
+
+    private static void checkIv(byte[] iv) {
+        if (iv.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("expected IV length " + BLOCK_SIZE + ", but got " + iv.length);
+        }
+    }
+
+    /**
+     * Обработка блоков [fromBlock, toBlock). Значения счетчика порциями по KEYSTREAM_BLOCKS записываются в буфер
+     * и шифруются многоблочным методом. Последний блок сообщения может быть неполным.
+     */
+    private void processRange(byte[] in, byte[] out, byte[] iv, long fromBlock, long toBlock) {
+        byte[] counterBlock = Arrays.copyOf(iv, BLOCK_SIZE);
+        byte[] keyStream = new byte[KEYSTREAM_BLOCKS * BLOCK_SIZE];
+        addCounter(counterBlock, fromBlock);
+
+        for (long block = fromBlock; block < toBlock; block += KEYSTREAM_BLOCKS) {
+            int blocks = (int) Math.min(KEYSTREAM_BLOCKS, toBlock - block);
+            for (int i = 0; i < blocks; i++) {
+                System.arraycopy(counterBlock, 0, keyStream, i * BLOCK_SIZE, BLOCK_SIZE);
+                if (block + i + 1 < toBlock) {
+                    incrementCounter(counterBlock);
+                }
+            }
+            cipher.encryptBlocks(keyStream, 0, keyStream, 0, blocks, key);
+
+            int offset = (int) (block * BLOCK_SIZE);
+            int length = Math.min(blocks * BLOCK_SIZE, in.length - offset);
+            Xor.xor(in, offset, keyStream, 0, out, offset, length);
+        }
+    }
+
+    /**
+     * Задача ForkJoinPool: делит диапазон блоков пополам, пока он не станет меньше CHUNK_BLOCKS.
+     */
+    private class CounterRangeTask extends RecursiveAction {
+        private final byte[] in;
+        private final byte[] out;
+        private final byte[] iv;
+        private final long fromBlock;
+        private final long toBlock;
+
+        CounterRangeTask(byte[] in, byte[] out, byte[] iv, long fromBlock, long toBlock) {
+            this.in = in;
+            this.out = out;
+            this.iv = iv;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock <= CHUNK_BLOCKS) {
+                processRange(in, out, iv, fromBlock, toBlock);
+                return;
+            }
+            long middle = (fromBlock + toBlock) >>> 1;
+            invokeAll(new CounterRangeTask(in, out, iv, fromBlock, middle), new CounterRangeTask(in, out, iv, middle, toBlock));
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package org.digitalleague.mode;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Входной поток, расшифровывающий читаемые данные в режиме CTR. Данные расшифровываются на месте
+ * в буфере вызывающей стороны, дополнительная память не выделяется.
+ */
+public class CtrDecryptingInputStream extends FilterInputStream {
+    private final CtrKeystream keyStream;
+    private final byte[] single = new byte[1];
+
+    public CtrDecryptingInputStream(InputStream in, CTRMode ctr) {
+        super(in);
+        this.keyStream = ctr.keyStream();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            keyStream.xor(b, off, b, off, n);
+        }
+        return n;
+    }
+
+    /**
+     * Пропуск байтов исходного потока со сдвигом позиции в потоке ключа на столько же байтов.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0) {
+            keyStream.skip(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
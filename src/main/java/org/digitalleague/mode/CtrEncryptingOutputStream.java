@@ -0,0 +1,39 @@
+package org.digitalleague.mode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Выходной поток, шифрующий записываемые данные в режиме CTR. Данные обрабатываются порциями через буфер
+ * фиксированного размера, поэтому объем используемой памяти не зависит от размера сообщения.
+ * Так как в режиме CTR шифрование и расшифрование совпадают, поток можно использовать и для расшифрования.
+ */
+public class CtrEncryptingOutputStream extends FilterOutputStream {
+    private static final int BUFFER_SIZE = 8192;
+    private final CtrKeystream keyStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    public CtrEncryptingOutputStream(OutputStream out, CTRMode ctr) {
+        super(out);
+        this.keyStream = ctr.keyStream();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[0] = (byte) b;
+        keyStream.xor(buffer, 0, buffer, 0, 1);
+        out.write(buffer, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int chunk = Math.min(len, buffer.length);
+            keyStream.xor(b, off, buffer, 0, chunk);
+            out.write(buffer, 0, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+}
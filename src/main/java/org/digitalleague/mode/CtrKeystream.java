@@ -0,0 +1,204 @@
+package org.digitalleague.mode;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.util.Xor;
+import org.digitalleague.key.ExpandedKey;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Последовательный поток ключа режима CTR. Поток ключа вырабатывается порциями в буфер фиксированного размера,
+ * который переиспользуется, поэтому расход памяти не зависит от объема обрабатываемых данных.
+ * Позиция внутри блока сохраняется между вызовами, так что данные можно подавать частями произвольной длины.
+ * Без переполнения по модулю поток ключа заканчивается блоком счетчика ff..ff: буфер заполняется только до него,
+ * а ArithmeticException выбрасывается при первом обращении к следующему байту (как в {@link CTRMode#encrypt(byte[])}).
+ * Экземпляр не потокобезопасен.
+ */
+public class CtrKeystream {
+    private static final int BLOCK_SIZE = 16;
+    private static final int BUFFER_BLOCKS = 256; // 4 КБ потока ключа за одно заполнение буфера
+    private final BaseCipher cipher;
+    private final ExpandedKey key;
+    private final byte[] counterBlock;
+    private final int counterBytes; // Число младших байтов блока, образующих счетчик
+    private final boolean wrapping; // Счетчик увеличивается по модулю, а не завершается ошибкой при переполнении
+    private final byte[] buffer = new byte[BUFFER_BLOCKS * BLOCK_SIZE];
+    private final ByteBuffer keyStreamView = ByteBuffer.wrap(buffer);
+    private int position; // Число уже использованных байтов буфера
+    private int limit; // Число выработанных байтов буфера
+    private boolean exhausted; // Счетчик прошел значение ff..ff (только без переполнения по модулю)
+
+    CtrKeystream(BaseCipher cipher, ExpandedKey key, byte[] iv) {
+        this(cipher, key, iv, BLOCK_SIZE);
+    }
+
+    /**
+     * @param counterBytes - число младших байтов блока, которые увеличиваются как счетчик: 16 - весь блок
+     *                     (переполнение - ошибка), 4 - функция inc32 режима GCM (счетчик по модулю 2^32)
+     */
+    CtrKeystream(BaseCipher cipher, ExpandedKey key, byte[] iv, int counterBytes) {
+        this(cipher, key, iv, counterBytes, counterBytes != BLOCK_SIZE);
+    }
+
+    /**
+     * @param wrapping - для 16-байтового счетчика: true - счетчик увеличивается по модулю 2^128 (после ff..ff
+     *                 следует 00..00, как в SunJCE), false - переполнение завершается ArithmeticException
+     */
+    CtrKeystream(BaseCipher cipher, ExpandedKey key, byte[] iv, int counterBytes, boolean wrapping) {
+        this.cipher = cipher;
+        this.key = key;
+        this.counterBlock = Arrays.copyOf(iv, BLOCK_SIZE);
+        this.counterBytes = counterBytes;
+        this.wrapping = wrapping;
+    }
+
+    /**
+     * Сложение по XOR len байтов из in с очередными байтами потока ключа. Допускается in == out.
+     */
+    public void xor(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        while (len > 0) {
+            if (position == limit) {
+                refill();
+            }
+            int chunk = Math.min(len, limit - position);
+            Xor.xor(in, inOff, buffer, position, out, outOff, chunk);
+            position += chunk;
+            inOff += chunk;
+            outOff += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Запись очередных len байтов потока ключа в out.
+     */
+    public void next(byte[] out, int outOff, int len) {
+        while (len > 0) {
+            if (position == limit) {
+                refill();
+            }
+            int chunk = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, out, outOff, chunk);
+            position += chunk;
+            outOff += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Сложение по XOR всех оставшихся байтов src с потоком ключа и запись результата в dst.
+     * Буферы могут быть прямыми (в том числе отображенными в память файлами); данные не копируются в промежуточный
+     * массив, с потоком ключа складываются сразу 8-байтовые слова. Позиции src и dst сдвигаются на число
+     * обработанных байтов; допускается src == dst.
+     */
+    public void xor(ByteBuffer src, ByteBuffer dst) {
+        int len = src.remaining();
+        if (dst.remaining() < len) {
+            throw new IllegalArgumentException("expected at least " + len + " bytes in output buffer, but got " + dst.remaining());
+        }
+        int srcPos = src.position();
+        int dstPos = dst.position();
+        boolean sameOrder = src.order() == dst.order();
+        keyStreamView.order(src.order());
+
+        int done = 0;
+        while (done < len) {
+            if (position == limit) {
+                refill();
+            }
+            int chunk = Math.min(len - done, limit - position);
+            int i = 0;
+            if (sameOrder) {
+                for (; i + 8 <= chunk; i += 8) {
+                    dst.putLong(dstPos + done + i, src.getLong(srcPos + done + i) ^ keyStreamView.getLong(position + i));
+                }
+            }
+            for (; i < chunk; i++) {
+                dst.put(dstPos + done + i, (byte) (src.get(srcPos + done + i) ^ buffer[position + i]));
+            }
+            position += chunk;
+            done += chunk;
+        }
+
+        src.position(srcPos + len);
+        if (dst != src) {
+            dst.position(dstPos + len);
+        }
+    }
+
+    /**
+     * Пропуск n байтов потока ключа (без выработки пропущенных целых порций).
+     */
+    public void skip(long n) {
+        long buffered = limit - position;
+        if (n <= buffered) {
+            position += (int) n;
+            return;
+        }
+        n -= buffered;
+        addCounter(n / BLOCK_SIZE);
+        position = limit;
+        int rest = (int) (n % BLOCK_SIZE);
+        if (rest > 0) {
+            refill();
+            position = rest;
+        }
+    }
+
+    /**
+     * Заполнение буфера: в буфер записываются последовательные значения счетчика, после чего все блоки
+     * шифруются на месте одним вызовом многоблочного метода. Без переполнения по модулю заполнение
+     * останавливается на блоке ff..ff.
+     */
+    private void refill() {
+        if (exhausted) {
+            throw new ArithmeticException("Counter overflow");
+        }
+        int blocks = 0;
+        while (blocks < BUFFER_BLOCKS && !exhausted) {
+            System.arraycopy(counterBlock, 0, buffer, blocks * BLOCK_SIZE, BLOCK_SIZE);
+            blocks++;
+            addCounter(1);
+        }
+        cipher.encryptBlocks(buffer, 0, buffer, 0, blocks, key);
+        position = 0;
+        limit = blocks * BLOCK_SIZE;
+    }
+
+    private void addCounter(long blocks) {
+        if (counterBytes != BLOCK_SIZE) {
+            addCounter32(blocks);
+        } else if (addCounter128(blocks) && !wrapping) {
+            exhausted = true;
+        }
+    }
+
+    /**
+     * Увеличение всего блока счетчика по модулю 2^128: перенос из старшего байта отбрасывается
+     * @return true, если счетчик переполнился
+     */
+    private boolean addCounter128(long blocks) {
+        long carry = 0;
+        for (int i = BLOCK_SIZE - 1; i >= 0 && (blocks != 0 || carry != 0); i--) {
+            long sum = (counterBlock[i] & 0xFF) + (blocks & 0xFF) + carry;
+            counterBlock[i] = (byte) sum;
+            carry = sum >>> 8;
+            blocks >>>= 8;
+        }
+        return carry != 0 || blocks != 0;
+    }
+
+    /**
+     * Увеличение младших 32 бит счетчика по модулю 2^32 (старшие 96 бит не изменяются)
+     */
+    private void addCounter32(long blocks) {
+        int counter = ((counterBlock[12] & 0xFF) << 24) | ((counterBlock[13] & 0xFF) << 16)
+                | ((counterBlock[14] & 0xFF) << 8) | (counterBlock[15] & 0xFF);
+        counter += (int) blocks;
+        counterBlock[12] = (byte) (counter >>> 24);
+        counterBlock[13] = (byte) (counter >>> 16);
+        counterBlock[14] = (byte) (counter >>> 8);
+        counterBlock[15] = (byte) counter;
+    }
+}
@@ -0,0 +1,245 @@
+package org.digitalleague.mode;
+
+import org.digitalleague.cipher.util.Xor;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Пул заранее выработанного потока ключа режима CTR для шифрования небольших сообщений с низкой задержкой.
+ * Фоновый поток шифрует последовательные диапазоны счетчика в кольцевой буфер из depth сегментов по 4 КБ;
+ * когда число готовых сегментов опускается до refillWatermark, буфер дополняется до полного. Шифрование сообщения
+ * сводится к сложению по XOR с готовым потоком ключа. Если готовых сегментов нет (underrun), шифрующий поток
+ * ожидает фоновый, такие случаи подсчитываются.
+ * Поток ключа пула начинается с IV и расходуется сообщениями подряд; {@link #encrypt} возвращает смещение начала
+ * сообщения в потоке ключа, по которому оно расшифровывается ({@link CTRMode#keyStream(long)},
+ * {@link CtrSeekableByteChannel}). Чтобы поток ключа не использовался повторно, переданный пулу CTRMode
+ * не должен шифровать данные в обход пула. Экземпляр потокобезопасен.
+ */
+public class CtrKeystreamPool implements AutoCloseable {
+    private static final int SEGMENT_SIZE = 4096; // Размер одного сегмента потока ключа в байтах
+    private static final int DEFAULT_DEPTH = 64;
+    private final CtrKeystream keyStream;
+    private final int depth;
+    private final int refillWatermark;
+    private final ArrayDeque<byte[]> ready;
+    private final ArrayDeque<byte[]> free;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refillNeeded = lock.newCondition();
+    private final Condition segmentReady = lock.newCondition();
+    private final Thread producer;
+    private final LongAdder underruns = new LongAdder();
+    private final LongAdder generatedSegments = new LongAdder();
+    private byte[] current; // Сегмент, из которого берется поток ключа
+    private int currentPosition = SEGMENT_SIZE; // Число использованных байтов текущего сегмента
+    private long position; // Смещение следующего байта в потоке ключа
+    private volatile boolean closed;
+    private volatile RuntimeException failure;
+
+    private CtrKeystreamPool(CTRMode ctr, int depth, int refillWatermark) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("expected positive pool depth, but got " + depth);
+        }
+        if (refillWatermark < 0 || refillWatermark >= depth) {
+            throw new IllegalArgumentException("expected refill watermark in range [0, " + depth + "), but got " + refillWatermark);
+        }
+        this.keyStream = ctr.keyStream();
+        this.depth = depth;
+        this.refillWatermark = refillWatermark;
+        this.ready = new ArrayDeque<>(depth);
+        this.free = new ArrayDeque<>(depth);
+        this.producer = new Thread(this::produce, "ctr-keystream-pool");
+        this.producer.setDaemon(true);
+    }
+
+    public static CtrKeystreamPool createInstance(CTRMode ctr) {
+        return createInstance(ctr, DEFAULT_DEPTH, DEFAULT_DEPTH / 2);
+    }
+
+    /**
+     * @param ctr - режим CTR с ключом и IV
+     * @param depth - емкость кольцевого буфера в сегментах по 4 КБ
+     * @param refillWatermark - число готовых сегментов, при котором фоновый поток начинает дополнять буфер
+     */
+    public static CtrKeystreamPool createInstance(CTRMode ctr, int depth, int refillWatermark) {
+        CtrKeystreamPool pool = new CtrKeystreamPool(ctr, depth, refillWatermark);
+        pool.producer.start();
+        return pool;
+    }
+
+    /**
+     * Шифрование len байтов из in с записью в out (допускается in == out).
+     * @return смещение первого байта сообщения в потоке ключа
+     */
+    public synchronized long encrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        long start = position;
+        while (len > 0) {
+            if (currentPosition == SEGMENT_SIZE) {
+                nextSegment();
+            }
+            int chunk = Math.min(len, SEGMENT_SIZE - currentPosition);
+            Xor.xor(in, inOff, current, currentPosition, out, outOff, chunk);
+            currentPosition += chunk;
+            position += chunk;
+            inOff += chunk;
+            outOff += chunk;
+            len -= chunk;
+        }
+        return start;
+    }
+
+    /**
+     * @return число готовых сегментов в буфере
+     */
+    public int available() {
+        lock.lock();
+        try {
+            return ready.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return число случаев, когда шифрующему потоку пришлось ждать выработки потока ключа
+     */
+    public long getUnderrunCount() {
+        return underruns.sum();
+    }
+
+    public long getGeneratedSegmentCount() {
+        return generatedSegments.sum();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getRefillWatermark() {
+        return refillWatermark;
+    }
+
+    /**
+     * Остановка фонового потока с обнулением невыданного потока ключа.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        producer.interrupt();
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            ready.forEach(segment -> Arrays.fill(segment, (byte) 0));
+            free.forEach(segment -> Arrays.fill(segment, (byte) 0));
+            ready.clear();
+            free.clear();
+        } finally {
+            lock.unlock();
+        }
+        synchronized (this) {
+            if (current != null) {
+                Arrays.fill(current, (byte) 0);
+                current = null;
+                currentPosition = SEGMENT_SIZE;
+            }
+        }
+    }
+
+    /**
+     * Переход к следующему готовому сегменту; использованный сегмент обнуляется и возвращается фоновому потоку,
+     * чтобы израсходованный поток ключа не оставался в памяти до перезаписи.
+     */
+    private void nextSegment() {
+        if (current != null) {
+            Arrays.fill(current, (byte) 0);
+        }
+        lock.lock();
+        try {
+            if (current != null) {
+                free.push(current);
+                current = null;
+            }
+            if (ready.isEmpty()) {
+                underruns.increment();
+                refillNeeded.signal();
+            }
+            while (ready.isEmpty()) {
+                if (failure != null) {
+                    throw new IllegalStateException("keystream generation failed", failure);
+                }
+                if (closed) {
+                    throw new IllegalStateException("keystream pool is closed");
+                }
+                segmentReady.awaitUninterruptibly();
+            }
+            current = ready.poll();
+            currentPosition = 0;
+            if (ready.size() <= refillWatermark) {
+                refillNeeded.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Цикл фонового потока: ожидание опустошения буфера до refillWatermark и его дополнение до depth сегментов.
+     * Сегменты вырабатываются вне блокировки и добавляются в буфер по одному, чтобы ожидающий поток получил
+     * первый из них как можно раньше.
+     */
+    private void produce() {
+        try {
+            while (!closed) {
+                lock.lock();
+                try {
+                    while (!closed && ready.size() > refillWatermark) {
+                        refillNeeded.await();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                while (!closed && available() < depth) {
+                    byte[] segment = freeSegment();
+                    keyStream.next(segment, 0, SEGMENT_SIZE);
+                    generatedSegments.increment();
+                    lock.lock();
+                    try {
+                        ready.add(segment);
+                        segmentReady.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Поток остановлен методом close
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            lock.lock();
+            try {
+                // Ожидающие шифрующие потоки получат ошибку вместо бесконечного ожидания
+                segmentReady.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private byte[] freeSegment() {
+        lock.lock();
+        try {
+            byte[] segment = free.poll();
+            return segment != null ? segment : new byte[SEGMENT_SIZE];
+        } finally {
+            lock.unlock();
+        }
+    }
+}
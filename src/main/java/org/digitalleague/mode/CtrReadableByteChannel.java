@@ -0,0 +1,43 @@
+package org.digitalleague.mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Канал чтения, расшифровывающий данные исходного канала в режиме CTR.
+ * Данные читаются через буфер фиксированного размера, не больше, чем помещается в dst.
+ */
+public class CtrReadableByteChannel implements ReadableByteChannel {
+    private static final int BUFFER_SIZE = 8192;
+    private final ReadableByteChannel channel;
+    private final CtrKeystream keyStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+
+    public CtrReadableByteChannel(ReadableByteChannel channel, CTRMode ctr) {
+        this.channel = channel;
+        this.keyStream = ctr.keyStream();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        wrapped.clear().limit(Math.min(dst.remaining(), buffer.length));
+        int n = channel.read(wrapped);
+        if (n > 0) {
+            keyStream.xor(buffer, 0, buffer, 0, n);
+            dst.put(buffer, 0, n);
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,106 @@
+package org.digitalleague.mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Канал с произвольным доступом к данным, зашифрованным в режиме CTR (например, к {@link java.nio.channels.FileChannel}).
+ * Прочитанные байты расшифровываются. Канал доступен только для чтения: запись по произвольной позиции
+ * шифровала бы новые данные тем же потоком ключа, что и уже записанные (повторное использование пары ключ/IV),
+ * и XOR старого и нового шифротекста раскрывал бы XOR открытых текстов. При смене позиции счетчик вычисляется сразу
+ * из IV сложением с номером блока (см. {@link CTRMode#keyStream(long)}), а начало потока ключа до позиции внутри
+ * блока отбрасывается, поэтому чтение диапазона стоит O(длина диапазона), а не O(смещение).
+ * Позиция и размер канала совпадают с позицией и размером исходного канала. Экземпляр не потокобезопасен.
+ */
+public class CtrSeekableByteChannel implements SeekableByteChannel {
+    private final SeekableByteChannel channel;
+    private final CTRMode ctr;
+    private CtrKeystream keyStream; // Поток ключа, соответствующий позиции keyStreamPosition
+    private long keyStreamPosition = -1;
+
+    /**
+     * @param channel - канал с зашифрованными данными; позиция 0 канала соответствует началу сообщения (счетчику IV)
+     * @param ctr - режим CTR с ключом и IV, которыми зашифрованы данные
+     */
+    public CtrSeekableByteChannel(SeekableByteChannel channel, CTRMode ctr) {
+        this.channel = channel;
+        this.ctr = ctr;
+    }
+
+    /**
+     * Чтение с расшифрованием на месте в буфере dst.
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        long position = channel.position();
+        int start = dst.position();
+        int n = channel.read(dst);
+        if (n > 0) {
+            ByteBuffer read = dst.slice(start, n);
+            keyStreamAt(position).xor(read, read);
+            keyStreamPosition += n;
+        }
+        return n;
+    }
+
+    /**
+     * Запись не поддерживается: канал только для чтения.
+     * @throws NonWritableChannelException всегда
+     */
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return channel.position();
+    }
+
+    /**
+     * Смена позиции. Поток ключа для новой позиции вычисляется при следующем чтении.
+     */
+    @Override
+    public CtrSeekableByteChannel position(long newPosition) throws IOException {
+        channel.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Усечение не поддерживается: канал только для чтения.
+     * @throws NonWritableChannelException всегда
+     */
+    @Override
+    public CtrSeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Поток ключа для байта position сообщения. При последовательном доступе используется текущий поток ключа,
+     * иначе счетчик вычисляется заново из IV.
+     */
+    private CtrKeystream keyStreamAt(long position) {
+        if (keyStream == null || keyStreamPosition != position) {
+            keyStream = ctr.keyStream(position);
+            keyStreamPosition = position;
+        }
+        return keyStream;
+    }
+}
@@ -0,0 +1,53 @@
+package org.digitalleague.mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Канал записи, шифрующий данные в режиме CTR перед передачей в исходный канал.
+ * Используется один буфер фиксированного размера; данные из src не изменяются.
+ */
+public class CtrWritableByteChannel implements WritableByteChannel {
+    private static final int BUFFER_SIZE = 8192;
+    private final WritableByteChannel channel;
+    private final CtrKeystream keyStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+
+    public CtrWritableByteChannel(WritableByteChannel channel, CTRMode ctr) {
+        this.channel = channel;
+        this.keyStream = ctr.keyStream();
+    }
+
+    /**
+     * Шифрование и запись всех оставшихся байтов src. Поток ключа уже продвинут на записываемые байты,
+     * поэтому зашифрованная порция всегда дописывается в исходный канал полностью.
+     * @return число записанных байтов (равно src.remaining() на момент вызова)
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int written = 0;
+        while (src.hasRemaining()) {
+            int chunk = Math.min(src.remaining(), buffer.length);
+            src.get(buffer, 0, chunk);
+            keyStream.xor(buffer, 0, buffer, 0, chunk);
+            wrapped.clear().limit(chunk);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+            written += chunk;
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
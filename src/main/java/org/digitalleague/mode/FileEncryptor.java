@@ -0,0 +1,156 @@
+package org.digitalleague.mode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Шифрование файлов в режиме CTR через отображение файлов в память ({@link FileChannel#map}).
+ * Файл делится на области фиксированного размера, каждая область отображается отдельно (что снимает ограничение
+ * в 2 ГБ на одно отображение). Внутри области данные делятся на диапазоны по 64 КБ, как в {@link CTRMode}, которые
+ * шифруются параллельно потоком ключа, начинающимся с их смещения в файле, поэтому параллельно обрабатываются
+ * и файлы меньше одной области.
+ * Данные складываются с потоком ключа напрямую между отображенными буферами, без копирования в byte[].
+ * Метод завершается только после сброса результата на диск. Исходный файл и файл результата должны различаться.
+ */
+public class FileEncryptor {
+    private static final long DEFAULT_REGION_SIZE = 64L * 1024 * 1024; // Размер одной области по умолчанию
+    private static final int BLOCK_SIZE = 16;
+    private static final int CHUNK_SIZE = 4096 * BLOCK_SIZE; // Размер диапазона, обрабатываемого одной задачей ForkJoinPool
+
+    private FileEncryptor() {
+    }
+
+    /**
+     * @param in - исходный файл
+     * @param out - файл для результата (создается или перезаписывается)
+     * @param key - ключ длиной 128, 192 или 256 бит
+     * @param iv - начальное значение счетчика (16 байт)
+     */
+    public static void encrypt(Path in, Path out, byte[] key, byte[] iv) throws IOException {
+        process(in, out, CTRMode.createInstance(key, iv), ForkJoinPool.commonPool());
+    }
+
+    public static void decrypt(Path in, Path out, byte[] key, byte[] iv) throws IOException {
+        process(in, out, CTRMode.createInstance(key, iv), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Шифрование (расшифрование) файла заданным экземпляром CTRMode в указанном пуле.
+     */
+    public static void process(Path in, Path out, CTRMode ctr, ForkJoinPool pool) throws IOException {
+        process(in, out, ctr, pool, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param regionSize - размер области, отображаемой одной задачей (не больше Integer.MAX_VALUE)
+     * @throws IllegalArgumentException - если in и out - один и тот же файл (открытие out с усечением уничтожило бы
+     *                                  исходные данные)
+     */
+    public static void process(Path in, Path out, CTRMode ctr, ForkJoinPool pool, long regionSize) throws IOException {
+        if (regionSize <= 0 || regionSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("expected region size in range (0, " + Integer.MAX_VALUE + "], but got " + regionSize);
+        }
+        if (Files.exists(out) && Files.isSameFile(in, out)) {
+            throw new IllegalArgumentException("expected different input and output files, but got the same file " + in);
+        }
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = src.size();
+            if (size == 0) {
+                return;
+            }
+            // Файл результата сразу получает итоговый размер, чтобы области можно было отображать независимо
+            dst.write(ByteBuffer.allocate(1), size - 1);
+
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += regionSize) {
+                tasks.add(new RegionTask(src, dst, ctr, offset, Math.min(regionSize, size - offset)));
+            }
+            try {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            // Содержимое сброшено каждой задачей через MappedByteBuffer.force, здесь - размер и метаданные файла
+            dst.force(true);
+        }
+    }
+
+    private static class RegionTask extends RecursiveAction {
+        private final FileChannel src;
+        private final FileChannel dst;
+        private final CTRMode ctr;
+        private final long offset;
+        private final long length;
+
+        RegionTask(FileChannel src, FileChannel dst, CTRMode ctr, long offset, long length) {
+            this.src = src;
+            this.dst = dst;
+            this.ctr = ctr;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                MappedByteBuffer input = src.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                MappedByteBuffer output = dst.map(FileChannel.MapMode.READ_WRITE, offset, length);
+                new ChunkTask(input, output, ctr, offset, 0, (int) length).invoke();
+                output.force();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Задача ForkJoinPool: делит диапазон области [from, to) пополам по границе блока, пока он не станет
+     * не больше CHUNK_SIZE, и складывает его с потоком ключа, начинающимся со смещения диапазона в файле.
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private final ByteBuffer input;
+        private final ByteBuffer output;
+        private final CTRMode ctr;
+        private final long regionOffset;
+        private final int from;
+        private final int to;
+
+        ChunkTask(ByteBuffer input, ByteBuffer output, CTRMode ctr, long regionOffset, int from, int to) {
+            this.input = input;
+            this.output = output;
+            this.ctr = ctr;
+            this.regionOffset = regionOffset;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                ctr.keyStream(regionOffset + from).xor(input.slice(from, to - from), output.slice(from, to - from));
+                return;
+            }
+            int middle = ((from + to) >>> 1) & -BLOCK_SIZE;
+            invokeAll(new ChunkTask(input, output, ctr, regionOffset, from, middle),
+                    new ChunkTask(input, output, ctr, regionOffset, middle, to));
+        }
+    }
+}
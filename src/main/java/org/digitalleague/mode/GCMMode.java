@@ -0,0 +1,122 @@
+package org.digitalleague.mode;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.EngineSelector;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+
+import javax.crypto.AEADBadTagException;
+import java.util.Arrays;
+
+/**
+ * Режим GCM (Galois/Counter Mode, NIST SP 800-38D) - шифрование с аутентификацией.
+ * Данные шифруются потоком ключа режима CTR (счетчик inc32, начиная с inc32(J0)), шифротекст и дополнительные
+ * аутентифицируемые данные (AAD) хэшируются функцией GHASH с таблицами, вычисленными один раз для ключа.
+ * Шифрование и вычисление тега выполняются за один проход по данным.
+ * Экземпляр потокобезопасен: состояние отдельного сообщения хранится в {@link GcmOperation}.
+ * Одну пару (ключ, IV) нельзя использовать для шифрования двух разных сообщений.
+ */
+public class GCMMode {
+    public static final int TAG_LENGTH = 16;
+    private static final int BLOCK_SIZE = 16;
+    private static final int DEFAULT_IV_LENGTH = 12;
+    private static final KeySchedule keySchedule = new KeySchedule();
+    private final ExpandedKey key;
+    private final BaseCipher cipher;
+    private final GHash ghash;
+
+    private GCMMode(ExpandedKey key, CipherImpl.ENGINE engine) {
+        this.key = key;
+        this.cipher = engine.create(RijndaelBaseImpl.KEY_LENGTH.ofBits(key.getKeyLength()));
+        byte[] h = new byte[BLOCK_SIZE];
+        cipher.encryptBlock(h, 0, h, 0, key);
+        this.ghash = new GHash(h);
+    }
+
+    public static GCMMode createInstance(byte[] key) {
+        return new GCMMode(keySchedule.expandKey(key), EngineSelector.select());
+    }
+
+    /**
+     * @param key - развернутый ключ
+     * @param engine - реализация шифрования блока
+     */
+    public static GCMMode createInstance(ExpandedKey key, CipherImpl.ENGINE engine) {
+        return new GCMMode(key, engine);
+    }
+
+    /**
+     * Шифрование сообщения целиком.
+     * @param iv - вектор инициализации (рекомендуемая длина - 12 байт)
+     * @param aad - дополнительные аутентифицируемые данные (не шифруются)
+     * @param plainText - открытый текст
+     * @return шифротекст, за которым следует тег длиной TAG_LENGTH
+     */
+    public byte[] encrypt(byte[] iv, byte[] aad, byte[] plainText) {
+        GcmOperation operation = encryption(iv);
+        operation.updateAAD(aad, 0, aad.length);
+        byte[] result = new byte[plainText.length + TAG_LENGTH];
+        operation.update(plainText, 0, plainText.length, result, 0);
+        System.arraycopy(operation.doFinal(), 0, result, plainText.length, TAG_LENGTH);
+        return result;
+    }
+
+    /**
+     * Расшифрование сообщения целиком. Открытый текст возвращается только при совпадении тега.
+     * @param cipherText - шифротекст, за которым следует тег длиной TAG_LENGTH
+     * @throws AEADBadTagException - если тег не совпадает (данные, AAD, IV или ключ не те)
+     */
+    public byte[] decrypt(byte[] iv, byte[] aad, byte[] cipherText) throws AEADBadTagException {
+        if (cipherText.length < TAG_LENGTH) {
+            throw new IllegalArgumentException("expected at least " + TAG_LENGTH + " bytes of cipherText, but got " + cipherText.length);
+        }
+        int length = cipherText.length - TAG_LENGTH;
+        GcmOperation operation = decryption(iv);
+        operation.updateAAD(aad, 0, aad.length);
+        byte[] result = new byte[length];
+        operation.update(cipherText, 0, length, result, 0);
+        try {
+            operation.verify(Arrays.copyOfRange(cipherText, length, cipherText.length));
+        } catch (AEADBadTagException e) {
+            Arrays.fill(result, (byte) 0);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Потоковое шифрование одного сообщения
+     */
+    public GcmOperation encryption(byte[] iv) {
+        return new GcmOperation(true, ghash.fresh(), initialCounter(iv), cipher, key);
+    }
+
+    /**
+     * Потоковое расшифрование одного сообщения. Расшифрованные данные становятся достоверными только после
+     * успешного {@link GcmOperation#verify(byte[])}.
+     */
+    public GcmOperation decryption(byte[] iv) {
+        return new GcmOperation(false, ghash.fresh(), initialCounter(iv), cipher, key);
+    }
+
+    /**
+     * Начальный блок счетчика J0: IV || 0^31 || 1 для 96-битного IV, иначе GHASH(IV || 0 || [len(IV)]_64)
+     */
+    private byte[] initialCounter(byte[] iv) {
+        if (iv.length == 0) {
+            throw new IllegalArgumentException("expected non-empty IV");
+        }
+        byte[] j0 = new byte[BLOCK_SIZE];
+        if (iv.length == DEFAULT_IV_LENGTH) {
+            System.arraycopy(iv, 0, j0, 0, DEFAULT_IV_LENGTH);
+            j0[BLOCK_SIZE - 1] = 1;
+        } else {
+            GHash ivHash = ghash.fresh();
+            ivHash.update(iv, 0, iv.length);
+            ivHash.finish(0, iv.length, j0);
+        }
+        return j0;
+    }
+}
@@ -0,0 +1,164 @@
+package org.digitalleague.mode;
+
+import java.util.Arrays;
+
+/**
+ * Функция GHASH режима GCM (NIST SP 800-38D, 6.4): умножение в GF(2^128) на ключ хэширования H.
+ * Умножение выполняется по 4-битным таблицам Шоупа: для ключа заранее вычисляются 16 произведений H на все
+ * значения полубайта, после чего умножение на H сводится к 32 обращениям к таблице, сдвигам на 4 бита
+ * и приведению по таблице остатков.
+ * Элементы поля хранятся как два long (big-endian, первый байт блока - старший байт hi). В нотации GCM
+ * умножение на x соответствует сдвигу вправо.
+ * Таблицы вычисляются один раз на ключ и разделяются между экземплярами, созданными через {@link #fresh()}.
+ * Экземпляр не потокобезопасен.
+ */
+final class GHash {
+    private static final int BLOCK_SIZE = 16;
+    private static final long R = 0xE100000000000000L; // Многочлен приведения x^128 + x^7 + x^2 + x + 1 в нотации GCM
+
+    /**
+     * Остаток при сдвиге на 4 бита: REM_4BIT[r] - вклад выдвинутых битов r в старшие биты результата
+     */
+    private static final long[] REM_4BIT = {
+            0x0000L << 48, 0x1C20L << 48, 0x3840L << 48, 0x2460L << 48,
+            0x7080L << 48, 0x6CA0L << 48, 0x48C0L << 48, 0x54E0L << 48,
+            0xE100L << 48, 0xFD20L << 48, 0xD940L << 48, 0xC560L << 48,
+            0x9180L << 48, 0x8DA0L << 48, 0xA9C0L << 48, 0xB5E0L << 48
+    };
+
+    private final long[] tableHi;
+    private final long[] tableLo;
+    private long x0; // Старшие 64 бита накопленного значения
+    private long x1; // Младшие 64 бита накопленного значения
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private int bufferLength;
+
+    /**
+     * @param h - ключ хэширования H = E(K, 0^128)
+     */
+    GHash(byte[] h) {
+        this.tableHi = new long[16];
+        this.tableLo = new long[16];
+        long hi = toLong(h, 0);
+        long lo = toLong(h, 8);
+        // Старший бит полубайта - коэффициент при x^0: T[8] = H, T[4] = H*x, T[2] = H*x^2, T[1] = H*x^3
+        for (int i = 8; i > 0; i >>>= 1) {
+            tableHi[i] = hi;
+            tableLo[i] = lo;
+            long carry = -(lo & 1) & R;
+            lo = (hi << 63) | (lo >>> 1);
+            hi = (hi >>> 1) ^ carry;
+        }
+        for (int i = 2; i < 16; i <<= 1) {
+            for (int j = 1; j < i; j++) {
+                tableHi[i + j] = tableHi[i] ^ tableHi[j];
+                tableLo[i + j] = tableLo[i] ^ tableLo[j];
+            }
+        }
+    }
+
+    private GHash(GHash tables) {
+        this.tableHi = tables.tableHi;
+        this.tableLo = tables.tableLo;
+    }
+
+    /**
+     * Новый экземпляр с нулевым состоянием и общими таблицами
+     */
+    GHash fresh() {
+        return new GHash(this);
+    }
+
+    /**
+     * Добавление данных. Неполный блок сохраняется в буфере до следующего вызова или {@link #pad()}.
+     */
+    void update(byte[] in, int off, int len) {
+        if (bufferLength > 0) {
+            int chunk = Math.min(len, BLOCK_SIZE - bufferLength);
+            System.arraycopy(in, off, buffer, bufferLength, chunk);
+            bufferLength += chunk;
+            off += chunk;
+            len -= chunk;
+            if (bufferLength < BLOCK_SIZE) {
+                return;
+            }
+            processBlock(buffer, 0);
+            bufferLength = 0;
+        }
+        for (; len >= BLOCK_SIZE; off += BLOCK_SIZE, len -= BLOCK_SIZE) {
+            processBlock(in, off);
+        }
+        if (len > 0) {
+            System.arraycopy(in, off, buffer, 0, len);
+            bufferLength = len;
+        }
+    }
+
+    /**
+     * Дополнение неполного блока нулями (граница между AAD и шифротекстом)
+     */
+    void pad() {
+        if (bufferLength > 0) {
+            Arrays.fill(buffer, bufferLength, BLOCK_SIZE, (byte) 0);
+            processBlock(buffer, 0);
+            bufferLength = 0;
+        }
+    }
+
+    /**
+     * Завершение: дополнение, блок длин [len(A)]_64 || [len(C)]_64 (в битах) и запись результата в out
+     */
+    void finish(long aadBytes, long textBytes, byte[] out) {
+        pad();
+        x0 ^= aadBytes << 3;
+        x1 ^= textBytes << 3;
+        multiplyH();
+        fromLong(x0, out, 0);
+        fromLong(x1, out, 8);
+    }
+
+    private void processBlock(byte[] in, int off) {
+        x0 ^= toLong(in, off);
+        x1 ^= toLong(in, off + 8);
+        multiplyH();
+    }
+
+    /**
+     * X = X * H. Байты X обрабатываются от последнего к первому, в каждом байте сначала младший полубайт:
+     * Z = Z * x^4 + T[полубайт] (схема Горнера по степеням x^4).
+     */
+    private void multiplyH() {
+        long zHi = 0;
+        long zLo = 0;
+        for (int i = 15; i >= 0; i--) {
+            int b = (int) ((i < 8 ? x0 >>> (56 - 8 * i) : x1 >>> (56 - 8 * (i - 8))) & 0xFF);
+
+            int rem = (int) (zLo & 0x0F);
+            zLo = (zHi << 60) | (zLo >>> 4);
+            zHi = (zHi >>> 4) ^ REM_4BIT[rem] ^ tableHi[b & 0x0F];
+            zLo ^= tableLo[b & 0x0F];
+
+            rem = (int) (zLo & 0x0F);
+            zLo = (zHi << 60) | (zLo >>> 4);
+            zHi = (zHi >>> 4) ^ REM_4BIT[rem] ^ tableHi[b >>> 4];
+            zLo ^= tableLo[b >>> 4];
+        }
+        x0 = zHi;
+        x1 = zLo;
+    }
+
+    private static long toLong(byte[] in, int off) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (in[off + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void fromLong(long value, byte[] out, int off) {
+        for (int i = 7; i >= 0; i--) {
+            out[off + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
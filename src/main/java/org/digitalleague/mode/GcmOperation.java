@@ -0,0 +1,111 @@
+package org.digitalleague.mode;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.key.ExpandedKey;
+
+import javax.crypto.AEADBadTagException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Потоковое шифрование (расшифрование) одного сообщения в режиме GCM. Сначала передаются AAD
+ * ({@link #updateAAD}), затем данные ({@link #update}) частями произвольной длины; тег вычисляется
+ * в {@link #doFinal()} или проверяется в {@link #verify(byte[])}.
+ * При расшифровании данные из update не аутентифицированы до успешной проверки тега.
+ * Экземпляр не потокобезопасен и используется для одного сообщения.
+ */
+public class GcmOperation {
+    private static final int BLOCK_SIZE = 16;
+    private static final int MIN_TAG_LENGTH = 12;
+    private static final long MAX_TEXT_LENGTH = (1L << 36) - 32; // 2^39 - 256 бит (NIST SP 800-38D, 5.2.1.1)
+    private final boolean encrypting;
+    private final GHash ghash;
+    private final CtrKeystream keyStream;
+    private final byte[] tagMask; // E(K, J0)
+    private long aadLength;
+    private long textLength;
+    private boolean textStarted;
+    private boolean finished;
+
+    GcmOperation(boolean encrypting, GHash ghash, byte[] j0, BaseCipher cipher, ExpandedKey key) {
+        this.encrypting = encrypting;
+        this.ghash = ghash;
+        this.tagMask = new byte[BLOCK_SIZE];
+        cipher.encryptBlock(j0, 0, tagMask, 0, key);
+
+        byte[] counter = Arrays.copyOf(j0, BLOCK_SIZE);
+        this.keyStream = new CtrKeystream(cipher, key, counter, 4);
+        keyStream.skip(BLOCK_SIZE); // Данные шифруются начиная с inc32(J0)
+    }
+
+    /**
+     * Добавление AAD. Допускается только до первого вызова update.
+     */
+    public void updateAAD(byte[] aad, int off, int len) {
+        checkNotFinished();
+        if (textStarted) {
+            throw new IllegalStateException("AAD must be supplied before data");
+        }
+        ghash.update(aad, off, len);
+        aadLength += len;
+    }
+
+    /**
+     * Шифрование (расшифрование) len байтов из in в out. Допускается in == out с совпадающими смещениями.
+     * @return число записанных в out байтов (всегда len)
+     */
+    public int update(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        checkNotFinished();
+        if (len > MAX_TEXT_LENGTH - textLength) {
+            throw new IllegalStateException("GCM message length limit exceeded");
+        }
+        if (!textStarted) {
+            ghash.pad();
+            textStarted = true;
+        }
+        if (encrypting) {
+            keyStream.xor(in, inOff, out, outOff, len);
+            ghash.update(out, outOff, len);
+        } else {
+            ghash.update(in, inOff, len);
+            keyStream.xor(in, inOff, out, outOff, len);
+        }
+        textLength += len;
+        return len;
+    }
+
+    /**
+     * Завершение сообщения и вычисление тега длиной {@link GCMMode#TAG_LENGTH}
+     */
+    public byte[] doFinal() {
+        checkNotFinished();
+        finished = true;
+        byte[] tag = new byte[BLOCK_SIZE];
+        ghash.finish(aadLength, textLength, tag);
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            tag[i] ^= tagMask[i];
+        }
+        return tag;
+    }
+
+    /**
+     * Завершение расшифрования и проверка тега (сравнение за постоянное время). Допускаются укороченные
+     * теги длиной от 12 до 16 байтов.
+     * @throws AEADBadTagException - если тег не совпадает
+     */
+    public void verify(byte[] tag) throws AEADBadTagException {
+        if (tag.length < MIN_TAG_LENGTH || tag.length > BLOCK_SIZE) {
+            throw new IllegalArgumentException("expected tag length from " + MIN_TAG_LENGTH + " to " + BLOCK_SIZE + ", but got " + tag.length);
+        }
+        byte[] expected = Arrays.copyOf(doFinal(), tag.length);
+        if (!MessageDigest.isEqual(expected, tag)) {
+            throw new AEADBadTagException("GCM tag mismatch");
+        }
+    }
+
+    private void checkNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("GCM operation is already finished");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.digitalleague.provider;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.util.Padding;
+import org.digitalleague.metrics.CipherMetrics;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.util.Arrays;
+
+/**
+ * Общая часть блочных режимов (ECB, CBC) с дополнением PKCS#7 или без него. Между вызовами update хранится не
+ * больше одного блока: неполный хвост входа, а при расшифровании с дополнением - последний целый блок, который
+ * нельзя выдать до doFinal, так как в нем может оказаться дополнение.
+ */
+abstract class BlockModeCipherSpi extends RijndaelCipherSpi {
+    private final boolean padding;
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private final byte[] lastBlock = new byte[BLOCK_SIZE];
+    private int buffered;
+
+    BlockModeCipherSpi(CipherImpl.ENGINE engine, String mode, boolean padding, boolean needsIv) {
+        super(engine, mode, padding ? "PKCS5Padding" : "NoPadding", needsIv);
+        this.padding = padding;
+    }
+
+    /**
+     * Обработка nBlocks целых блоков с учетом состояния режима (для CBC - сцепления с предыдущим блоком).
+     * Массивы in и out различны.
+     */
+    abstract void processBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks);
+
+    /**
+     * Возврат состояния режима к начальному (для CBC - к IV)
+     */
+    abstract void resetChain();
+
+    @Override
+    void init() {
+        reset();
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        int total = buffered + inputLen;
+        return encrypt && padding ? total - total % BLOCK_SIZE + BLOCK_SIZE : total;
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        byte[] output = new byte[updateLength(inputLen)];
+        update(input, inputOffset, inputLen, output, 0);
+        return output;
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException {
+        checkOutput(updateLength(inputLen), output.length - outputOffset);
+        return update(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+            throws IllegalBlockSizeException, BadPaddingException {
+        byte[] output = new byte[engineGetOutputSize(inputLen)];
+        int length = doFinal(input, inputOffset, inputLen, output, 0);
+        return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    /**
+     * При расшифровании с дополнением размер результата до снятия дополнения неизвестен, поэтому в output
+     * требуется место под весь шифротекст ({@link #engineGetOutputSize}).
+     */
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        checkOutput(engineGetOutputSize(inputLen), output.length - outputOffset);
+        return doFinal(input, inputOffset, inputLen, output, outputOffset);
+    }
+
+    /**
+     * Число байтов, которые будут выданы вызовом update с inputLen байтами на входе
+     */
+    private int updateLength(int inputLen) {
+        int total = buffered + inputLen;
+        int length = total - total % BLOCK_SIZE;
+        if (!encrypt && padding && length == total && length > 0) {
+            length -= BLOCK_SIZE; // Последний целый блок удерживается до doFinal
+        }
+        return length;
+    }
+
+    private int update(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        int length = updateLength(len);
+        if (in == out && len > 0) {
+            // Выход отстает от входа на число буферизованных байтов, а CBC при расшифровании читает предыдущий
+            // блок шифротекста после записи результата, поэтому при обработке на месте вход копируется
+            in = Arrays.copyOfRange(in, inOff, inOff + len);
+            inOff = 0;
+        }
+
+        int done = 0;
+        if (length > 0 && buffered > 0) {
+            int need = BLOCK_SIZE - buffered;
+            if (need > 0) {
+                System.arraycopy(in, inOff, buffer, buffered, need);
+            }
+            processBlocks(buffer, 0, out, outOff, 1);
+            inOff += need;
+            len -= need;
+            buffered = 0;
+            done = BLOCK_SIZE;
+        }
+        int nBlocks = (length - done) / BLOCK_SIZE;
+        if (nBlocks > 0) {
+            processBlocks(in, inOff, out, outOff + done, nBlocks);
+            inOff += nBlocks * BLOCK_SIZE;
+            len -= nBlocks * BLOCK_SIZE;
+        }
+        if (len > 0) {
+            System.arraycopy(in, inOff, buffer, buffered, len);
+            buffered += len;
+        }
+        return length;
+    }
+
+    private int doFinal(byte[] in, int inOff, int len, byte[] out, int outOff)
+            throws IllegalBlockSizeException, BadPaddingException {
+        try {
+            int total = buffered + len;
+            if ((!encrypt || !padding) && total % BLOCK_SIZE != 0 || !encrypt && padding && total == 0) {
+                throw new IllegalBlockSizeException("expected input length multiple of " + BLOCK_SIZE + ", but got " + total);
+            }
+            int length = update(in, inOff, len, out, outOff);
+            if (!padding) {
+                return length;
+            }
+            if (encrypt) {
+                Arrays.fill(buffer, buffered, BLOCK_SIZE, (byte) (BLOCK_SIZE - buffered));
+                processBlocks(buffer, 0, out, outOff + length, 1);
+                return length + BLOCK_SIZE;
+            }
+            processBlocks(buffer, 0, lastBlock, 0, 1);
+            int paddingSize = Padding.paddingSize(lastBlock, BLOCK_SIZE);
+            if (paddingSize == 0) {
+                CipherMetrics.recordPaddingError();
+                throw new BadPaddingException("invalid PKCS#7 padding");
+            }
+            System.arraycopy(lastBlock, 0, out, outOff + length, BLOCK_SIZE - paddingSize);
+            return length + BLOCK_SIZE - paddingSize;
+        } finally {
+            reset();
+        }
+    }
+
+    private void reset() {
+        buffered = 0;
+        Arrays.fill(buffer, (byte) 0);
+        Arrays.fill(lastBlock, (byte) 0);
+        resetChain();
+    }
+}
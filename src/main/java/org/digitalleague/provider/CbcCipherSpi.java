@@ -0,0 +1,38 @@
+package org.digitalleague.provider;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.util.Xor;
+
+/**
+ * "AES/CBC/NoPadding" и "AES/CBC/PKCS5Padding". Шифрование последовательно; при расшифровании все блоки
+ * расшифровываются одним многоблочным вызовом, после чего складываются с предыдущими блоками шифротекста.
+ */
+final class CbcCipherSpi extends BlockModeCipherSpi {
+    private final byte[] chain = new byte[BLOCK_SIZE]; // Последний блок шифротекста (в начале - IV)
+
+    CbcCipherSpi(CipherImpl.ENGINE engine, boolean padding) {
+        super(engine, "CBC", padding, true);
+    }
+
+    @Override
+    void processBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks) {
+        int len = nBlocks * BLOCK_SIZE;
+        if (encrypt) {
+            for (int offset = 0; offset < len; offset += BLOCK_SIZE) {
+                Xor.xor(in, inOff + offset, chain, 0, out, outOff + offset, BLOCK_SIZE);
+                cipher.encryptBlock(out, outOff + offset, out, outOff + offset, key);
+                System.arraycopy(out, outOff + offset, chain, 0, BLOCK_SIZE);
+            }
+            return;
+        }
+        cipher.decryptBlocks(in, inOff, out, outOff, nBlocks, key);
+        Xor.xor(out, outOff, chain, 0, out, outOff, BLOCK_SIZE);
+        Xor.xor(out, outOff + BLOCK_SIZE, in, inOff, out, outOff + BLOCK_SIZE, len - BLOCK_SIZE);
+        System.arraycopy(in, inOff + len - BLOCK_SIZE, chain, 0, BLOCK_SIZE);
+    }
+
+    @Override
+    void resetChain() {
+        System.arraycopy(iv, 0, chain, 0, BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,106 @@
+package org.digitalleague.provider;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.mode.CtrKeystream;
+
+import javax.crypto.ShortBufferException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * "AES/CTR/NoPadding": данные складываются с последовательным потоком ключа {@link CtrKeystream}, поэтому
+ * update возвращает ровно столько байтов, сколько получил, и данные не буферизуются вовсе.
+ * doFinal возвращает поток ключа к начальному значению счетчика (IV). Как и в SunJCE, счетчик увеличивается
+ * по модулю 2^128, поэтому IV вблизи ff..ff не приводит к ошибке.
+ */
+final class CtrCipherSpi extends RijndaelCipherSpi {
+    private CTRMode ctr;
+    private CtrKeystream keyStream;
+
+    CtrCipherSpi(CipherImpl.ENGINE engine) {
+        super(engine, "CTR", "NoPadding", true);
+    }
+
+    @Override
+    void init() {
+        ctr = CTRMode.createInstance(key, iv, engine, ForkJoinPool.commonPool());
+        keyStream = ctr.wrappingKeyStream();
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+        return inputLen;
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+        byte[] output = new byte[inputLen];
+        xor(input, inputOffset, inputLen, output, 0);
+        return output;
+    }
+
+    @Override
+    protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException {
+        checkOutput(inputLen, output.length - outputOffset);
+        xor(input, inputOffset, inputLen, output, outputOffset);
+        return inputLen;
+    }
+
+    /**
+     * Прямые буферы складываются с потоком ключа без копирования в промежуточный массив.
+     */
+    @Override
+    protected int engineUpdate(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+        int len = input.remaining();
+        checkOutput(len, output.remaining());
+        if (input.hasArray() && output.hasArray()) {
+            xor(input.array(), input.arrayOffset() + input.position(), len,
+                    output.array(), output.arrayOffset() + output.position());
+            input.position(input.limit());
+            output.position(output.position() + len);
+        } else {
+            keyStream.xor(input, output);
+        }
+        return len;
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen) {
+        byte[] output = engineUpdate(input, inputOffset, inputLen);
+        keyStream = ctr.wrappingKeyStream();
+        return output;
+    }
+
+    @Override
+    protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+            throws ShortBufferException {
+        int len = engineUpdate(input, inputOffset, inputLen, output, outputOffset);
+        keyStream = ctr.wrappingKeyStream();
+        return len;
+    }
+
+    @Override
+    protected int engineDoFinal(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+        int len = engineUpdate(input, output);
+        keyStream = ctr.wrappingKeyStream();
+        return len;
+    }
+
+    /**
+     * Если вход и выход - один массив со смещенными диапазонами, вход копируется: поток ключа складывается
+     * с данными слева направо и иначе затер бы еще не прочитанные байты.
+     */
+    private void xor(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len == 0) {
+            return;
+        }
+        if (in == out && inOff != outOff) {
+            in = Arrays.copyOfRange(in, inOff, inOff + len);
+            inOff = 0;
+        }
+        keyStream.xor(in, inOff, out, outOff, len);
+    }
+}
@@ -0,0 +1,26 @@
+package org.digitalleague.provider;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+
+/**
+ * "AES/ECB/NoPadding" и "AES/ECB/PKCS5Padding": целые блоки обрабатываются многоблочным методом блочного шифра.
+ */
+final class EcbCipherSpi extends BlockModeCipherSpi {
+
+    EcbCipherSpi(CipherImpl.ENGINE engine, boolean padding) {
+        super(engine, "ECB", padding, false);
+    }
+
+    @Override
+    void processBlocks(byte[] in, int inOff, byte[] out, int outOff, int nBlocks) {
+        if (encrypt) {
+            cipher.encryptBlocks(in, inOff, out, outOff, nBlocks, key);
+        } else {
+            cipher.decryptBlocks(in, inOff, out, outOff, nBlocks, key);
+        }
+    }
+
+    @Override
+    void resetChain() {
+    }
+}
@@ -0,0 +1,175 @@
+package org.digitalleague.provider;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
+
+/**
+ * Общая часть реализаций {@link CipherSpi}: разбор ключа и IV, развертывание ключа и создание блочного шифра
+ * выбранной реализации. Режим и дополнение фиксируются сервисом провайдера (например, "AES/CBC/PKCS5Padding").
+ */
+abstract class RijndaelCipherSpi extends CipherSpi {
+    static final int BLOCK_SIZE = 16;
+    private static final KeySchedule keySchedule = new KeySchedule();
+    final CipherImpl.ENGINE engine;
+    private final String mode;
+    private final String padding;
+    private final boolean needsIv;
+    boolean encrypt;
+    BaseCipher cipher;
+    ExpandedKey key;
+    byte[] iv;
+
+    RijndaelCipherSpi(CipherImpl.ENGINE engine, String mode, String padding, boolean needsIv) {
+        this.engine = engine;
+        this.mode = mode;
+        this.padding = padding;
+        this.needsIv = needsIv;
+    }
+
+    /**
+     * Подготовка состояния режима после инициализации ключом и IV (поля encrypt, cipher, key, iv уже заполнены)
+     */
+    abstract void init();
+
+    @Override
+    protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+        if (!this.mode.equalsIgnoreCase(mode)) {
+            throw new NoSuchAlgorithmException("expected mode " + this.mode + ", but got " + mode);
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(String padding) throws NoSuchPaddingException {
+        if (!this.padding.equalsIgnoreCase(padding)) {
+            throw new NoSuchPaddingException("expected padding " + this.padding + ", but got " + padding);
+        }
+    }
+
+    @Override
+    protected int engineGetBlockSize() {
+        return BLOCK_SIZE;
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return iv == null ? null : iv.clone();
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        if (iv == null) {
+            return null;
+        }
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("AES");
+            parameters.init(new IvParameterSpec(iv));
+            return parameters;
+        } catch (NoSuchAlgorithmException | InvalidParameterSpecException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected int engineGetKeySize(Key key) throws InvalidKeyException {
+        return rawKey(key).length * 8;
+    }
+
+    /**
+     * Инициализация без параметров: при шифровании IV генерируется случайно, при расшифровании IV обязателен.
+     */
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+        try {
+            engineInit(opmode, key, (AlgorithmParameterSpec) null, random);
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new InvalidKeyException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        boolean encrypt = switch (opmode) {
+            case Cipher.ENCRYPT_MODE -> true;
+            case Cipher.DECRYPT_MODE -> false;
+            default -> throw new InvalidParameterException("unsupported operation mode " + opmode);
+        };
+        byte[] rawKey = rawKey(key);
+        byte[] iv = null;
+        if (params != null) {
+            if (!needsIv || !(params instanceof IvParameterSpec)) {
+                throw new InvalidAlgorithmParameterException("unsupported parameters for " + mode + ": " + params);
+            }
+            iv = ((IvParameterSpec) params).getIV();
+            if (iv.length != BLOCK_SIZE) {
+                throw new InvalidAlgorithmParameterException("expected IV length " + BLOCK_SIZE + ", but got " + iv.length);
+            }
+        } else if (needsIv) {
+            if (!encrypt) {
+                throw new InvalidAlgorithmParameterException("IV is required for " + mode + " decryption");
+            }
+            iv = new byte[BLOCK_SIZE];
+            (random != null ? random : new SecureRandom()).nextBytes(iv);
+        }
+
+        if (this.key != null) {
+            this.key.destroy();
+        }
+        this.encrypt = encrypt;
+        this.iv = iv;
+        this.key = keySchedule.expandKey(rawKey);
+        this.cipher = engine.create(RijndaelBaseImpl.KEY_LENGTH.ofBits(rawKey.length * 8));
+        Arrays.fill(rawKey, (byte) 0);
+        init();
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        AlgorithmParameterSpec spec = null;
+        if (params != null) {
+            try {
+                spec = params.getParameterSpec(IvParameterSpec.class);
+            } catch (InvalidParameterSpecException e) {
+                throw new InvalidAlgorithmParameterException("expected IV parameters", e);
+            }
+        }
+        engineInit(opmode, key, spec, random);
+    }
+
+    static void checkOutput(int required, int available) throws ShortBufferException {
+        if (available < required) {
+            throw new ShortBufferException("expected at least " + required + " bytes in output buffer, but got " + available);
+        }
+    }
+
+    private static byte[] rawKey(Key key) throws InvalidKeyException {
+        byte[] encoded = key == null ? null : key.getEncoded();
+        if (encoded == null || !"RAW".equalsIgnoreCase(key.getFormat())) {
+            throw new InvalidKeyException("expected key in RAW format");
+        }
+        if (encoded.length != 16 && encoded.length != 24 && encoded.length != 32) {
+            throw new InvalidKeyException("Invalid key length: must be 128, 192 or 256 bits");
+        }
+        return encoded;
+    }
+}
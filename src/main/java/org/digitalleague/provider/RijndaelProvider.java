@@ -0,0 +1,70 @@
+package org.digitalleague.provider;
+
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.EngineSelector;
+
+import javax.crypto.CipherSpi;
+import java.security.InvalidParameterException;
+import java.security.Provider;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Провайдер JCE, через который реализации этой библиотеки доступны стандартному API
+ * {@code javax.crypto.Cipher.getInstance("AES/CTR/NoPadding", provider)}: существующий код переключается на
+ * выбранную реализацию блочного преобразования без изменений в местах вызова, а обе реализации (JDK и эту)
+ * можно сравнивать на одинаковой нагрузке.
+ * <p>
+ * Поддерживаемые преобразования: AES/ECB/NoPadding, AES/ECB/PKCS5Padding, AES/CBC/NoPadding,
+ * AES/CBC/PKCS5Padding, AES/CTR/NoPadding. Ключи принимаются в формате RAW (например, {@code SecretKeySpec}).
+ * Реализация блочного преобразования задается при создании провайдера, по умолчанию - выбранная {@link EngineSelector}.
+ */
+public final class RijndaelProvider extends Provider {
+    public static final String NAME = "DigitalLeague";
+    private static final Map<String, String> ATTRIBUTES = Map.of("SupportedKeyFormats", "RAW");
+    private final CipherImpl.ENGINE engine;
+
+    public RijndaelProvider() {
+        this(EngineSelector.select());
+    }
+
+    public RijndaelProvider(CipherImpl.ENGINE engine) {
+        super(NAME, "1.1", "Rijndael (AES) " + engine + " engine: ECB, CBC, CTR");
+        this.engine = engine;
+        putCipher("AES/ECB/NoPadding", EcbCipherSpi.class, () -> new EcbCipherSpi(engine, false));
+        putCipher("AES/ECB/PKCS5Padding", EcbCipherSpi.class, () -> new EcbCipherSpi(engine, true));
+        putCipher("AES/CBC/NoPadding", CbcCipherSpi.class, () -> new CbcCipherSpi(engine, false));
+        putCipher("AES/CBC/PKCS5Padding", CbcCipherSpi.class, () -> new CbcCipherSpi(engine, true));
+        putCipher("AES/CTR/NoPadding", CtrCipherSpi.class, () -> new CtrCipherSpi(engine));
+    }
+
+    public CipherImpl.ENGINE getEngine() {
+        return engine;
+    }
+
+    private void putCipher(String transformation, Class<? extends CipherSpi> spiClass, Supplier<CipherSpi> factory) {
+        putService(new CipherService(this, transformation, spiClass.getName(), factory));
+    }
+
+    /**
+     * Сервис, создающий CipherSpi с реализацией блочного преобразования провайдера (стандартный
+     * {@link Service#newInstance} умеет вызывать только конструктор без параметров).
+     */
+    private static final class CipherService extends Service {
+        private final Supplier<CipherSpi> factory;
+
+        CipherService(Provider provider, String transformation, String className, Supplier<CipherSpi> factory) {
+            super(provider, "Cipher", transformation, className, List.of(), ATTRIBUTES);
+            this.factory = factory;
+        }
+
+        @Override
+        public Object newInstance(Object constructorParameter) {
+            if (constructorParameter != null) {
+                throw new InvalidParameterException("expected no constructor parameter, but got " + constructorParameter);
+            }
+            return factory.get();
+        }
+    }
+}
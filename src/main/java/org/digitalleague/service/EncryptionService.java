@@ -0,0 +1,414 @@
+package org.digitalleague.service;
+
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.EngineSelector;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.cipher.util.Padding;
+import org.digitalleague.cipher.util.Xor;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.ExpandedKeyCache;
+import org.digitalleague.mode.CTRMode;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Сервис шифрования множества небольших сообщений, поступающих из многих потоков одновременно.
+ * Запросы ставятся в очередь, поток-диспетчер собирает их в пакеты (до batchSize запросов, ожидая новые не дольше
+ * maxLinger после первого) и передает пакеты исполнителю. Внутри пакета запросы группируются по ключу: ключ
+ * разворачивается (или берется из {@link ExpandedKeyCache}) один раз на группу, а блоки всех сообщений группы
+ * обрабатываются одним вызовом многоблочного метода блочного шифра. Результат каждого запроса возвращается
+ * через {@link CompletableFuture}, поэтому вызывающие потоки (в том числе виртуальные) не занимают процессор,
+ * пока ждут пакет. Семантика шифрования совпадает с {@link CipherImpl} и {@link CTRMode}.
+ * Ключ, IV и текст запроса копируются при приеме, поэтому вызывающий поток может сразу переиспользовать свои буферы;
+ * копии ключей обнуляются после обработки пакета. Сервис потокобезопасен.
+ */
+public class EncryptionService implements AutoCloseable {
+    private static final int BLOCK_SIZE = 16;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final Duration DEFAULT_MAX_LINGER = Duration.ofNanos(200_000);
+    private static final int KEY_CACHE_CAPACITY = 1024;
+    private static final Request SHUTDOWN = new Request(OPERATION.ENCRYPT, null, null, null); // Маркер остановки диспетчера
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ExpandedKeyCache keys = new ExpandedKeyCache(KEY_CACHE_CAPACITY);
+    private final Map<RijndaelBaseImpl.KEY_LENGTH, BaseCipher> ciphers = new EnumMap<>(RijndaelBaseImpl.KEY_LENGTH.class);
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final Executor executor;
+    private final Thread dispatcher;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchesDone = lock.newCondition();
+    private int runningBatches; // Пакеты, переданные исполнителю и еще не обработанные (под lock)
+    private volatile boolean closed;
+
+    private EncryptionService(CipherImpl.ENGINE engine, int batchSize, Duration maxLinger, Executor executor) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("expected positive batch size, but got " + batchSize);
+        }
+        if (maxLinger.isNegative()) {
+            throw new IllegalArgumentException("expected non-negative linger time, but got " + maxLinger);
+        }
+        for (RijndaelBaseImpl.KEY_LENGTH keyLength : RijndaelBaseImpl.KEY_LENGTH.values()) {
+            ciphers.put(keyLength, engine.create(keyLength));
+        }
+        this.batchSize = batchSize;
+        this.maxLingerNanos = maxLinger.toNanos();
+        this.executor = executor;
+        this.dispatcher = new Thread(this::dispatch, "encryption-service-dispatcher");
+        this.dispatcher.setDaemon(true);
+    }
+
+    public static EncryptionService createInstance() {
+        return createInstance(EngineSelector.select(), DEFAULT_BATCH_SIZE, DEFAULT_MAX_LINGER, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param engine - реализация шифрования блока
+     * @param batchSize - максимальное число запросов в пакете
+     * @param maxLinger - максимальное время ожидания новых запросов после первого запроса пакета
+     * @param executor - исполнитель, обрабатывающий пакеты
+     */
+    public static EncryptionService createInstance(CipherImpl.ENGINE engine, int batchSize, Duration maxLinger, Executor executor) {
+        EncryptionService service = new EncryptionService(engine, batchSize, maxLinger, executor);
+        service.dispatcher.start();
+        return service;
+    }
+
+    /**
+     * Шифрование как в {@link CipherImpl#encrypt(byte[])}: блоки шифруются независимо, текст некратной длины
+     * дополняется по PKCS#7.
+     */
+    public CompletableFuture<byte[]> encrypt(byte[] key, byte[] plainText) {
+        return submit(new Request(OPERATION.ENCRYPT, key, null, plainText));
+    }
+
+    /**
+     * Расшифрование как в {@link CipherImpl#decrypt(byte[])}
+     * @param cipherText - шифротекст длины, кратной 16
+     */
+    public CompletableFuture<byte[]> decrypt(byte[] key, byte[] cipherText) {
+        if (cipherText.length % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("expected cipherText length as multiplication of 16, but got " + cipherText.length);
+        }
+        return submit(new Request(OPERATION.DECRYPT, key, null, cipherText));
+    }
+
+    /**
+     * Шифрование (и расшифрование) в режиме CTR как в {@link CTRMode#encrypt(byte[])}
+     * @param iv - начальное значение счетчика (16 байт)
+     */
+    public CompletableFuture<byte[]> processCtr(byte[] key, byte[] iv, byte[] text) {
+        if (iv.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("expected IV length " + BLOCK_SIZE + ", but got " + iv.length);
+        }
+        return submit(new Request(OPERATION.CTR, key, iv, text));
+    }
+
+    /**
+     * @return число принятых запросов
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return число обработанных пакетов (средний размер пакета - getRequestCount() / getBatchCount())
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Прекращение приема запросов. Уже принятые запросы передаются исполнителю, диспетчер останавливается;
+     * после завершения всех переданных исполнителю пакетов развернутые ключи в кэше сервиса уничтожаются.
+     * Если ожидание прервано, ключи не уничтожаются (их освободит сборщик мусора).
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(SHUTDOWN);
+        try {
+            dispatcher.join();
+            lock.lock();
+            try {
+                while (runningBatches > 0) {
+                    batchesDone.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        keys.clear();
+    }
+
+    private CompletableFuture<byte[]> submit(Request request) {
+        RijndaelBaseImpl.KEY_LENGTH.ofBits(request.key.length * 8);
+        if (closed) {
+            throw new IllegalStateException("encryption service is closed");
+        }
+        requests.increment();
+        queue.add(request);
+        // Запрос, добавленный одновременно с остановкой, мог не попасть к диспетчеру
+        if (closed && queue.remove(request)) {
+            request.future.completeExceptionally(new IllegalStateException("encryption service is closed"));
+        }
+        return request.future;
+    }
+
+    /**
+     * Цикл диспетчера: ожидание первого запроса, сбор пакета и передача его исполнителю.
+     */
+    private void dispatch() {
+        boolean running = true;
+        while (running) {
+            List<Request> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (batch.remove(SHUTDOWN) || !running) {
+                running = false;
+                queue.drainTo(batch);
+                batch.remove(SHUTDOWN);
+            }
+            if (!batch.isEmpty()) {
+                batches.increment();
+                execute(batch);
+            }
+        }
+    }
+
+    /**
+     * Передача пакета исполнителю с учетом его в числе выполняющихся (close ждет их завершения).
+     */
+    private void execute(List<Request> batch) {
+        lock.lock();
+        try {
+            runningBatches++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(batch);
+                } finally {
+                    batchFinished();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            batch.forEach(request -> request.future.completeExceptionally(e));
+            batchFinished();
+        }
+    }
+
+    private void batchFinished() {
+        lock.lock();
+        try {
+            if (--runningBatches == 0) {
+                batchesDone.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Обработка пакета: группировка запросов по ключу и обработка каждой группы одним вызовом блочного шифра
+     * на каждый вид операции. Развернутый ключ арендуется в кэше на время обработки группы: вытесненный
+     * другим пакетом ключ обнуляется только после закрытия аренды, а close уничтожает ключи после завершения всех пакетов.
+     */
+    private void process(List<Request> batch) {
+        Map<ByteBuffer, List<Request>> groups = new HashMap<>();
+        for (Request request : batch) {
+            groups.computeIfAbsent(ByteBuffer.wrap(request.key), k -> new ArrayList<>()).add(request);
+        }
+        for (List<Request> group : groups.values()) {
+            try {
+                byte[] keyBytes = group.get(0).key;
+                BaseCipher cipher = ciphers.get(RijndaelBaseImpl.KEY_LENGTH.ofBits(keyBytes.length * 8));
+                try (ExpandedKeyCache.Lease lease = keys.acquire(keyBytes)) {
+                    processGroup(group, cipher, lease.key());
+                }
+            } catch (RuntimeException e) {
+                group.forEach(request -> request.future.completeExceptionally(e));
+            }
+        }
+        for (Request request : batch) {
+            Arrays.fill(request.key, (byte) 0);
+        }
+    }
+
+    private void processGroup(List<Request> group, BaseCipher cipher, ExpandedKey key) {
+        List<Request> encrypt = new ArrayList<>();
+        List<Request> decrypt = new ArrayList<>();
+        List<Request> ctr = new ArrayList<>();
+        for (Request request : group) {
+            switch (request.operation) {
+                case ENCRYPT -> encrypt.add(request);
+                case DECRYPT -> decrypt.add(request);
+                case CTR -> ctr.add(request);
+            }
+        }
+        if (!encrypt.isEmpty()) {
+            encryptBlocks(encrypt, cipher, key);
+        }
+        if (!decrypt.isEmpty()) {
+            decryptBlocks(decrypt, cipher, key);
+        }
+        if (!ctr.isEmpty()) {
+            processCtr(ctr, cipher, key);
+        }
+    }
+
+    /**
+     * Дополненные тексты группы записываются подряд в один буфер и шифруются одним вызовом.
+     */
+    private static void encryptBlocks(List<Request> requests, BaseCipher cipher, ExpandedKey key) {
+        int total = 0;
+        for (Request request : requests) {
+            total += paddedLength(request.text.length);
+        }
+        byte[] buffer = new byte[total];
+        int offset = 0;
+        for (Request request : requests) {
+            int length = request.text.length;
+            int padded = paddedLength(length);
+            System.arraycopy(request.text, 0, buffer, offset, length);
+            Arrays.fill(buffer, offset + length, offset + padded, (byte) (padded - length));
+            offset += padded;
+        }
+        cipher.encryptBlocks(buffer, 0, buffer, 0, total / BLOCK_SIZE, key);
+        offset = 0;
+        for (Request request : requests) {
+            int padded = paddedLength(request.text.length);
+            request.future.complete(Arrays.copyOfRange(buffer, offset, offset + padded));
+            offset += padded;
+        }
+    }
+
+    private static void decryptBlocks(List<Request> requests, BaseCipher cipher, ExpandedKey key) {
+        int total = 0;
+        for (Request request : requests) {
+            total += request.text.length;
+        }
+        byte[] buffer = new byte[total];
+        int offset = 0;
+        for (Request request : requests) {
+            System.arraycopy(request.text, 0, buffer, offset, request.text.length);
+            offset += request.text.length;
+        }
+        cipher.decryptBlocks(buffer, 0, buffer, 0, total / BLOCK_SIZE, key);
+        offset = 0;
+        for (Request request : requests) {
+            byte[] plainText = Arrays.copyOfRange(buffer, offset, offset + request.text.length);
+            int paddingSize = Padding.paddingSize(plainText, plainText.length);
+            request.future.complete(paddingSize == 0 ? plainText : Arrays.copyOf(plainText, plainText.length - paddingSize));
+            offset += request.text.length;
+        }
+    }
+
+    /**
+     * Блоки счетчика всех сообщений группы шифруются одним вызовом, затем поток ключа каждого сообщения
+     * складывается с его текстом.
+     */
+    private static void processCtr(List<Request> requests, BaseCipher cipher, ExpandedKey key) {
+        int total = 0;
+        for (Request request : requests) {
+            total += paddedLength(request.text.length);
+        }
+        byte[] keyStream = new byte[total];
+        int offset = 0;
+        for (Request request : requests) {
+            byte[] counter = Arrays.copyOf(request.iv, BLOCK_SIZE);
+            int blocks = paddedLength(request.text.length) / BLOCK_SIZE;
+            try {
+                for (int i = 0; i < blocks; i++) {
+                    System.arraycopy(counter, 0, keyStream, offset + i * BLOCK_SIZE, BLOCK_SIZE);
+                    if (i + 1 < blocks) {
+                        CTRMode.incrementCounter(counter);
+                    }
+                }
+            } catch (ArithmeticException e) {
+                request.future.completeExceptionally(e);
+            }
+            offset += blocks * BLOCK_SIZE;
+        }
+        cipher.encryptBlocks(keyStream, 0, keyStream, 0, total / BLOCK_SIZE, key);
+        offset = 0;
+        for (Request request : requests) {
+            byte[] result = new byte[request.text.length];
+            Xor.xor(request.text, 0, keyStream, offset, result, 0, result.length);
+            request.future.complete(result);
+            offset += paddedLength(request.text.length);
+        }
+        Arrays.fill(keyStream, (byte) 0);
+    }
+
+    private static int paddedLength(int length) {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    private enum OPERATION {
+        ENCRYPT,
+        DECRYPT,
+        CTR
+    }
+
+    private static class Request {
+        private final OPERATION operation;
+        private final byte[] key;
+        private final byte[] iv;
+        private final byte[] text;
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        /**
+         * Массивы копируются: запрос обрабатывается в другом потоке, когда вызывающий мог уже изменить свои буферы.
+         */
+        Request(OPERATION operation, byte[] key, byte[] iv, byte[] text) {
+            this.operation = operation;
+            this.key = key == null ? null : key.clone();
+            this.iv = iv == null ? null : iv.clone();
+            this.text = text == null ? null : text.clone();
+        }
+    }
+}
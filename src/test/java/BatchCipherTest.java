@@ -0,0 +1,51 @@
+import org.digitalleague.cipher.impl.BatchCipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BatchCipherTest {
+    private static final KeySchedule keySchedule = new KeySchedule();
+
+    @Test
+    public void testMatchesSeparateCiphers() {
+        Random random = new Random(23);
+        List<byte[]> rawKeys = new ArrayList<>();
+        List<ExpandedKey> keys = new ArrayList<>();
+        List<byte[]> messages = new ArrayList<>();
+        // Ключи всех длин вперемешку, сообщения от пустого до нескольких блоков
+        for (int i = 0; i < 300; i++) {
+            byte[] key = new byte[16 + 8 * random.nextInt(3)];
+            random.nextBytes(key);
+            byte[] message = new byte[random.nextInt(70)];
+            random.nextBytes(message);
+            rawKeys.add(key);
+            keys.add(keySchedule.expandKey(key));
+            messages.add(message);
+        }
+
+        for (CipherImpl.ENGINE engine : CipherImpl.ENGINE.values()) {
+            BatchCipher batch = BatchCipher.createInstance(engine);
+            List<byte[]> cipherTexts = batch.encryptAll(keys, messages);
+            List<byte[]> plainTexts = batch.decryptAll(keys, cipherTexts);
+            for (int i = 0; i < messages.size(); i++) {
+                CipherImpl cipher = CipherImpl.createInstance(rawKeys.get(i), engine);
+                Assertions.assertArrayEquals(cipher.encrypt(messages.get(i)), cipherTexts.get(i), engine + ", message " + i);
+                Assertions.assertArrayEquals(cipher.decrypt(cipherTexts.get(i)), plainTexts.get(i), engine + ", message " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidInput() {
+        BatchCipher batch = BatchCipher.createInstance();
+        ExpandedKey key = keySchedule.expandKey(CTRModeTest.KEY);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> batch.encryptAll(List.of(key), List.of()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> batch.decryptAll(List.of(key), List.of(new byte[15])));
+    }
+}
@@ -0,0 +1,89 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.mode.CBCMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class CBCModeTest {
+    // Тестовый пример F.2.1 из NIST SP 800-38A (CBC-AES128.Encrypt)
+    private static final byte[] IV = HexFormat.of().parseHex("000102030405060708090a0b0c0d0e0f");
+    private static final byte[] CIPHER_TEXT = HexFormat.of().parseHex(
+            "7649abac8119b246cee98e9b12e9197d5086cb9b507219ee95db113a917678b2"
+                    + "73bed6b8e3c1743b7116e69e222295163ff1caa1681fac09120eca307586e1a7");
+
+    @Test
+    public void testNistVector() {
+        CBCMode cbc = CBCMode.createInstance(CTRModeTest.KEY, IV);
+        byte[] cipherText = cbc.encrypt(CTRModeTest.PLAIN_TEXT);
+
+        // Текст кратной длины дополняется целым блоком
+        Assertions.assertEquals(CTRModeTest.PLAIN_TEXT.length + 16, cipherText.length);
+        Assertions.assertArrayEquals(CIPHER_TEXT, Arrays.copyOf(cipherText, CIPHER_TEXT.length));
+        Assertions.assertArrayEquals(CTRModeTest.PLAIN_TEXT, cbc.decrypt(cipherText));
+    }
+
+    @Test
+    public void testParallelDecryption() {
+        byte[] message = new byte[1024 * 1024 + 9];
+        new Random(21).nextBytes(message);
+        CBCMode cbc = CBCMode.createInstance(new KeySchedule().expandKey(CipherImplTest.key256), IV,
+                CipherImpl.ENGINE.TABLE, new ForkJoinPool(4));
+
+        byte[] cipherText = cbc.encrypt(message);
+        Assertions.assertArrayEquals(message, cbc.decrypt(cipherText));
+
+        // Начало сообщения не зависит от его продолжения
+        byte[] head = CBCMode.createInstance(CipherImplTest.key256, IV).encrypt(Arrays.copyOf(message, 64));
+        Assertions.assertArrayEquals(Arrays.copyOf(head, 64), Arrays.copyOf(cipherText, 64));
+    }
+
+    @Test
+    public void testByteBuffers() {
+        CBCMode cbc = CBCMode.createInstance(CTRModeTest.KEY, IV);
+        Random random = new Random(22);
+        for (int length = 0; length <= 70; length++) {
+            byte[] message = new byte[length];
+            random.nextBytes(message);
+            byte[] expected = cbc.encrypt(message);
+
+            ByteBuffer src = ByteBuffer.allocateDirect(length).put(message).flip();
+            ByteBuffer dst = ByteBuffer.allocateDirect(expected.length + 3).position(3);
+            Assertions.assertEquals(expected.length, cbc.encrypt(src, dst));
+            Assertions.assertFalse(src.hasRemaining());
+            byte[] actual = new byte[expected.length];
+            dst.get(3, actual);
+            Assertions.assertArrayEquals(expected, actual);
+
+            // Расшифрование на месте в буфере в куче
+            ByteBuffer inPlace = ByteBuffer.wrap(expected.clone());
+            Assertions.assertEquals(length, cbc.decrypt(inPlace, inPlace.duplicate()));
+            Assertions.assertArrayEquals(message, Arrays.copyOf(inPlace.array(), length));
+        }
+    }
+
+    @Test
+    public void testByteBufferInvalidPaddingLeavesBuffersUnchanged() {
+        CBCMode cbc = CBCMode.createInstance(CTRModeTest.KEY, IV);
+        byte[] cipherText = Arrays.copyOf(CIPHER_TEXT, 32);
+        ByteBuffer buffer = ByteBuffer.wrap(cipherText.clone());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cbc.decrypt(buffer, buffer));
+        Assertions.assertArrayEquals(cipherText, buffer.array());
+        Assertions.assertEquals(0, buffer.position());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> cbc.encrypt(ByteBuffer.allocate(16), ByteBuffer.allocate(16)));
+    }
+
+    @Test
+    public void testInvalidInput() {
+        CBCMode cbc = CBCMode.createInstance(CTRModeTest.KEY, IV);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cbc.decrypt(new byte[15]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cbc.decrypt(Arrays.copyOf(CIPHER_TEXT, 32)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CBCMode.createInstance(CTRModeTest.KEY, new byte[12]));
+    }
+}
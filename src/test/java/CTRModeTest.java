@@ -0,0 +1,143 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.mode.CTRMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class CTRModeTest {
+    // Тестовый пример F.5.1 из NIST SP 800-38A (CTR-AES128.Encrypt)
+    static final byte[] KEY = new byte[] {
+            0x2b, 0x7e, 0x15, 0x16,
+            0x28, (byte)0xae, (byte)0xd2, (byte)0xa6,
+            (byte)0xab, (byte)0xf7, 0x15, (byte)0x88,
+            0x09, (byte)0xcf, 0x4f, 0x3c
+    };
+
+    static final byte[] IV = new byte[] {
+            (byte)0xf0, (byte)0xf1, (byte)0xf2, (byte)0xf3,
+            (byte)0xf4, (byte)0xf5, (byte)0xf6, (byte)0xf7,
+            (byte)0xf8, (byte)0xf9, (byte)0xfa, (byte)0xfb,
+            (byte)0xfc, (byte)0xfd, (byte)0xfe, (byte)0xff
+    };
+
+    static final byte[] PLAIN_TEXT = new byte[] {
+            0x6b, (byte)0xc1, (byte)0xbe, (byte)0xe2, 0x2e, 0x40, (byte)0x9f, (byte)0x96,
+            (byte)0xe9, 0x3d, 0x7e, 0x11, 0x73, (byte)0x93, 0x17, 0x2a,
+            (byte)0xae, 0x2d, (byte)0x8a, 0x57, 0x1e, 0x03, (byte)0xac, (byte)0x9c,
+            (byte)0x9e, (byte)0xb7, 0x6f, (byte)0xac, 0x45, (byte)0xaf, (byte)0x8e, 0x51,
+            0x30, (byte)0xc8, 0x1c, 0x46, (byte)0xa3, 0x5c, (byte)0xe4, 0x11,
+            (byte)0xe5, (byte)0xfb, (byte)0xc1, 0x19, 0x1a, 0x0a, 0x52, (byte)0xef,
+            (byte)0xf6, (byte)0x9f, 0x24, 0x45, (byte)0xdf, 0x4f, (byte)0x9b, 0x17,
+            (byte)0xad, 0x2b, 0x41, 0x7b, (byte)0xe6, 0x6c, 0x37, 0x10
+    };
+
+    static final byte[] CIPHER_TEXT = new byte[] {
+            (byte)0x87, 0x4d, 0x61, (byte)0x91, (byte)0xb6, 0x20, (byte)0xe3, 0x26,
+            0x1b, (byte)0xef, 0x68, 0x64, (byte)0x99, 0x0d, (byte)0xb6, (byte)0xce,
+            (byte)0x98, 0x06, (byte)0xf6, 0x6b, 0x79, 0x70, (byte)0xfd, (byte)0xff,
+            (byte)0x86, 0x17, 0x18, 0x7b, (byte)0xb9, (byte)0xff, (byte)0xfd, (byte)0xff,
+            0x5a, (byte)0xe4, (byte)0xdf, 0x3e, (byte)0xdb, (byte)0xd5, (byte)0xd3, 0x5e,
+            0x5b, 0x4f, 0x09, 0x02, 0x0d, (byte)0xb0, 0x3e, (byte)0xab,
+            0x1e, 0x03, 0x1d, (byte)0xda, 0x2f, (byte)0xbe, 0x03, (byte)0xd1,
+            0x79, 0x21, 0x70, (byte)0xa0, (byte)0xf3, 0x00, (byte)0x9c, (byte)0xee
+    };
+
+    @Test
+    public void testNistVector() {
+        CTRMode ctr = CTRMode.createInstance(KEY, IV);
+        Assertions.assertArrayEquals(CIPHER_TEXT, ctr.encrypt(PLAIN_TEXT));
+        Assertions.assertArrayEquals(PLAIN_TEXT, ctr.decrypt(CIPHER_TEXT));
+    }
+
+    @Test
+    public void testPartialLastBlock() {
+        CTRMode ctr = CTRMode.createInstance(KEY, IV);
+        byte[] plainText = Arrays.copyOf(PLAIN_TEXT, 37);
+        Assertions.assertArrayEquals(Arrays.copyOf(CIPHER_TEXT, 37), ctr.encrypt(plainText));
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        byte[] plainText = new byte[1024 * 1024 + 5];
+        new Random(7).nextBytes(plainText);
+        CTRMode ctr = CTRMode.createInstance(new KeySchedule().expandKey(KEY), IV, CipherImpl.ENGINE.TABLE, new ForkJoinPool(4));
+
+        // Последовательное вычисление потока ключа через incrementCounter
+        CipherImpl ecb = CipherImpl.createInstance(KEY, CipherImpl.ENGINE.TABLE);
+        byte[] counter = Arrays.copyOf(IV, IV.length);
+        byte[] expected = new byte[plainText.length];
+        for (int offset = 0; offset < plainText.length; offset += 16) {
+            byte[] keyStream = ecb.encrypt(counter);
+            for (int i = 0; i < 16 && offset + i < plainText.length; i++) {
+                expected[offset + i] = (byte) (plainText[offset + i] ^ keyStream[i]);
+            }
+            CTRMode.incrementCounter(counter);
+        }
+
+        byte[] cipherText = ctr.encrypt(plainText);
+        Assertions.assertArrayEquals(expected, cipherText);
+        Assertions.assertArrayEquals(plainText, ctr.decrypt(cipherText));
+    }
+
+    @Test
+    public void testAddCounter() {
+        byte[] counter = new byte[16];
+        Arrays.fill(counter, 8, 16, (byte) 0xff);
+        byte[] expected = Arrays.copyOf(counter, 16);
+        for (int i = 0; i < 1000; i++) {
+            CTRMode.incrementCounter(expected);
+        }
+        CTRMode.addCounter(counter, 1000);
+        Assertions.assertArrayEquals(expected, counter);
+
+        byte[] maxCounter = new byte[16];
+        Arrays.fill(maxCounter, (byte) 0xff);
+        Assertions.assertThrows(ArithmeticException.class, () -> CTRMode.addCounter(maxCounter, 1));
+    }
+
+    @Test
+    public void testInvalidIV() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CTRMode.createInstance(KEY, new byte[8]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CTRMode.createInstance(KEY, IV).encrypt(new byte[8], PLAIN_TEXT));
+    }
+
+    @Test
+    public void testPerMessageIV() {
+        CTRMode ctr = CTRMode.createInstance(KEY, new byte[16]);
+        byte[] otherIv = CTRMode.generateIV(128);
+        byte[] message = new byte[300 * 1024 + 1];
+        new Random(6).nextBytes(message);
+
+        // IV сообщения заменяет IV экземпляра, в том числе при параллельной обработке
+        Assertions.assertArrayEquals(CIPHER_TEXT, ctr.encrypt(IV, PLAIN_TEXT));
+        Assertions.assertArrayEquals(PLAIN_TEXT, ctr.decrypt(IV, CIPHER_TEXT));
+        Assertions.assertArrayEquals(CTRMode.createInstance(KEY, otherIv).encrypt(message), ctr.encrypt(otherIv, message));
+        Assertions.assertFalse(Arrays.equals(ctr.encrypt(message), ctr.encrypt(otherIv, message)));
+    }
+
+    @Test
+    public void testByteBufferInPlace() {
+        CTRMode ctr = CTRMode.createInstance(KEY, IV);
+        byte[] plainText = new byte[600 * 1024 + 3];
+        new Random(5).nextBytes(plainText);
+
+        for (int length : new int[] {PLAIN_TEXT.length, plainText.length}) {
+            byte[] message = length == PLAIN_TEXT.length ? PLAIN_TEXT : plainText;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(length + 10);
+            buffer.position(10);
+            buffer.put(message).position(10);
+
+            Assertions.assertEquals(length, ctr.encrypt(buffer, buffer));
+            Assertions.assertEquals(length + 10, buffer.position());
+
+            byte[] cipherText = new byte[length];
+            buffer.get(10, cipherText);
+            Assertions.assertArrayEquals(ctr.encrypt(message), cipherText);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Один экземпляр CipherImpl на ключ одновременно используется многими потоками; результаты сравниваются
+ * с вычисленными заранее в одном потоке.
+ */
+public class CipherImplConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 300;
+
+    @Test
+    public void testSharedInstanceAcrossThreads() throws Exception {
+        Random random = new Random(29);
+        byte[][] messages = new byte[64][];
+        for (int i = 0; i < messages.length; i++) {
+            // Среди сообщений есть и превышающие порог параллельной обработки
+            messages[i] = new byte[i == 0 ? 40_000 : random.nextInt(300)];
+            random.nextBytes(messages[i]);
+        }
+        ExpandedKey key = new KeySchedule().expandKey(CipherImplTest.key192);
+
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (CipherImpl.ENGINE engine : CipherImpl.ENGINE.values()) {
+                CipherImpl shared = CipherImpl.createInstance(key, engine, ForkJoinPool.commonPool(), 16 * 1024);
+                byte[][] expected = new byte[messages.length][];
+                for (int i = 0; i < messages.length; i++) {
+                    expected[i] = CipherImpl.createInstance(CipherImplTest.key192, engine).encrypt(messages[i]);
+                }
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> results = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    int seed = t;
+                    results.add(threads.submit(() -> {
+                        start.await();
+                        Random local = new Random(seed);
+                        ByteBuffer direct = ByteBuffer.allocateDirect(messages[0].length + 16);
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            int index = local.nextInt(messages.length);
+                            byte[] message = messages[index];
+                            if (local.nextBoolean()) {
+                                byte[] cipherText = shared.encrypt(message);
+                                Assertions.assertArrayEquals(expected[index], cipherText, engine + ", message " + index);
+                                Assertions.assertArrayEquals(shared.decrypt(expected[index]), shared.decrypt(cipherText));
+                            } else {
+                                direct.clear();
+                                direct.put(message).flip();
+                                shared.encrypt(direct.duplicate(), direct.duplicate().clear());
+                                byte[] cipherText = new byte[expected[index].length];
+                                direct.clear().get(0, cipherText);
+                                Assertions.assertArrayEquals(expected[index], cipherText, engine + ", buffer " + index);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+}
@@ -1,10 +1,14 @@
 import lombok.SneakyThrows;
 import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.KeySchedule;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class CipherImplTest {
     static String STRING_PLAINTEXT = "Test plaintext to cipher with Rijndael";
@@ -129,4 +133,55 @@ public class CipherImplTest {
 
         Assertions.assertEquals(STRING_PLAINTEXT, new String(decryptedWith256Key, StandardCharsets.UTF_8));
     }
+
+    @Test
+    public void testByteBufferDirect() {
+        cipher = CipherImpl.createInstance(key192, CipherImpl.ENGINE.TABLE);
+        byte[] message = STRING_PLAINTEXT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer src = ByteBuffer.allocateDirect(message.length);
+        src.put(message).flip();
+        ByteBuffer dst = ByteBuffer.allocateDirect(64);
+
+        int written = cipher.encrypt(src, dst);
+        Assertions.assertEquals(48, written);
+        Assertions.assertFalse(src.hasRemaining());
+        Assertions.assertEquals(48, dst.position());
+
+        byte[] cipherText = new byte[written];
+        dst.flip().get(cipherText);
+        Assertions.assertArrayEquals(cipher.encrypt(message), cipherText);
+
+        // Расшифрование на месте
+        dst.rewind();
+        int decrypted = cipher.decrypt(dst, dst);
+        Assertions.assertEquals(message.length, decrypted);
+        byte[] plainText = new byte[decrypted];
+        dst.get(0, plainText);
+        Assertions.assertArrayEquals(message, plainText);
+    }
+
+    @Test
+    public void testByteBufferOutputTooSmall() {
+        cipher = CipherImpl.createInstance(key128);
+        ByteBuffer src = ByteBuffer.wrap(plainText);
+        ByteBuffer dst = ByteBuffer.allocate(8);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cipher.encrypt(src, dst));
+        Assertions.assertEquals(0, src.position());
+        Assertions.assertEquals(0, dst.position());
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        byte[] message = new byte[1024 * 1024 + 7];
+        new Random(3).nextBytes(message);
+        CipherImpl sequential = CipherImpl.createInstance(new KeySchedule().expandKey(key256), CipherImpl.ENGINE.TABLE,
+                ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        CipherImpl parallel = CipherImpl.createInstance(new KeySchedule().expandKey(key256), CipherImpl.ENGINE.TABLE,
+                new ForkJoinPool(4), 0);
+
+        byte[] cipherText = parallel.encrypt(message);
+        Assertions.assertArrayEquals(sequential.encrypt(message), cipherText);
+        Assertions.assertArrayEquals(message, parallel.decrypt(cipherText));
+    }
 }
@@ -0,0 +1,100 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.metrics.CipherMetrics;
+import org.digitalleague.metrics.LatencyHistogram;
+import org.digitalleague.mode.CBCMode;
+import org.digitalleague.mode.CTRMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+public class CipherMetricsTest {
+
+    @Test
+    public void testCountersWhenEnabled() {
+        CipherMetrics.setEnabled(true);
+        try {
+            long ctrBytes = CipherMetrics.getBytesProcessed(CipherMetrics.MODE.CTR, 128);
+            long ecbBlocks = CipherMetrics.getBlocksProcessed(CipherMetrics.MODE.ECB, 256);
+            long expansions = CipherMetrics.getKeyExpansions(256);
+            long paddingErrors = CipherMetrics.getPaddingErrors();
+
+            CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV).encrypt(new byte[100]);
+            CipherImpl cipher = CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE);
+            byte[] cipherText = cipher.encrypt(new byte[40]);
+            // Текст кратной длины шифруется без дополнения: его отсутствие при расшифровании не ошибка
+            cipher.decrypt(cipher.encrypt(new byte[32]));
+            // В CBC дополнение обязательно: шифротекст с некорректным дополнением отвергается и учитывается
+            CBCMode cbc = CBCMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+            cbc.decrypt(cbc.encrypt(new byte[32]));
+            byte[] corrupted = cipher.encrypt(new byte[32]);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> cbc.decrypt(corrupted));
+
+            Assertions.assertEquals(ctrBytes + 100, CipherMetrics.getBytesProcessed(CipherMetrics.MODE.CTR, 128));
+            Assertions.assertEquals(ecbBlocks + cipherText.length / 16 + 2 + 2 + 2, CipherMetrics.getBlocksProcessed(CipherMetrics.MODE.ECB, 256));
+            Assertions.assertEquals(expansions + 1, CipherMetrics.getKeyExpansions(256));
+            Assertions.assertEquals(paddingErrors + 1, CipherMetrics.getPaddingErrors());
+        } finally {
+            CipherMetrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testNothingRecordedWhenDisabled() {
+        CipherMetrics.setEnabled(false);
+        long ctrOperations = CipherMetrics.getOperations(CipherMetrics.MODE.CTR, 128);
+        long expansions = CipherMetrics.getKeyExpansions(128);
+
+        CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV).encrypt(new byte[100]);
+
+        Assertions.assertEquals(ctrOperations, CipherMetrics.getOperations(CipherMetrics.MODE.CTR, 128));
+        Assertions.assertEquals(expansions, CipherMetrics.getKeyExpansions(128));
+    }
+
+    @Test
+    public void testLatencySampling() {
+        CipherMetrics.setEnabled(true);
+        try {
+            long latencyCount = CipherMetrics.getLatency(CipherMetrics.MODE.CTR).getCount();
+            CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+            for (int i = 0; i < 1600; i++) {
+                ctr.encrypt(CTRModeTest.PLAIN_TEXT);
+            }
+            // Задержка измеряется примерно для каждой 16-й операции
+            long sampled = CipherMetrics.getLatency(CipherMetrics.MODE.CTR).getCount() - latencyCount;
+            Assertions.assertTrue(sampled > 30 && sampled < 300, "sampled " + sampled);
+            Assertions.assertTrue(CipherMetrics.getLatency(CipherMetrics.MODE.CTR).getPercentile(50) > 0);
+        } finally {
+            CipherMetrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assertions.assertEquals(0, histogram.getPercentile(99));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        Assertions.assertEquals(1000, histogram.getCount());
+        // Относительная погрешность корзины - не более 1/8
+        Assertions.assertEquals(500_000.0, histogram.getPercentile(50), 500_000 / 8.0);
+        Assertions.assertEquals(990_000.0, histogram.getPercentile(99), 990_000 / 8.0);
+        Assertions.assertTrue(histogram.getPercentile(100) >= 1_000_000);
+        histogram.record(Long.MAX_VALUE);
+        Assertions.assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        CipherMetrics.registerMBean();
+        CipherMetrics.registerMBean();
+        ObjectName name = new ObjectName(CipherMetrics.OBJECT_NAME);
+        Object bytes = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "BytesProcessed");
+        Assertions.assertTrue(bytes instanceof TabularData);
+        Assertions.assertEquals(6, ((TabularData) bytes).size());
+        Assertions.assertEquals(Boolean.FALSE, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Enabled"));
+    }
+}
@@ -0,0 +1,66 @@
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.mode.CtrKeystreamPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class CtrKeystreamPoolTest {
+
+    @Test
+    public void testMessagesDecryptAtReturnedOffsets() {
+        CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+        Random random = new Random(19);
+        try (CtrKeystreamPool pool = CtrKeystreamPool.createInstance(ctr, 4, 1)) {
+            long expectedOffset = 0;
+            // Сообщения разной длины, в том числе длиннее всего буфера пула
+            for (int length : new int[] {1, 15, 100, 4096, 5000, 20_000, 3, 70_000}) {
+                byte[] message = new byte[length];
+                random.nextBytes(message);
+                byte[] cipherText = new byte[length];
+
+                long offset = pool.encrypt(message, 0, cipherText, 0, length);
+                Assertions.assertEquals(expectedOffset, offset);
+                expectedOffset += length;
+
+                byte[] decrypted = new byte[length];
+                ctr.keyStream(offset).xor(cipherText, 0, decrypted, 0, length);
+                Assertions.assertArrayEquals(message, decrypted);
+            }
+            Assertions.assertTrue(pool.getGeneratedSegmentCount() * 4096 >= expectedOffset);
+        }
+    }
+
+    @Test
+    public void testStreamMatchesCtrMode() {
+        CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+        try (CtrKeystreamPool pool = CtrKeystreamPool.createInstance(ctr)) {
+            byte[] cipherText = new byte[CTRModeTest.PLAIN_TEXT.length];
+            pool.encrypt(CTRModeTest.PLAIN_TEXT, 0, cipherText, 0, 20);
+            pool.encrypt(CTRModeTest.PLAIN_TEXT, 20, cipherText, 20, cipherText.length - 20);
+            Assertions.assertArrayEquals(CTRModeTest.CIPHER_TEXT, cipherText);
+        }
+    }
+
+    @Test
+    public void testUnderrunsAndClose() {
+        CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+        CtrKeystreamPool pool = CtrKeystreamPool.createInstance(ctr, 2, 0);
+        byte[] data = new byte[1 << 20];
+        pool.encrypt(data, 0, data, 0, data.length);
+        // Мегабайт при буфере в 8 КБ не может быть выдан без ожидания фонового потока
+        Assertions.assertTrue(pool.getUnderrunCount() > 0);
+        Assertions.assertArrayEquals(ctr.encrypt(new byte[1 << 20]), data);
+
+        pool.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> pool.encrypt(data, 0, data, 0, 16));
+        Assertions.assertEquals(0, pool.available());
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CtrKeystreamPool.createInstance(ctr, 0, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CtrKeystreamPool.createInstance(ctr, 4, 4));
+    }
+}
@@ -0,0 +1,65 @@
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.mode.CtrSeekableByteChannel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+public class CtrSeekableByteChannelTest {
+
+    @Test
+    public void testRangeReads() throws IOException {
+        byte[] data = new byte[200_000];
+        new Random(11).nextBytes(data);
+        CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+        Path encrypted = Files.createTempFile("encrypted", ".bin");
+        try {
+            Files.write(encrypted, ctr.encrypt(data));
+            try (CtrSeekableByteChannel channel = new CtrSeekableByteChannel(FileChannel.open(encrypted), ctr)) {
+                Assertions.assertEquals(data.length, channel.size());
+                // Невыровненные смещения, переходы назад и последовательное чтение за концом диапазона
+                for (int[] range : new int[][] {{150_007, 1000}, {5, 3}, {0, 16}, {4096 * 16 - 3, 70_000}, {199_990, 10}}) {
+                    ByteBuffer buffer = ByteBuffer.allocate(range[1]);
+                    channel.position(range[0]);
+                    while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    }
+                    Assertions.assertArrayEquals(Arrays.copyOfRange(data, range[0], range[0] + range[1]), buffer.array());
+                    Assertions.assertEquals(range[0] + range[1], channel.position());
+                }
+                Assertions.assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            }
+        } finally {
+            Files.deleteIfExists(encrypted);
+        }
+    }
+
+    @Test
+    public void testChannelIsReadOnly() throws IOException {
+        byte[] data = new byte[1000];
+        new Random(12).nextBytes(data);
+        CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+        Path encrypted = Files.createTempFile("encrypted", ".bin");
+        try {
+            byte[] ciphertext = ctr.encrypt(data);
+            Files.write(encrypted, ciphertext);
+            try (CtrSeekableByteChannel channel = new CtrSeekableByteChannel(
+                    FileChannel.open(encrypted, StandardOpenOption.READ, StandardOpenOption.WRITE), ctr)) {
+                channel.position(100);
+                Assertions.assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(16)));
+                Assertions.assertThrows(NonWritableChannelException.class, () -> channel.truncate(10));
+            }
+            // Данные в файле не изменены
+            Assertions.assertArrayEquals(ciphertext, Files.readAllBytes(encrypted));
+        } finally {
+            Files.deleteIfExists(encrypted);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.mode.CtrDecryptingInputStream;
+import org.digitalleague.mode.CtrEncryptingOutputStream;
+import org.digitalleague.mode.CtrReadableByteChannel;
+import org.digitalleague.mode.CtrWritableByteChannel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+public class CtrStreamTest {
+    private final CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+    private final Random random = new Random(11);
+
+    private byte[] message(int length) {
+        byte[] message = new byte[length];
+        random.nextBytes(message);
+        return message;
+    }
+
+    @Test
+    public void testOutputStreamWithUnalignedWrites() throws IOException {
+        byte[] plainText = message(20000);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        try (OutputStream out = new CtrEncryptingOutputStream(sink, ctr)) {
+            int offset = 0;
+            while (offset < plainText.length) {
+                if (random.nextInt(10) == 0) {
+                    out.write(plainText[offset++]);
+                    continue;
+                }
+                int length = Math.min(random.nextInt(40), plainText.length - offset);
+                out.write(plainText, offset, length);
+                offset += length;
+            }
+        }
+
+        Assertions.assertArrayEquals(ctr.encrypt(plainText), sink.toByteArray());
+    }
+
+    @Test
+    public void testInputStreamWithSkip() throws IOException {
+        byte[] plainText = message(10000);
+        byte[] cipherText = ctr.encrypt(plainText);
+
+        try (InputStream in = new CtrDecryptingInputStream(new ByteArrayInputStream(cipherText), ctr)) {
+            byte[] head = new byte[7];
+            Assertions.assertEquals(7, in.read(head));
+            Assertions.assertArrayEquals(Arrays.copyOf(plainText, 7), head);
+
+            Assertions.assertEquals(5000, in.skip(5000));
+            Assertions.assertEquals(plainText[5007] & 0xFF, in.read());
+
+            byte[] tail = in.readAllBytes();
+            Assertions.assertArrayEquals(Arrays.copyOfRange(plainText, 5008, plainText.length), tail);
+        }
+    }
+
+    @Test
+    public void testChannels() throws IOException {
+        byte[] plainText = message(30000);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        try (WritableByteChannel channel = new CtrWritableByteChannel(Channels.newChannel(sink), ctr)) {
+            ByteBuffer src = ByteBuffer.allocateDirect(plainText.length);
+            src.put(plainText).flip();
+            while (src.hasRemaining()) {
+                ByteBuffer slice = src.slice(src.position(), Math.min(src.remaining(), 1000 + random.nextInt(100)));
+                src.position(src.position() + channel.write(slice));
+            }
+        }
+        Assertions.assertArrayEquals(ctr.encrypt(plainText), sink.toByteArray());
+
+        ByteBuffer decrypted = ByteBuffer.allocate(plainText.length);
+        try (ReadableByteChannel channel = new CtrReadableByteChannel(
+                Channels.newChannel(new ByteArrayInputStream(sink.toByteArray())), ctr)) {
+            ByteBuffer dst = ByteBuffer.allocate(333);
+            while (channel.read(dst) != -1) {
+                dst.flip();
+                decrypted.put(dst);
+                dst.clear();
+            }
+        }
+        Assertions.assertArrayEquals(plainText, decrypted.array());
+    }
+
+    @Test
+    public void testCounterNearOverflow() throws IOException {
+        byte[] iv = new byte[16];
+        Arrays.fill(iv, (byte) 0xff);
+        iv[15] = (byte) 0xfe; // До переполнения счетчика остается два блока
+        CTRMode nearMax = CTRMode.createInstance(CTRModeTest.KEY, iv);
+
+        for (int length : new int[] {1, 16, 17, 32}) {
+            byte[] plainText = message(length);
+            byte[] expected = nearMax.encrypt(plainText);
+
+            ByteArrayOutputStream sink = new ByteArrayOutputStream();
+            try (OutputStream out = new CtrEncryptingOutputStream(sink, nearMax)) {
+                out.write(plainText);
+            }
+            Assertions.assertArrayEquals(expected, sink.toByteArray());
+
+            try (InputStream in = new CtrDecryptingInputStream(new ByteArrayInputStream(expected), nearMax)) {
+                Assertions.assertArrayEquals(plainText, in.readAllBytes());
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(length).put(plainText).flip();
+            nearMax.encrypt(buffer, buffer);
+            byte[] encrypted = new byte[length];
+            buffer.get(0, encrypted);
+            Assertions.assertArrayEquals(expected, encrypted);
+        }
+
+        // Переполнение обнаруживается при первом обращении к блоку после ff..ff
+        Assertions.assertThrows(ArithmeticException.class, () -> nearMax.encrypt(new byte[33]));
+        OutputStream out = new CtrEncryptingOutputStream(new ByteArrayOutputStream(), nearMax);
+        out.write(new byte[32]);
+        Assertions.assertThrows(ArithmeticException.class, () -> out.write(0));
+        Assertions.assertThrows(ArithmeticException.class, () -> nearMax.keyStream(32).next(new byte[1], 0, 1));
+    }
+}
@@ -0,0 +1,130 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.service.EncryptionService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+
+public class EncryptionServiceTest {
+    private static final byte[][] KEYS = {CipherImplTest.key128, CipherImplTest.key192, CipherImplTest.key256, CTRModeTest.KEY};
+
+    @Test
+    public void testConcurrentRequestsMatchDirectCiphers() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try (EncryptionService service = EncryptionService.createInstance(CipherImpl.ENGINE.TABLE, 64,
+                Duration.ofMillis(2), ForkJoinPool.commonPool())) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int client = 0; client < 16; client++) {
+                int seed = client;
+                results.add(clients.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 200; i++) {
+                        byte[] key = KEYS[random.nextInt(KEYS.length)];
+                        byte[] message = new byte[random.nextInt(100)];
+                        random.nextBytes(message);
+
+                        byte[] cipherText = service.encrypt(key, message).join();
+                        Assertions.assertArrayEquals(CipherImpl.createInstance(key, CipherImpl.ENGINE.TABLE).encrypt(message), cipherText);
+                        Assertions.assertArrayEquals(CipherImpl.createInstance(key).decrypt(cipherText), service.decrypt(key, cipherText).join());
+
+                        byte[] ctrText = service.processCtr(key, CTRModeTest.IV, message).join();
+                        Assertions.assertArrayEquals(CTRMode.createInstance(key, CTRModeTest.IV).encrypt(message), ctrText);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            Assertions.assertEquals(16 * 200 * 3, service.getRequestCount());
+            // Одновременные запросы объединяются в пакеты
+            Assertions.assertTrue(service.getBatchCount() < service.getRequestCount());
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void testNistVector() {
+        try (EncryptionService service = EncryptionService.createInstance()) {
+            CompletableFuture<byte[]> first = service.processCtr(CTRModeTest.KEY, CTRModeTest.IV, CTRModeTest.PLAIN_TEXT);
+            CompletableFuture<byte[]> second = service.processCtr(CTRModeTest.KEY, CTRModeTest.IV, CTRModeTest.CIPHER_TEXT);
+            Assertions.assertArrayEquals(CTRModeTest.CIPHER_TEXT, first.join());
+            Assertions.assertArrayEquals(CTRModeTest.PLAIN_TEXT, second.join());
+        }
+    }
+
+    @Test
+    public void testManyKeysAndCloseWhileBatchesRun() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            EncryptionService service = EncryptionService.createInstance(CipherImpl.ENGINE.TABLE, 4096,
+                    Duration.ofMillis(20), executor);
+            Random random = new Random(17);
+            List<byte[]> keys = new ArrayList<>();
+            List<byte[]> messages = new ArrayList<>();
+            List<CompletableFuture<byte[]>> results = new ArrayList<>();
+            // Ключей в пакете больше, чем вмещает кэш сервиса (1024), и close вызывается до завершения пакетов
+            for (int i = 0; i < 3000; i++) {
+                byte[] key = new byte[16];
+                byte[] message = new byte[64 + random.nextInt(512)];
+                random.nextBytes(key);
+                random.nextBytes(message);
+                keys.add(key);
+                messages.add(message);
+                results.add(service.encrypt(key, message));
+            }
+            service.close();
+            for (int i = 0; i < results.size(); i++) {
+                Assertions.assertTrue(results.get(i).isDone());
+                Assertions.assertArrayEquals(CipherImpl.createInstance(keys.get(i), CipherImpl.ENGINE.TABLE).encrypt(messages.get(i)),
+                        results.get(i).join());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCallerBuffersAreCopied() {
+        try (EncryptionService service = EncryptionService.createInstance(CipherImpl.ENGINE.TABLE, 64,
+                Duration.ofMillis(100), ForkJoinPool.commonPool())) {
+            byte[] key = CTRModeTest.KEY.clone();
+            byte[] iv = CTRModeTest.IV.clone();
+            byte[] message = CTRModeTest.PLAIN_TEXT.clone();
+            CompletableFuture<byte[]> encrypted = service.encrypt(key, message);
+            CompletableFuture<byte[]> ctr = service.processCtr(key, iv, message);
+            // Буферы переиспользуются вызывающим до обработки пакета
+            Arrays.fill(key, (byte) 1);
+            Arrays.fill(iv, (byte) 2);
+            Arrays.fill(message, (byte) 3);
+            CompletableFuture<byte[]> otherKey = service.encrypt(key, message);
+
+            Assertions.assertArrayEquals(CipherImpl.createInstance(CTRModeTest.KEY, CipherImpl.ENGINE.TABLE)
+                    .encrypt(CTRModeTest.PLAIN_TEXT), encrypted.join());
+            Assertions.assertArrayEquals(CTRModeTest.CIPHER_TEXT, ctr.join());
+            Assertions.assertArrayEquals(CipherImpl.createInstance(key, CipherImpl.ENGINE.TABLE).encrypt(message), otherKey.join());
+        }
+    }
+
+    @Test
+    public void testInvalidRequestsAndClose() {
+        EncryptionService service = EncryptionService.createInstance();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.encrypt(new byte[10], new byte[16]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.decrypt(CTRModeTest.KEY, new byte[17]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.processCtr(CTRModeTest.KEY, new byte[8], new byte[16]));
+
+        service.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> service.encrypt(CTRModeTest.KEY, new byte[16]));
+    }
+}
@@ -0,0 +1,57 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.EngineSelector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+public class EngineSelectorTest {
+
+    @Test
+    public void testCalibrationIsCached() {
+        Map<CipherImpl.ENGINE, Double> calibration = EngineSelector.getCalibration();
+        Assertions.assertEquals(EnumSet.allOf(CipherImpl.ENGINE.class), calibration.keySet());
+        calibration.values().forEach(throughput -> Assertions.assertTrue(throughput > 0));
+        Assertions.assertSame(calibration, EngineSelector.getCalibration());
+
+        List<CipherImpl.ENGINE> ranking = EngineSelector.getRanking();
+        Assertions.assertEquals(CipherImpl.ENGINE.values().length, ranking.size());
+        for (int i = 1; i < ranking.size(); i++) {
+            Assertions.assertTrue(calibration.get(ranking.get(i - 1)) >= calibration.get(ranking.get(i)));
+        }
+        Assertions.assertEquals(ranking.get(0), EngineSelector.select(EngineSelector.POLICY.FASTEST));
+    }
+
+    @Test
+    public void testConstantTimePolicy() {
+        Assertions.assertEquals(CipherImpl.ENGINE.BITSLICED, EngineSelector.select(EngineSelector.POLICY.CONSTANT_TIME));
+        withProperty(EngineSelector.POLICY_PROPERTY, "constant_time",
+                () -> Assertions.assertEquals(CipherImpl.ENGINE.BITSLICED, EngineSelector.select()));
+    }
+
+    @Test
+    public void testEngineProperty() {
+        withProperty(EngineSelector.ENGINE_PROPERTY, "base", () -> {
+            Assertions.assertEquals(CipherImpl.ENGINE.BASE, EngineSelector.select());
+            // Явно заданная реализация должна удовлетворять политике
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> EngineSelector.select(EngineSelector.POLICY.CONSTANT_TIME));
+            // Результат шифрования не зависит от выбранной реализации
+            Assertions.assertArrayEquals(CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE).encrypt(CTRModeTest.PLAIN_TEXT),
+                    CipherImpl.createInstance(CipherImplTest.key256).encrypt(CTRModeTest.PLAIN_TEXT));
+        });
+        withProperty(EngineSelector.ENGINE_PROPERTY, "AES-NI",
+                () -> Assertions.assertThrows(IllegalArgumentException.class, EngineSelector::select));
+    }
+
+    private static void withProperty(String name, String value, Runnable action) {
+        System.setProperty(name, value);
+        try {
+            action.run();
+        } finally {
+            System.clearProperty(name);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.ExpandedKeyCache;
+import org.digitalleague.key.KeySchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ExpandedKeyCacheTest {
+
+    private static byte[] key(int seed) {
+        byte[] key = new byte[16];
+        Arrays.fill(key, (byte) seed);
+        return key;
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        ExpandedKeyCache cache = new ExpandedKeyCache(4);
+        ExpandedKey first = cache.get(key(1));
+        ExpandedKey second = cache.get(key(1).clone());
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, cache.getMissCount());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertArrayEquals(new KeySchedule().expandKey(key(1)).getEncryptionRoundKeys(), first.getEncryptionRoundKeys());
+    }
+
+    @Test
+    public void testLruEvictionKeepsKeyUsable() {
+        ExpandedKeyCache cache = new ExpandedKeyCache(2, 1);
+        ExpandedKey first = cache.get(key(1));
+        ExpandedKey second = cache.get(key(2));
+        cache.get(key(1)); // key(2) становится самым давно использованным
+        cache.get(key(3));
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.getEvictionCount());
+        Assertions.assertFalse(first.isDestroyed());
+        // Вытесненный ключ, выданный через get, может еще использоваться шифрами, поэтому он не обнуляется сразу
+        Assertions.assertFalse(second.isDestroyed());
+        Assertions.assertArrayEquals(new KeySchedule().expandKey(key(2)).getEncryptionRoundKeys(), second.getEncryptionRoundKeys());
+        Assertions.assertNotSame(second, cache.get(key(2)));
+    }
+
+    @Test
+    public void testEvictedLeasedKeyIsDestroyedOnRelease() {
+        ExpandedKeyCache cache = new ExpandedKeyCache(1, 1);
+        ExpandedKeyCache.Lease first = cache.acquire(key(1));
+        ExpandedKeyCache.Lease second = cache.acquire(key(2));
+
+        // key(1) вытеснен, но аренда открыта
+        Assertions.assertEquals(1, cache.getEvictionCount());
+        Assertions.assertFalse(first.key().isDestroyed());
+        first.close();
+        Assertions.assertTrue(first.key().isDestroyed());
+        first.close();
+
+        // Ключ без открытых аренд обнуляется сразу при вытеснении
+        second.close();
+        Assertions.assertFalse(second.key().isDestroyed());
+        cache.acquire(key(3)).close();
+        Assertions.assertTrue(second.key().isDestroyed());
+    }
+
+    @Test
+    public void testEvictedSharedKeyIsDestroyedWhenUnreachable() throws InterruptedException {
+        ExpandedKeyCache cache = new ExpandedKeyCache(1, 1);
+        int[] roundKeys = cache.get(key(5)).getEncryptionRoundKeys();
+        Assertions.assertTrue(Arrays.stream(roundKeys).anyMatch(word -> word != 0));
+        cache.get(key(6));
+
+        for (int i = 0; i < 200 && Arrays.stream(roundKeys).anyMatch(word -> word != 0); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(Arrays.stream(roundKeys).allMatch(word -> word == 0));
+    }
+
+    @Test
+    public void testSegments() throws Exception {
+        ExpandedKeyCache cache = new ExpandedKeyCache(64, 8);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    int value = (seed * 31 + i) % 200;
+                    try (ExpandedKeyCache.Lease lease = cache.acquire(key(value))) {
+                        Assertions.assertArrayEquals(new KeySchedule().expandKey(key(value)).getEncryptionRoundKeys(),
+                                lease.key().getEncryptionRoundKeys());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertTrue(cache.size() <= cache.getCapacity());
+        Assertions.assertEquals(8 * 2000, cache.getHitCount() + cache.getMissCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExpandedKeyCache(4, 5));
+    }
+
+    @Test
+    public void testEvictionDuringEncryption() throws Exception {
+        ExpandedKeyCache cache = new ExpandedKeyCache(1);
+        byte[] message = new byte[200 * 1024];
+        new Random(12).nextBytes(message);
+        byte[] expected = CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE).encrypt(message);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread evictor = new Thread(() -> {
+            for (int i = 0; running.get(); i++) {
+                cache.get(key(i));
+            }
+        });
+        evictor.start();
+        try {
+            for (int i = 0; i < 50; i++) {
+                CipherImpl cipher = CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE, cache);
+                Assertions.assertArrayEquals(expected, cipher.encrypt(message));
+            }
+        } finally {
+            running.set(false);
+            evictor.join();
+        }
+        Assertions.assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void testCipherFromCache() {
+        ExpandedKeyCache cache = new ExpandedKeyCache(8);
+        byte[] message = CipherImplTest.STRING_PLAINTEXT.getBytes();
+        CipherImpl cached = CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE, cache);
+        CipherImpl plain = CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE);
+
+        Assertions.assertArrayEquals(plain.encrypt(message), cached.encrypt(message));
+        CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE, cache);
+        Assertions.assertEquals(1, cache.getHitCount());
+
+        cache.clear();
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertThrows(IllegalStateException.class, () -> cached.encrypt(message));
+    }
+}
@@ -0,0 +1,70 @@
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.mode.FileEncryptor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class FileEncryptorTest {
+
+    @Test
+    public void testEncryptAndDecryptFile() throws IOException {
+        Path plain = Files.createTempFile("plain", ".bin");
+        Path encrypted = Files.createTempFile("encrypted", ".bin");
+        Path decrypted = Files.createTempFile("decrypted", ".bin");
+        try {
+            byte[] data = new byte[3 * 1024 * 1024 + 123];
+            new Random(3).nextBytes(data);
+            Files.write(plain, data);
+            CTRMode ctr = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+
+            // Небольшой невыровненный размер области, чтобы файл обрабатывался несколькими отображениями
+            FileEncryptor.process(plain, encrypted, ctr, ForkJoinPool.commonPool(), 100_001);
+            Assertions.assertArrayEquals(ctr.encrypt(data), Files.readAllBytes(encrypted));
+
+            FileEncryptor.decrypt(encrypted, decrypted, CTRModeTest.KEY, CTRModeTest.IV);
+            Assertions.assertArrayEquals(data, Files.readAllBytes(decrypted));
+        } finally {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(encrypted);
+            Files.deleteIfExists(decrypted);
+        }
+    }
+
+    @Test
+    public void testSameFileIsRejected() throws IOException {
+        Path plain = Files.createTempFile("plain", ".bin");
+        try {
+            byte[] data = new byte[1000];
+            new Random(4).nextBytes(data);
+            Files.write(plain, data);
+
+            // Тот же файл, в том числе по другому пути, не обрабатывается и не усекается
+            Path samePath = plain.getParent().resolve(".").resolve(plain.getFileName());
+            for (Path out : new Path[] {plain, samePath}) {
+                Assertions.assertThrows(IllegalArgumentException.class,
+                        () -> FileEncryptor.encrypt(plain, out, CTRModeTest.KEY, CTRModeTest.IV));
+            }
+            Assertions.assertArrayEquals(data, Files.readAllBytes(plain));
+        } finally {
+            Files.deleteIfExists(plain);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        Path plain = Files.createTempFile("plain", ".bin");
+        Path encrypted = Files.createTempFile("encrypted", ".bin");
+        try {
+            FileEncryptor.encrypt(plain, encrypted, CTRModeTest.KEY, CTRModeTest.IV);
+            Assertions.assertEquals(0L, Files.size(encrypted));
+        } finally {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(encrypted);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import org.digitalleague.mode.GCMMode;
+import org.digitalleague.mode.GcmOperation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+public class GCMModeTest {
+    // Тестовые примеры из спецификации GCM (McGrew, Viega), используемые в NIST CAVP
+    private static final byte[] KEY = hex("feffe9928665731c6d6a8f9467308308");
+    private static final byte[] IV = hex("cafebabefacedbaddecaf888");
+    private static final byte[] AAD = hex("feedfacedeadbeeffeedfacedeadbeefabaddad2");
+    private static final byte[] PLAIN_TEXT = hex("d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a72"
+            + "1c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b391aafd255");
+
+    private static byte[] hex(String value) {
+        return HexFormat.of().parseHex(value);
+    }
+
+    private static void checkVector(byte[] key, byte[] iv, byte[] aad, byte[] plainText, String expected)
+            throws AEADBadTagException {
+        GCMMode gcm = GCMMode.createInstance(key);
+        byte[] cipherText = gcm.encrypt(iv, aad, plainText);
+        Assertions.assertArrayEquals(hex(expected), cipherText);
+        Assertions.assertArrayEquals(plainText, gcm.decrypt(iv, aad, cipherText));
+    }
+
+    @Test
+    public void testZeroKeyVectors() throws AEADBadTagException {
+        // Test Case 1 и 2
+        checkVector(new byte[16], new byte[12], new byte[0], new byte[0], "58e2fccefa7e3061367f1d57a4e7455a");
+        checkVector(new byte[16], new byte[12], new byte[0], new byte[16],
+                "0388dace60b6a392f328c2b971b2fe78ab6e47d42cec13bdf53a67b21257bddf");
+    }
+
+    @Test
+    public void testVectorWithoutAad() throws AEADBadTagException {
+        // Test Case 3
+        checkVector(KEY, IV, new byte[0], PLAIN_TEXT,
+                "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+                        + "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f5985"
+                        + "4d5c2af327cd64a62cf35abd2ba6fab4");
+    }
+
+    @Test
+    public void testVectorWithAad() throws AEADBadTagException {
+        // Test Case 4
+        checkVector(KEY, IV, AAD, Arrays.copyOf(PLAIN_TEXT, 60),
+                "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+                        + "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091"
+                        + "5bc94fbc3221a5db94fae95ae7121a47");
+    }
+
+    @Test
+    public void testVectorWithLongIv() throws AEADBadTagException {
+        // Test Case 6: IV длиной 60 байт, J0 вычисляется через GHASH
+        byte[] iv = hex("9313225df88406e555909c5aff5269aa6a7a9538534f7da1e4c303d2a318a728"
+                + "c3c0c95156809539fcf0e2429a6b525416aedbf5a0de6a57a637b39b");
+        checkVector(KEY, iv, AAD, Arrays.copyOf(PLAIN_TEXT, 60),
+                "8ce24998625615b603a033aca13fb894be9112a5c3a211a8ba262a3cca7e2ca7"
+                        + "01e4a9a4fba43c90ccdcb281d48c7c6fd62875d2aca417034c34aee5"
+                        + "619cc5aefffe0bfa462af43c1699d050");
+    }
+
+    @Test
+    public void testVector256() throws AEADBadTagException {
+        // Test Case 16
+        byte[] key = new byte[32];
+        System.arraycopy(KEY, 0, key, 0, 16);
+        System.arraycopy(KEY, 0, key, 16, 16);
+        checkVector(key, IV, AAD, Arrays.copyOf(PLAIN_TEXT, 60),
+                "522dc1f099567d07f47f37a32a84427d643a8cdcbfe5c0c97598a2bd2555d1aa"
+                        + "8cb08e48590dbb3da7b08b1056828838c5f61e6393ba7a0abcc9f662"
+                        + "76fc6ece0f4e1768cddf8853bb2d551b");
+    }
+
+    @Test
+    public void testStreamingMatchesOneShot() throws AEADBadTagException {
+        Random random = new Random(17);
+        byte[] message = new byte[20000];
+        byte[] aad = new byte[77];
+        random.nextBytes(message);
+        random.nextBytes(aad);
+        GCMMode gcm = GCMMode.createInstance(KEY);
+        byte[] expected = gcm.encrypt(IV, aad, message);
+
+        GcmOperation encryption = gcm.encryption(IV);
+        encryption.updateAAD(aad, 0, 30);
+        encryption.updateAAD(aad, 30, aad.length - 30);
+        byte[] cipherText = Arrays.copyOf(message, message.length);
+        for (int offset = 0; offset < message.length; ) {
+            int length = Math.min(random.nextInt(100), message.length - offset);
+            offset += encryption.update(cipherText, offset, length, cipherText, offset);
+        }
+        Assertions.assertArrayEquals(expected, concat(cipherText, encryption.doFinal()));
+
+        GcmOperation decryption = gcm.decryption(IV);
+        decryption.updateAAD(aad, 0, aad.length);
+        byte[] plainText = new byte[message.length];
+        decryption.update(cipherText, 0, 5, plainText, 0);
+        decryption.update(cipherText, 5, cipherText.length - 5, plainText, 5);
+        decryption.verify(Arrays.copyOfRange(expected, message.length, expected.length));
+        Assertions.assertArrayEquals(message, plainText);
+        Assertions.assertThrows(IllegalStateException.class, () -> decryption.update(cipherText, 0, 1, plainText, 0));
+    }
+
+    @Test
+    public void testTamperedMessageRejected() {
+        GCMMode gcm = GCMMode.createInstance(KEY);
+        byte[] cipherText = gcm.encrypt(IV, AAD, PLAIN_TEXT);
+
+        byte[] tampered = Arrays.copyOf(cipherText, cipherText.length);
+        tampered[3] ^= 1;
+        Assertions.assertThrows(AEADBadTagException.class, () -> gcm.decrypt(IV, AAD, tampered));
+        Assertions.assertThrows(AEADBadTagException.class, () -> gcm.decrypt(IV, new byte[0], cipherText));
+
+        GcmOperation encryption = gcm.encryption(IV);
+        encryption.update(PLAIN_TEXT, 0, 16, new byte[16], 0);
+        Assertions.assertThrows(IllegalStateException.class, () -> encryption.updateAAD(AAD, 0, AAD.length));
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
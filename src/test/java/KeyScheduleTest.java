@@ -1,9 +1,12 @@
+import org.digitalleague.key.ExpandedKey;
 import org.digitalleague.key.KeySchedule;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Arrays;
+
 @ExtendWith(MockitoExtension.class)
 public class KeyScheduleTest {
     private static final KeySchedule keySchedule = new KeySchedule();
@@ -179,4 +182,39 @@ public class KeyScheduleTest {
     public void testKeySchedule192() {
         Assertions.assertArrayEquals(EXPECTED_ROUND_KEYS_AES_192, keySchedule.keyExpansion(KEY_192));
     }
+
+    @Test
+    public void testExpandKeyMatchesKeyExpansion() {
+        for (byte[] key : new byte[][] {KEY_128, KEY_192, KEY_256}) {
+            ExpandedKey expandedKey = keySchedule.expandKey(key);
+            Assertions.assertArrayEquals(keySchedule.keyExpansion(key), toWords(expandedKey.getEncryptionRoundKeys()));
+            Assertions.assertEquals(key.length * 8, expandedKey.getKeyLength());
+            Assertions.assertEquals(key.length / 4 + 6, expandedKey.getRounds());
+        }
+    }
+
+    @Test
+    public void testDecryptionRoundKeysOrder() {
+        ExpandedKey expandedKey = keySchedule.expandKey(KEY_256);
+        int[] encryptionKeys = expandedKey.getEncryptionRoundKeys();
+        int[] decryptionKeys = expandedKey.getDecryptionRoundKeys();
+        int last = encryptionKeys.length - 4;
+
+        // Первый и последний раундовые ключи эквивалентного обратного шифра не проходят через InvMixColumns
+        Assertions.assertArrayEquals(Arrays.copyOfRange(encryptionKeys, last, last + 4), Arrays.copyOfRange(decryptionKeys, 0, 4));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(encryptionKeys, 0, 4), Arrays.copyOfRange(decryptionKeys, last, last + 4));
+    }
+
+    @Test
+    public void testExpandKeyInvalidLength() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> keySchedule.expandKey(new byte[10]));
+    }
+
+    private static byte[][] toWords(int[] words) {
+        byte[][] result = new byte[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            result[i] = new byte[] {(byte) (words[i] >>> 24), (byte) (words[i] >>> 16), (byte) (words[i] >>> 8), (byte) words[i]};
+        }
+        return result;
+    }
 }
@@ -1,8 +1,15 @@
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
+import static org.digitalleague.function.PolynomialGF256.MUL_0E;
+import static org.digitalleague.function.PolynomialGF256.addRegion;
 import static org.digitalleague.function.PolynomialGF256.multiply;
+import static org.digitalleague.function.PolynomialGF256.multiplyAddRegion;
+import static org.digitalleague.function.PolynomialGF256.multiplyRegion;
 import static org.digitalleague.function.PolynomialGF256.multiplyWithTables;
+import static org.digitalleague.function.PolynomialGF256.pow;
 
 public class PolynomialGF256Test {
     @Test
@@ -25,4 +32,56 @@ public class PolynomialGF256Test {
         byte expectedSum = (byte)0xd4;
         byte expectedProduct = (byte)0xc1;
     }
+
+    @Test
+    public void testProductTableMatchesLogTables() {
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                Assertions.assertEquals(multiplyWithTables((byte) a, (byte) b), multiply((byte) a, (byte) b));
+            }
+            Assertions.assertEquals(multiply((byte) 0x0e, (byte) a) & 0xFF, MUL_0E[a]);
+        }
+        // Пример из спецификации FIPS-197, 4.2: {57} * {13} = {fe}
+        Assertions.assertEquals((byte) 0xfe, multiply((byte) 0x57, (byte) 0x13));
+    }
+
+    @Test
+    public void testPow() {
+        byte a = 0x57;
+        byte expected = 1;
+        for (int degree = 0; degree < 600; degree++) {
+            Assertions.assertEquals(expected, pow(a, degree));
+            expected = multiply(expected, a);
+        }
+        Assertions.assertEquals(0, pow((byte) 0, 3));
+        Assertions.assertEquals(1, pow((byte) 0x03, 255));
+    }
+
+    @Test
+    public void testRegions() {
+        Random random = new Random(5);
+        byte[] src = new byte[1000];
+        byte[] dst = new byte[1000];
+        random.nextBytes(src);
+        random.nextBytes(dst);
+
+        for (int c = 0; c < 256; c++) {
+            byte[] product = dst.clone();
+            multiplyRegion((byte) c, src, product, 10, 900);
+            byte[] sum = dst.clone();
+            multiplyAddRegion((byte) c, src, sum, 10, 900);
+            for (int i = 0; i < src.length; i++) {
+                boolean inRegion = i >= 10 && i < 910;
+                byte expected = inRegion ? multiply((byte) c, src[i]) : dst[i];
+                Assertions.assertEquals(expected, product[i]);
+                Assertions.assertEquals(inRegion ? (byte) (expected ^ dst[i]) : dst[i], sum[i]);
+            }
+        }
+
+        byte[] sum = dst.clone();
+        addRegion(src, sum, 0, src.length);
+        addRegion(src, sum, 0, src.length);
+        Assertions.assertArrayEquals(dst, sum);
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> addRegion(src, new byte[10], 0, 11));
+    }
 }
@@ -0,0 +1,102 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl.KEY_LENGTH;
+import org.digitalleague.cipher.impl.RijndaelBitslicedImpl;
+import org.digitalleague.cipher.impl.RijndaelTableImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.digitalleague.mode.CTRMode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class RijndaelBitslicedImplTest {
+    private final KeySchedule keySchedule = new KeySchedule();
+
+    @Test
+    public void testFipsVector() {
+        // Пример из приложения C.1 спецификации FIPS-197
+        byte[] key = new byte[16];
+        byte[] plainText = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            key[i] = (byte) i;
+            plainText[i] = (byte) (i * 0x11);
+        }
+        byte[] expected = new byte[] {
+                0x69, (byte)0xc4, (byte)0xe0, (byte)0xd8,
+                0x6a, 0x7b, 0x04, 0x30,
+                (byte)0xd8, (byte)0xcd, (byte)0xb7, (byte)0x80,
+                0x70, (byte)0xb4, (byte)0xc5, 0x5a
+        };
+        RijndaelBitslicedImpl cipher = new RijndaelBitslicedImpl(KEY_LENGTH.KEY_128);
+        ExpandedKey expandedKey = keySchedule.expandKey(key);
+
+        byte[] cipherText = new byte[16];
+        cipher.encryptBlock(plainText, 0, cipherText, 0, expandedKey);
+        Assertions.assertArrayEquals(expected, cipherText);
+        cipher.decryptBlock(cipherText, 0, cipherText, 0, expandedKey);
+        Assertions.assertArrayEquals(plainText, cipherText);
+    }
+
+    @Test
+    public void testDestroyZeroesBitslicedRoundKeys() {
+        ExpandedKey key = keySchedule.expandKey(CipherImplTest.key256);
+        RijndaelBitslicedImpl cipher = new RijndaelBitslicedImpl(KEY_LENGTH.KEY_256);
+        byte[] block = new byte[16];
+        cipher.encryptBlock(block, 0, block, 0, key);
+
+        // Битсрезовые раундовые ключи вычисляются один раз и хранятся в развернутом ключе
+        long[] bitsliced = key.getBitslicedRoundKeys();
+        Assertions.assertSame(bitsliced, key.getBitslicedRoundKeys());
+        key.destroy();
+        Assertions.assertTrue(Arrays.stream(bitsliced).allMatch(word -> word == 0));
+        Assertions.assertThrows(IllegalStateException.class, () -> cipher.encryptBlock(block, 0, block, 0, key));
+    }
+
+    @Test
+    public void testSameResultAsTableImpl() {
+        Random random = new Random(9);
+        for (KEY_LENGTH keyLength : KEY_LENGTH.values()) {
+            RijndaelTableImpl table = new RijndaelTableImpl(keyLength);
+            RijndaelBitslicedImpl bitsliced = new RijndaelBitslicedImpl(keyLength);
+            byte[] keyBytes = new byte[keyLength.getKeyLength() / 8];
+
+            // Неполные группы, ровно одна группа из 8 блоков и несколько групп с остатком
+            for (int nBlocks : new int[] {1, 3, 7, 8, 9, 17, 40}) {
+                random.nextBytes(keyBytes);
+                ExpandedKey key = keySchedule.expandKey(keyBytes);
+                byte[] input = new byte[nBlocks * 16];
+                random.nextBytes(input);
+
+                byte[] expected = new byte[input.length];
+                byte[] actual = new byte[input.length];
+                table.encryptBlocks(input, 0, expected, 0, nBlocks, key);
+                bitsliced.encryptBlocks(input, 0, actual, 0, nBlocks, key);
+                Assertions.assertArrayEquals(expected, actual);
+
+                table.decryptBlocks(input, 0, expected, 0, nBlocks, key);
+                bitsliced.decryptBlocks(input, 0, actual, 0, nBlocks, key);
+                Assertions.assertArrayEquals(expected, actual);
+
+                byte[] inPlace = Arrays.copyOf(input, input.length);
+                bitsliced.encryptBlocks(inPlace, 0, inPlace, 0, nBlocks, key);
+                bitsliced.decryptBlocks(inPlace, 0, inPlace, 0, nBlocks, key);
+                Assertions.assertArrayEquals(input, inPlace);
+            }
+        }
+    }
+
+    @Test
+    public void testCtrWithBitslicedEngine() {
+        byte[] plainText = new byte[300 * 1024 + 11];
+        new Random(1).nextBytes(plainText);
+        CTRMode table = CTRMode.createInstance(CTRModeTest.KEY, CTRModeTest.IV);
+        CTRMode bitsliced = CTRMode.createInstance(keySchedule.expandKey(CTRModeTest.KEY), CTRModeTest.IV,
+                CipherImpl.ENGINE.BITSLICED, ForkJoinPool.commonPool());
+
+        Assertions.assertArrayEquals(CTRModeTest.CIPHER_TEXT, bitsliced.encrypt(CTRModeTest.PLAIN_TEXT));
+        Assertions.assertArrayEquals(table.encrypt(plainText), bitsliced.encrypt(plainText));
+    }
+}
@@ -0,0 +1,171 @@
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.mode.CTRMode;
+import org.digitalleague.provider.RijndaelProvider;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class RijndaelProviderTest {
+    private static final String[] TRANSFORMATIONS = {
+            "AES/ECB/NoPadding", "AES/ECB/PKCS5Padding", "AES/CBC/NoPadding", "AES/CBC/PKCS5Padding", "AES/CTR/NoPadding"
+    };
+    private static final SecretKeySpec KEY = new SecretKeySpec(CipherImplTest.key256, "AES");
+    private static final IvParameterSpec IV = new IvParameterSpec(CTRModeTest.IV);
+
+    @Test
+    public void testMatchesJdk() throws Exception {
+        Random random = new Random(3);
+        for (CipherImpl.ENGINE engine : CipherImpl.ENGINE.values()) {
+            RijndaelProvider provider = new RijndaelProvider(engine);
+            for (String transformation : TRANSFORMATIONS) {
+                boolean noPadding = transformation.endsWith("NoPadding") && !transformation.contains("CTR");
+                for (int length : new int[] {0, 16, 33, 4096, 70_001}) {
+                    if (noPadding && length % 16 != 0) {
+                        continue;
+                    }
+                    byte[] message = new byte[length];
+                    random.nextBytes(message);
+                    Cipher jdk = init(Cipher.getInstance(transformation), Cipher.ENCRYPT_MODE, transformation);
+                    Cipher ours = init(Cipher.getInstance(transformation, provider), Cipher.ENCRYPT_MODE, transformation);
+
+                    byte[] expected = jdk.doFinal(message);
+                    Assertions.assertArrayEquals(expected, ours.doFinal(message), engine + " " + transformation);
+                    // После doFinal шифр возвращается к начальному состоянию
+                    Assertions.assertArrayEquals(expected, chunked(ours, message, random), engine + " " + transformation);
+
+                    init(ours, Cipher.DECRYPT_MODE, transformation);
+                    Assertions.assertArrayEquals(message, chunked(ours, expected, random), engine + " " + transformation);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testByteBuffers() throws Exception {
+        byte[] message = new byte[10_000 + 7];
+        new Random(8).nextBytes(message);
+        for (String transformation : new String[] {"AES/CBC/PKCS5Padding", "AES/CTR/NoPadding"}) {
+            Cipher jdk = init(Cipher.getInstance(transformation), Cipher.ENCRYPT_MODE, transformation);
+            Cipher ours = init(Cipher.getInstance(transformation, new RijndaelProvider()), Cipher.ENCRYPT_MODE, transformation);
+            byte[] expected = jdk.doFinal(message);
+
+            ByteBuffer input = ByteBuffer.allocateDirect(message.length).put(message).flip();
+            ByteBuffer output = ByteBuffer.allocateDirect(ours.getOutputSize(message.length));
+            ours.update(input.limit(1000), output);
+            ours.doFinal(input.limit(message.length), output);
+            Assertions.assertFalse(input.hasRemaining());
+            Assertions.assertEquals(expected.length, output.position());
+            byte[] actual = new byte[expected.length];
+            output.flip().get(actual);
+            Assertions.assertArrayEquals(expected, actual, transformation);
+
+            // Обработка на месте в одном буфере
+            ByteBuffer inPlace = ByteBuffer.allocate(message.length + 16).put(message).flip();
+            Assertions.assertEquals(expected.length, ours.doFinal(inPlace.duplicate(), inPlace.duplicate().clear()));
+            Assertions.assertArrayEquals(expected, Arrays.copyOf(inPlace.array(), expected.length), transformation);
+        }
+    }
+
+    @Test
+    public void testInPlaceArray() throws Exception {
+        byte[] message = new byte[1008];
+        new Random(9).nextBytes(message);
+        for (String transformation : TRANSFORMATIONS) {
+            Cipher jdk = init(Cipher.getInstance(transformation), Cipher.ENCRYPT_MODE, transformation);
+            Cipher ours = init(Cipher.getInstance(transformation, new RijndaelProvider()), Cipher.ENCRYPT_MODE, transformation);
+            byte[] expected = jdk.doFinal(message);
+
+            byte[] buffer = Arrays.copyOf(message, message.length + 32);
+            int length = ours.update(buffer, 0, 5, buffer, 0);
+            length += ours.doFinal(buffer, 5, message.length - 5, buffer, length);
+            Assertions.assertArrayEquals(expected, Arrays.copyOf(buffer, length), transformation);
+        }
+    }
+
+    @Test
+    public void testCounterWrapsLikeJdk() throws Exception {
+        byte[] message = new byte[10_000];
+        new Random(10).nextBytes(message);
+        byte[] maxCounter = new byte[16];
+        Arrays.fill(maxCounter, (byte) 0xff);
+        byte[] nearMax = maxCounter.clone();
+        nearMax[15] = (byte) 0xf0;
+        for (byte[] iv : new byte[][] {maxCounter, nearMax}) {
+            Cipher jdk = Cipher.getInstance("AES/CTR/NoPadding");
+            Cipher ours = Cipher.getInstance("AES/CTR/NoPadding", new RijndaelProvider());
+            jdk.init(Cipher.ENCRYPT_MODE, KEY, new IvParameterSpec(iv));
+            ours.init(Cipher.ENCRYPT_MODE, KEY, new IvParameterSpec(iv));
+
+            // Счетчик переходит через ff..ff по модулю 2^128, в том числе внутри и на границе буфера потока ключа
+            byte[] expected = jdk.doFinal(message);
+            Assertions.assertArrayEquals(expected, ours.doFinal(message));
+            Assertions.assertArrayEquals(expected, chunked(ours, message, new Random(11)));
+        }
+        // Собственный CTRMode библиотеки по-прежнему считает переполнение счетчика ошибкой
+        Assertions.assertThrows(ArithmeticException.class,
+                () -> CTRMode.createInstance(CipherImplTest.key256, maxCounter).encrypt(new byte[32]));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        RijndaelProvider provider = new RijndaelProvider();
+        Cipher cbc = Cipher.getInstance("AES/CBC/PKCS5Padding", provider);
+        Assertions.assertThrows(InvalidKeyException.class,
+                () -> cbc.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[15], "AES"), IV));
+        Assertions.assertThrows(InvalidAlgorithmParameterException.class,
+                () -> cbc.init(Cipher.ENCRYPT_MODE, KEY, new IvParameterSpec(new byte[8])));
+        Assertions.assertThrows(InvalidKeyException.class, () -> cbc.init(Cipher.DECRYPT_MODE, KEY));
+
+        // При шифровании без параметров IV генерируется случайно
+        cbc.init(Cipher.ENCRYPT_MODE, KEY);
+        Assertions.assertEquals(16, cbc.getIV().length);
+
+        cbc.init(Cipher.DECRYPT_MODE, KEY, IV);
+        Assertions.assertThrows(IllegalBlockSizeException.class, () -> cbc.doFinal(new byte[17]));
+        Assertions.assertThrows(BadPaddingException.class, () -> cbc.doFinal(new byte[32]));
+        Assertions.assertThrows(ShortBufferException.class, () -> cbc.doFinal(new byte[32], 0, 32, new byte[16]));
+
+        Cipher ecb = Cipher.getInstance("AES/ECB/NoPadding", provider);
+        ecb.init(Cipher.ENCRYPT_MODE, KEY);
+        Assertions.assertNull(ecb.getIV());
+        Assertions.assertThrows(IllegalBlockSizeException.class, () -> ecb.doFinal(new byte[20]));
+        // После ошибки шифр снова готов к работе
+        Assertions.assertEquals(32, ecb.doFinal(new byte[32]).length);
+    }
+
+    private static Cipher init(Cipher cipher, int mode, String transformation) throws Exception {
+        if (transformation.contains("ECB")) {
+            cipher.init(mode, KEY);
+        } else {
+            cipher.init(mode, KEY, IV);
+        }
+        return cipher;
+    }
+
+    /**
+     * Обработка сообщения частями случайной длины (в том числе пустыми и не кратными блоку)
+     */
+    private static byte[] chunked(Cipher cipher, byte[] message, Random random) throws Exception {
+        byte[] output = new byte[cipher.getOutputSize(message.length)];
+        int inOff = 0;
+        int outOff = 0;
+        while (inOff < message.length) {
+            int chunk = Math.min(message.length - inOff, random.nextInt(40));
+            outOff += cipher.update(message, inOff, chunk, output, outOff);
+            inOff += chunk;
+        }
+        outOff += cipher.doFinal(output, outOff);
+        return Arrays.copyOf(output, outOff);
+    }
+}
@@ -0,0 +1,179 @@
+import org.digitalleague.cipher.BaseCipher;
+import org.digitalleague.cipher.impl.CipherImpl;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl;
+import org.digitalleague.cipher.impl.RijndaelBaseImpl.KEY_LENGTH;
+import org.digitalleague.cipher.impl.RijndaelTableImpl;
+import org.digitalleague.key.ExpandedKey;
+import org.digitalleague.key.KeySchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class RijndaelTableImplTest {
+    private final KeySchedule keySchedule = new KeySchedule();
+
+    // Входной блок из приложения C спецификации FIPS-197
+    private static final byte[] PLAIN_TEXT = new byte[] {
+            0x00, 0x11, 0x22, 0x33,
+            0x44, 0x55, 0x66, 0x77,
+            (byte)0x88, (byte)0x99, (byte)0xaa, (byte)0xbb,
+            (byte)0xcc, (byte)0xdd, (byte)0xee, (byte)0xff
+    };
+
+    private static final byte[] EXPECTED_128 = new byte[] {
+            0x69, (byte)0xc4, (byte)0xe0, (byte)0xd8,
+            0x6a, 0x7b, 0x04, 0x30,
+            (byte)0xd8, (byte)0xcd, (byte)0xb7, (byte)0x80,
+            0x70, (byte)0xb4, (byte)0xc5, 0x5a
+    };
+
+    private static final byte[] EXPECTED_192 = new byte[] {
+            (byte)0xdd, (byte)0xa9, 0x7c, (byte)0xa4,
+            (byte)0x86, 0x4c, (byte)0xdf, (byte)0xe0,
+            0x6e, (byte)0xaf, 0x70, (byte)0xa0,
+            (byte)0xec, 0x0d, 0x71, (byte)0x91
+    };
+
+    private static final byte[] EXPECTED_256 = new byte[] {
+            (byte)0x8e, (byte)0xa2, (byte)0xb7, (byte)0xca,
+            0x51, 0x67, 0x45, (byte)0xbf,
+            (byte)0xea, (byte)0xfc, 0x49, (byte)0x90,
+            0x4b, 0x49, 0x60, (byte)0x89
+    };
+
+    private static byte[] sequentialKey(int length) {
+        byte[] key = new byte[length];
+        for (int i = 0; i < length; i++) {
+            key[i] = (byte) i;
+        }
+        return key;
+    }
+
+    private void checkVector(KEY_LENGTH keyLength, byte[] expected) {
+        RijndaelTableImpl cipher = new RijndaelTableImpl(keyLength);
+        byte[][] roundKeys = keySchedule.keyExpansion(sequentialKey(keyLength.getKeyLength() / 8));
+
+        byte[] cipherText = cipher.encryptBlock(PLAIN_TEXT, roundKeys);
+        Assertions.assertArrayEquals(expected, cipherText);
+        Assertions.assertArrayEquals(PLAIN_TEXT, cipher.decryptBlock(cipherText, roundKeys));
+    }
+
+    @Test
+    public void test128key() {
+        checkVector(KEY_LENGTH.KEY_128, EXPECTED_128);
+    }
+
+    @Test
+    public void test192key() {
+        checkVector(KEY_LENGTH.KEY_192, EXPECTED_192);
+    }
+
+    @Test
+    public void test256key() {
+        checkVector(KEY_LENGTH.KEY_256, EXPECTED_256);
+    }
+
+    @Test
+    public void testSameResultAsBaseImpl() {
+        Random random = new Random(42);
+        for (KEY_LENGTH keyLength : KEY_LENGTH.values()) {
+            RijndaelBaseImpl base = new RijndaelBaseImpl(keyLength);
+            RijndaelTableImpl table = new RijndaelTableImpl(keyLength);
+            byte[] key = new byte[keyLength.getKeyLength() / 8];
+            byte[] block = new byte[16];
+
+            for (int i = 0; i < 100; i++) {
+                random.nextBytes(key);
+                random.nextBytes(block);
+                byte[][] roundKeys = keySchedule.keyExpansion(key);
+                Assertions.assertArrayEquals(base.encryptBlock(block, roundKeys), table.encryptBlock(block, roundKeys));
+                Assertions.assertArrayEquals(base.decryptBlock(block, roundKeys), table.decryptBlock(block, roundKeys));
+            }
+        }
+    }
+
+    @Test
+    public void testRoundKeyArrayChangedInPlace() {
+        RijndaelTableImpl cipher = new RijndaelTableImpl(KEY_LENGTH.KEY_128);
+        byte[][] roundKeys = keySchedule.keyExpansion(sequentialKey(16));
+        Assertions.assertArrayEquals(EXPECTED_128, cipher.encryptBlock(PLAIN_TEXT, roundKeys));
+
+        // Тот же массив расписания с другим ключом: преобразованный ранее ключ не используется
+        byte[] otherKey = new byte[16];
+        new Random(8).nextBytes(otherKey);
+        byte[][] otherRoundKeys = keySchedule.keyExpansion(otherKey);
+        for (int i = 0; i < roundKeys.length; i++) {
+            System.arraycopy(otherRoundKeys[i], 0, roundKeys[i], 0, roundKeys[i].length);
+        }
+        Assertions.assertArrayEquals(new RijndaelBaseImpl(KEY_LENGTH.KEY_128).encryptBlock(PLAIN_TEXT, keySchedule.keyExpansion(otherKey)),
+                cipher.encryptBlock(PLAIN_TEXT, roundKeys));
+        Assertions.assertArrayEquals(PLAIN_TEXT, cipher.decryptBlock(cipher.encryptBlock(PLAIN_TEXT, roundKeys), roundKeys));
+    }
+
+    @Test
+    public void testEncryptBlocksMatchesSingleBlocks() {
+        Random random = new Random(3);
+        for (KEY_LENGTH keyLength : KEY_LENGTH.values()) {
+            RijndaelTableImpl table = new RijndaelTableImpl(keyLength);
+            byte[] keyBytes = new byte[keyLength.getKeyLength() / 8];
+            random.nextBytes(keyBytes);
+            ExpandedKey key = keySchedule.expandKey(keyBytes);
+
+            // Число блоков от 1 до 9 покрывает группы по 4 блока и остаток
+            for (int nBlocks = 1; nBlocks <= 9; nBlocks++) {
+                byte[] input = new byte[nBlocks * 16 + 3];
+                random.nextBytes(input);
+                byte[] expectedEncrypted = new byte[nBlocks * 16];
+                byte[] expectedDecrypted = new byte[nBlocks * 16];
+                for (int i = 0; i < nBlocks; i++) {
+                    table.encryptBlock(input, 3 + i * 16, expectedEncrypted, i * 16, key);
+                    table.decryptBlock(input, 3 + i * 16, expectedDecrypted, i * 16, key);
+                }
+
+                byte[] encrypted = new byte[nBlocks * 16];
+                table.encryptBlocks(input, 3, encrypted, 0, nBlocks, key);
+                Assertions.assertArrayEquals(expectedEncrypted, encrypted);
+
+                byte[] decrypted = new byte[nBlocks * 16];
+                table.decryptBlocks(input, 3, decrypted, 0, nBlocks, key);
+                Assertions.assertArrayEquals(expectedDecrypted, decrypted);
+
+                byte[] inPlace = Arrays.copyOf(expectedEncrypted, expectedEncrypted.length);
+                table.decryptBlocks(inPlace, 0, inPlace, 0, nBlocks, key);
+                Assertions.assertArrayEquals(Arrays.copyOfRange(input, 3, 3 + nBlocks * 16), inPlace);
+            }
+        }
+    }
+
+    @Test
+    public void testCipherImplWithTableEngine() {
+        byte[] message = "Test plaintext to cipher with Rijndael".getBytes();
+        CipherImpl base = CipherImpl.createInstance(CipherImplTest.key256);
+        CipherImpl table = CipherImpl.createInstance(CipherImplTest.key256, CipherImpl.ENGINE.TABLE);
+
+        byte[] cipherText = table.encrypt(message);
+        Assertions.assertArrayEquals(base.encrypt(message), cipherText);
+        Assertions.assertArrayEquals(message, table.decrypt(cipherText));
+    }
+
+    @Test
+    public void testKeyLengthMismatchIsRejected() {
+        ExpandedKey key128 = keySchedule.expandKey(CipherImplTest.key128);
+        ExpandedKey key256 = keySchedule.expandKey(CipherImplTest.key256);
+        byte[] block = new byte[64];
+        for (CipherImpl.ENGINE engine : CipherImpl.ENGINE.values()) {
+            // Развернутый ключ другой длины дал бы не AES (лишние раунды отброшены) или выход за границы расписания
+            for (ExpandedKey[] pair : new ExpandedKey[][] {{key256, key128}, {key128, key256}}) {
+                BaseCipher cipher = engine.create(KEY_LENGTH.ofBits(pair[0].getKeyLength()));
+                ExpandedKey wrong = pair[1];
+                Assertions.assertThrows(IllegalArgumentException.class, () -> cipher.encryptBlock(block, 0, block, 0, wrong), engine.name());
+                Assertions.assertThrows(IllegalArgumentException.class, () -> cipher.decryptBlock(block, 0, block, 0, wrong), engine.name());
+                Assertions.assertThrows(IllegalArgumentException.class, () -> cipher.encryptBlocks(block, 0, block, 0, 4, wrong), engine.name());
+                Assertions.assertThrows(IllegalArgumentException.class,
+                        () -> cipher.decryptBlocks(block, 0, block, 0, 4, new ExpandedKey[] {pair[0], pair[0], wrong, pair[0]}), engine.name());
+            }
+        }
+    }
+}
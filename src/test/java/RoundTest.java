@@ -1,8 +1,11 @@
+import org.digitalleague.key.ExpandedKey;
 import org.digitalleague.key.KeySchedule;
 import org.digitalleague.cipher.impl.RijndaelBaseImpl;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 public class RoundTest {
     private final RijndaelBaseImpl cipher = new RijndaelBaseImpl(RijndaelBaseImpl.KEY_LENGTH.KEY_128);
     private final KeySchedule keySchedule = new KeySchedule();
@@ -128,4 +131,31 @@ public class RoundTest {
         Assertions.assertArrayEquals(expected, result);
     }
 
+    @Test
+    public void testEncryptBlockWithOffsetsInPlace() {
+
+        byte[] key = new byte[] {
+                0x00, 0x01, 0x02, 0x03,
+                0x04, 0x05, 0x06, 0x07,
+                0x08, 0x09, 0x0a, 0x0b,
+                0x0c, 0x0d, 0x0e, 0x0f
+        };
+
+        byte[] plainText = new byte[] {
+                0x00, 0x11, 0x22, 0x33,
+                0x44, 0x55, 0x66, 0x77,
+                (byte)0x88, (byte)0x99, (byte)0xaa, (byte)0xbb,
+                (byte)0xcc, (byte)0xdd, (byte)0xee, (byte)0xff
+        };
+
+        ExpandedKey expandedKey = keySchedule.expandKey(key);
+        byte[] buffer = new byte[3 + 16];
+        System.arraycopy(plainText, 0, buffer, 3, 16);
+
+        cipher.encryptBlock(buffer, 3, buffer, 3, expandedKey);
+        Assertions.assertArrayEquals(cipher.encryptBlock(plainText, keySchedule.keyExpansion(key)), Arrays.copyOfRange(buffer, 3, 19));
+
+        cipher.decryptBlock(buffer, 3, buffer, 3, expandedKey);
+        Assertions.assertArrayEquals(plainText, Arrays.copyOfRange(buffer, 3, 19));
+    }
 }
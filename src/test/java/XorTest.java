@@ -0,0 +1,48 @@
+import org.digitalleague.cipher.util.Xor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class XorTest {
+    private static final Random random = new Random(17);
+
+    @Test
+    public void testMatchesByteLoop() {
+        byte[] a = new byte[1100];
+        byte[] b = new byte[1100];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        for (int len : new int[] {0, 1, 7, 8, 15, 63, 64, 65, 127, 255, 1024}) {
+            for (int off : new int[] {0, 3, 13}) {
+                byte[] expected = new byte[len];
+                for (int i = 0; i < len; i++) {
+                    expected[i] = (byte) (a[off + i] ^ b[2 * off + i]);
+                }
+                byte[] out = new byte[len + off];
+                Xor.xor(a, off, b, 2 * off, out, off, len);
+                Assertions.assertArrayEquals(expected, Arrays.copyOfRange(out, off, off + len), "len " + len + ", off " + off);
+            }
+        }
+    }
+
+    @Test
+    public void testInPlace() {
+        byte[] a = new byte[333];
+        byte[] b = new byte[333];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        byte[] original = Arrays.copyOf(a, a.length);
+
+        Xor.xor(a, 0, b, 0, a, 0, a.length);
+        Xor.xor(a, 0, b, 0, a, 0, a.length);
+        Assertions.assertArrayEquals(original, a);
+    }
+
+    @Test
+    public void testBounds() {
+        Assertions.assertThrows(IndexOutOfBoundsException.class,
+                () -> Xor.xor(new byte[16], 8, new byte[16], 0, new byte[16], 0, 16));
+    }
+}